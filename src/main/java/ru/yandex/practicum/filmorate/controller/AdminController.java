@@ -0,0 +1,46 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import lombok.RequiredArgsConstructor;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import ru.yandex.practicum.filmorate.model.CacheStatistics;
+import ru.yandex.practicum.filmorate.model.SnapshotInfo;
+import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.service.SnapshotService;
+import ru.yandex.practicum.filmorate.storage.CachingFilmStorage;
+
+@RestController
+@RequiredArgsConstructor
+@RequestMapping("/admin")
+public class AdminController {
+
+    private final FilmService filmService;
+    private final CachingFilmStorage filmCache;
+    private final SnapshotService snapshotService;
+
+    @PostMapping("/like-counts/rebuild")
+    public int rebuildLikeCounts() {
+        return filmService.rebuildLikeCounts();
+    }
+
+    @GetMapping("/cache/films")
+    public CacheStatistics getFilmCacheStatistics() {
+        CacheStats stats = filmCache.getStats();
+        return new CacheStatistics(filmCache.getSize(), stats.hitCount(), stats.missCount(),
+                stats.evictionCount(), stats.hitRate());
+    }
+
+    @PostMapping("/snapshot")
+    public SnapshotInfo createSnapshot(@RequestParam(required = false) String name) {
+        return snapshotService.createSnapshot(name);
+    }
+
+    @PostMapping("/restore")
+    public SnapshotInfo restoreSnapshot(@RequestParam String name) {
+        return snapshotService.restoreSnapshot(name);
+    }
+}
@@ -1,9 +1,17 @@
 package ru.yandex.practicum.filmorate.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.yandex.practicum.filmorate.model.BatchItemResult;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Page;
 import ru.yandex.practicum.filmorate.service.FilmService;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.Collection;
 import java.util.List;
 
@@ -11,10 +19,14 @@ import java.util.List;
 @RequestMapping("/films")
 public class FilmController {
 
+    private static final int DEFAULT_PAGE_SIZE = 100;
+
     private final FilmService service;
+    private final ObjectMapper objectMapper;
 
-    public FilmController(FilmService service) {
+    public FilmController(FilmService service, ObjectMapper objectMapper) {
         this.service = service;
+        this.objectMapper = objectMapper;
     }
 
     @GetMapping
@@ -22,6 +34,30 @@ public class FilmController {
         return service.getFilms();
     }
 
+    @GetMapping(params = "limit")
+    public Page<Film> getFilms(@RequestParam(defaultValue = "0") long after, @RequestParam int limit) {
+        return service.getFilms(after, limit);
+    }
+
+    // after без limit - страница размера по умолчанию, а не весь список без учёта after
+    @GetMapping(params = {"after", "!limit"})
+    public Page<Film> getFilms(@RequestParam long after) {
+        return service.getFilms(after, DEFAULT_PAGE_SIZE);
+    }
+
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportFilms() {
+        StreamingResponseBody body = out -> service.exportFilms(film -> {
+            try {
+                out.write(objectMapper.writeValueAsBytes(film));
+                out.write('\n');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
+    }
+
     @GetMapping("/{id}")
     public Film getfilm(@PathVariable Long id) {
         return service.getFilm(id);
@@ -32,6 +68,11 @@ public class FilmController {
         return service.createFilm(newFilm);
     }
 
+    @PostMapping("/batch")
+    public List<BatchItemResult> createFilms(@RequestBody List<Film> newFilms) {
+        return service.createFilms(newFilms);
+    }
+
     @PutMapping
     public Film updateFilm(@RequestBody Film updFilm) {
         return service.updateFilm(updFilm);
@@ -52,8 +93,17 @@ public class FilmController {
         service.deleteLike(id, userId);
     }
 
+    @GetMapping("/search")
+    public List<Film> searchFilms(@RequestParam String query,
+                                  @RequestParam(defaultValue = "title,description") List<String> by,
+                                  @RequestParam(defaultValue = "10") int limit) {
+        return service.searchFilms(query, by, limit);
+    }
+
     @GetMapping("/popular")
-    public List<Film> getPopularFilms(@RequestParam(defaultValue = "10") int count) {
-        return service.getPopularFilms(count);
+    public List<Film> getPopularFilms(@RequestParam(defaultValue = "10") int count,
+                                      @RequestParam(required = false) Integer genreId,
+                                      @RequestParam(required = false) Integer year) {
+        return service.getPopularFilms(count, genreId, year);
     }
 }
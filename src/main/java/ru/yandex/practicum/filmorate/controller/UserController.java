@@ -1,19 +1,36 @@
 package ru.yandex.practicum.filmorate.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.yandex.practicum.filmorate.model.BatchItemResult;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Page;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.FilmService;
 import ru.yandex.practicum.filmorate.service.UserService;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.Collection;
+import java.util.List;
 
 @RestController
 @RequestMapping("/users")
 public class UserController {
 
+    private static final int DEFAULT_PAGE_SIZE = 100;
+
     private final UserService service;
+    private final FilmService filmService;
+    private final ObjectMapper objectMapper;
 
-    public UserController(UserService service) {
+    public UserController(UserService service, FilmService filmService, ObjectMapper objectMapper) {
         this.service = service;
+        this.filmService = filmService;
+        this.objectMapper = objectMapper;
     }
 
     @GetMapping
@@ -21,6 +38,30 @@ public class UserController {
         return service.getUsers();
     }
 
+    @GetMapping(params = "limit")
+    public Page<User> getUsers(@RequestParam(defaultValue = "0") long after, @RequestParam int limit) {
+        return service.getUsers(after, limit);
+    }
+
+    // after без limit - страница размера по умолчанию, а не весь список без учёта after
+    @GetMapping(params = {"after", "!limit"})
+    public Page<User> getUsers(@RequestParam long after) {
+        return service.getUsers(after, DEFAULT_PAGE_SIZE);
+    }
+
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportUsers() {
+        StreamingResponseBody body = out -> service.exportUsers(user -> {
+            try {
+                out.write(objectMapper.writeValueAsBytes(user));
+                out.write('\n');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
+    }
+
     @GetMapping("/{id}")
     public User getUser(@PathVariable Long id) {
         return service.getUser(id);
@@ -31,6 +72,11 @@ public class UserController {
         return service.createUser(newUser);
     }
 
+    @PostMapping("/batch")
+    public List<BatchItemResult> createUsers(@RequestBody List<User> newUsers) {
+        return service.createUsers(newUsers);
+    }
+
     @PutMapping
     public User updateUser(@RequestBody User updUser) {
         return service.updateUser(updUser);
@@ -56,8 +102,18 @@ public class UserController {
         return service.getFriends(id);
     }
 
+    @GetMapping("/{id}/friends/suggestions")
+    public List<User> getFriendSuggestions(@PathVariable Long id, @RequestParam(defaultValue = "10") int limit) {
+        return service.getFriendSuggestions(id, limit);
+    }
+
     @GetMapping("/{id}/friends/common/{otherId}")
     public Collection<User> getCommonFriends(@PathVariable Long id, @PathVariable Long otherId) {
         return service.getCommonFriends(id, otherId);
     }
+
+    @GetMapping("/{id}/recommendations")
+    public List<Film> getRecommendations(@PathVariable Long id, @RequestParam(defaultValue = "10") int limit) {
+        return filmService.getRecommendations(id, limit);
+    }
 }
@@ -0,0 +1,17 @@
+package ru.yandex.practicum.filmorate.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class CacheStatistics {
+
+    private long size;
+    private long hits;
+    private long misses;
+    private long evictions;
+    private double hitRate;
+}
@@ -1,32 +1,91 @@
 package ru.yandex.practicum.filmorate.service;
 
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.model.BatchItemResult;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.Page;
 import ru.yandex.practicum.filmorate.storage.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.LikeWriteBuffer;
+import ru.yandex.practicum.filmorate.storage.index.ExistenceIndex;
+import ru.yandex.practicum.filmorate.storage.index.FilmSearchIndex;
+import ru.yandex.practicum.filmorate.storage.index.LikesMatrix;
+import ru.yandex.practicum.filmorate.storage.index.PopularFilmsLeaderboard;
+import ru.yandex.practicum.filmorate.storage.journal.EventJournal;
+import ru.yandex.practicum.filmorate.storage.journal.JournalEventType;
 
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
 
 @Slf4j
 @Service
 public class FilmService {
 
+    private static final int MAX_PAGE_SIZE = 1000;
+    private static final int MAX_RECOMMENDATIONS = 100;
+    private static final int MAX_SEARCH_RESULTS = 100;
+
     private final FilmStorage storage;
     private final UserService service;
+    private final PopularFilmsLeaderboard leaderboard;
+    private final ExistenceIndex filmIds;
+    private final GenreService genreService;
+    private final MpaService mpaService;
+    private final Optional<LikeWriteBuffer> likeBuffer;
+    private final LikesMatrix likesMatrix;
+    private final FilmSearchIndex searchIndex;
+    private final Optional<EventJournal> journal;
 
-    public FilmService(FilmStorage storage, UserService service) {
+    public FilmService(FilmStorage storage, UserService service, PopularFilmsLeaderboard leaderboard,
+                       @Qualifier("filmIdIndex") ExistenceIndex filmIds,
+                       GenreService genreService, MpaService mpaService,
+                       Optional<LikeWriteBuffer> likeBuffer, LikesMatrix likesMatrix,
+                       FilmSearchIndex searchIndex, Optional<EventJournal> journal) {
         this.storage = storage;
         this.service = service;
+        this.leaderboard = leaderboard;
+        this.filmIds = filmIds;
+        this.genreService = genreService;
+        this.mpaService = mpaService;
+        this.likeBuffer = likeBuffer;
+        this.likesMatrix = likesMatrix;
+        this.searchIndex = searchIndex;
+        this.journal = journal;
     }
 
     public Collection<Film> getFilms() {
         return storage.getFilms();
     }
 
+    public Page<Film> getFilms(long after, int limit) {
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            throw new ValidationException("Размер страницы должен быть от 1 до " + MAX_PAGE_SIZE);
+        }
+        // Запрашиваем на одну запись больше, чтобы понять, есть ли следующая страница
+        List<Film> films = storage.getFilms(after, limit + 1);
+        if (films.size() <= limit) {
+            return new Page<>(films, null);
+        }
+        List<Film> items = films.subList(0, limit);
+        return new Page<>(items, items.get(limit - 1).getId());
+    }
+
+    public void exportFilms(Consumer<Film> consumer) {
+        storage.exportFilms(consumer);
+    }
+
     public Film getFilm(Long id) {
         return storage.getFilm(id).orElseThrow();
     }
@@ -34,14 +93,51 @@ public class FilmService {
     public Film createFilm(Film newFilm) {
         check(newFilm);
         Film film = storage.createFilm(newFilm);
+        filmIds.add(film.getId());
+        leaderboard.addFilm(film.getId(), film.getReleaseDate().getYear(), genreIds(film));
+        searchIndex.index(film.getId(), film.getName(), film.getDescription());
         log.info("Фильм {} успешно создан", newFilm.getName());
         return film;
     }
 
+    public List<BatchItemResult> createFilms(List<Film> newFilms) {
+        List<BatchItemResult> results = new ArrayList<>(newFilms.size());
+        List<Film> validFilms = new ArrayList<>();
+        for (int i = 0; i < newFilms.size(); i++) {
+            Film film = newFilms.get(i);
+            try {
+                check(film);
+                mpaService.getMpa(film.getMpa().getId());
+                if (film.getGenres() != null) {
+                    film.getGenres().stream().map(Genre::getId).forEach(genreService::getGenre);
+                }
+                validFilms.add(film);
+                results.add(new BatchItemResult(i, null, null));
+            } catch (ValidationException | NotFoundException e) {
+                results.add(new BatchItemResult(i, null, e.getMessage()));
+            }
+        }
+        storage.createFilms(validFilms);
+        int next = 0;
+        for (BatchItemResult result : results) {
+            if (result.getError() == null) {
+                Film film = validFilms.get(next++);
+                result.setId(film.getId());
+                filmIds.add(film.getId());
+                leaderboard.addFilm(film.getId(), film.getReleaseDate().getYear(), genreIds(film));
+                searchIndex.index(film.getId(), film.getName(), film.getDescription());
+            }
+        }
+        log.info("Пакетно создано фильмов: {} из {}", validFilms.size(), newFilms.size());
+        return results;
+    }
+
     public Film updateFilm(Film updFilm) {
         check(updFilm);
         Film film = storage.updateFilm(updFilm);
         if (film != null) {
+            leaderboard.updateFilm(film.getId(), film.getReleaseDate().getYear(), genreIds(film));
+            searchIndex.index(film.getId(), film.getName(), film.getDescription());
             log.info("Успешное обновление фильма {}", film.getName());
             return film;
         }
@@ -49,19 +145,52 @@ public class FilmService {
     }
 
     public void deleteFilm(Long id) {
-        Film film = checkId(id);
+        Film film = storage.getFilm(id).orElseThrow();
+        // Отложенные лайки фильма записываются до удаления, а не отбрасываются молча при следующей записи
+        likeBuffer.ifPresent(LikeWriteBuffer::flush);
         storage.deleteFilm(id);
+        filmIds.remove(id);
+        leaderboard.removeFilm(id);
+        likesMatrix.removeFilm(id);
+        searchIndex.remove(id);
+        journal.ifPresent(events -> events.append(JournalEventType.FILM_REMOVED, id, 0));
         log.info("Фильм {} удален", film.getName());
     }
 
-    public List<Film> getPopularFilms(int count) {
-        return storage.getPopularFilms(count);
+    public List<Film> searchFilms(String query, List<String> by, int limit) {
+        if (query == null || query.isBlank()) {
+            throw new ValidationException("Должна быть указана строка поиска");
+        }
+        if (limit < 1 || limit > MAX_SEARCH_RESULTS) {
+            throw new ValidationException("Количество результатов должно быть от 1 до " + MAX_SEARCH_RESULTS);
+        }
+        Set<FilmSearchIndex.Field> fields = EnumSet.noneOf(FilmSearchIndex.Field.class);
+        for (String field : by) {
+            switch (field.trim().toLowerCase(Locale.ROOT)) {
+                case "title" -> fields.add(FilmSearchIndex.Field.TITLE);
+                case "description" -> fields.add(FilmSearchIndex.Field.DESCRIPTION);
+                default -> throw new ValidationException("Поиск возможен только по title и description");
+            }
+        }
+        return storage.getFilmsByIds(searchIndex.search(query, fields, limit));
+    }
+
+    public List<Film> getPopularFilms(int count, Integer genreId, Integer year) {
+        if (genreId != null) {
+            genreService.getGenre(genreId);
+        }
+        return storage.getFilmsByIds(leaderboard.getTop(count, genreId, year));
     }
 
     public void addLike(Long filmId, Long userId) {
         checkId(filmId);
         service.checkId(userId);
-        if (storage.addLike(filmId, userId)) {
+        boolean added = likeBuffer.map(buffer -> buffer.addLike(filmId, userId))
+                .orElseGet(() -> storage.addLike(filmId, userId));
+        if (added) {
+            leaderboard.changeLikes(filmId, 1);
+            likesMatrix.addLike(filmId, userId);
+            journal.ifPresent(events -> events.append(JournalEventType.LIKE_ADDED, filmId, userId));
             log.info("Пользователь с id: {} поставил лайк фильму с id: {}", userId, filmId);
         } else {
             throw new ValidationException("Лайк фильму c id " + filmId + " пользователем " + userId + " уже имеется");
@@ -71,20 +200,53 @@ public class FilmService {
     public void deleteLike(long filmId, long userId) {
         checkId(filmId);
         service.checkId(userId);
-        storage.addLike(filmId, userId);
-        log.info("Пользователь с id: {} удалил лайк у фильма с id: {}", userId, filmId);
+        boolean removed = likeBuffer.map(buffer -> buffer.removeLike(filmId, userId))
+                .orElseGet(() -> storage.removeLike(filmId, userId));
+        if (removed) {
+            leaderboard.changeLikes(filmId, -1);
+            likesMatrix.removeLike(filmId, userId);
+            journal.ifPresent(events -> events.append(JournalEventType.LIKE_REMOVED, filmId, userId));
+            log.info("Пользователь с id: {} удалил лайк у фильма с id: {}", userId, filmId);
+        }
+    }
+
+    public List<Film> getRecommendations(long userId, int limit) {
+        if (limit < 1 || limit > MAX_RECOMMENDATIONS) {
+            throw new ValidationException("Количество рекомендаций должно быть от 1 до " + MAX_RECOMMENDATIONS);
+        }
+        service.checkId(userId);
+        if (!likesMatrix.isReady()) {
+            log.warn("Матрица лайков еще строится, рекомендации для пользователя с id: {} пусты", userId);
+            return List.of();
+        }
+        return storage.getFilmsByIds(Arrays.stream(likesMatrix.recommend(userId, limit)).boxed().toList());
+    }
+
+    public int rebuildLikeCounts() {
+        int fixed = storage.rebuildLikeCounts();
+        log.info("Пересчитаны счётчики лайков, исправлено фильмов: {}", fixed);
+        return fixed;
     }
 
-    private Film checkId(Long id) {
-        return storage.getFilm(id).orElseThrow(() -> new NotFoundException("Фильм с id " + id + " не найден"));
+    private List<Integer> genreIds(Film film) {
+        if (film.getGenres() == null) {
+            return List.of();
+        }
+        return film.getGenres().stream().map(Genre::getId).toList();
+    }
+
+    private void checkId(Long id) {
+        if (!filmIds.contains(id)) {
+            throw new NotFoundException("Фильм с id " + id + " не найден");
+        }
     }
 
     private void check(Film film) {
-        if (film.getName().isBlank()) {
+        if (film.getName() == null || film.getName().isBlank()) {
             log.error("Отсутствует название фильма");
             throw new ValidationException("Должно быть указано название фильма");
         }
-        if (film.getDescription().isBlank() || film.getDescription().length() > 200) {
+        if (film.getDescription() == null || film.getDescription().isBlank() || film.getDescription().length() > 200) {
             log.error("Слишком длинное описание фильма");
             throw new ValidationException("Слишком длинное описание фильма");
         }
@@ -92,8 +254,8 @@ public class FilmService {
             log.error("Неверная дата релиза");
             throw new ValidationException("Неверная дата релиза");
         }
-        if (film.getDuration() == null || film.getDuration() < 0) {
-            log.error("Продолжительность фильма - отрицательное число");
+        if (film.getDuration() == null || film.getDuration() <= 0) {
+            log.error("Продолжительность фильма - не положительное число");
             throw new ValidationException("Продолжительность фильма должна быть положительным числом");
         }
         if (film.getMpa() == null || film.getMpa().getId() == null) {
@@ -0,0 +1,138 @@
+package ru.yandex.practicum.filmorate.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.model.SnapshotInfo;
+import ru.yandex.practicum.filmorate.storage.CachingFilmStorage;
+import ru.yandex.practicum.filmorate.storage.GenreDbStorage;
+import ru.yandex.practicum.filmorate.storage.LikeWriteBuffer;
+import ru.yandex.practicum.filmorate.storage.MpaDbStorage;
+import ru.yandex.practicum.filmorate.storage.ShardedLikesFilmStorage;
+import ru.yandex.practicum.filmorate.storage.index.ExistenceIndex;
+import ru.yandex.practicum.filmorate.storage.index.FilmSearchIndex;
+import ru.yandex.practicum.filmorate.storage.index.FriendshipGraph;
+import ru.yandex.practicum.filmorate.storage.index.LikesMatrix;
+import ru.yandex.practicum.filmorate.storage.index.PopularFilmsLeaderboard;
+import ru.yandex.practicum.filmorate.storage.journal.JournalSeeder;
+import ru.yandex.practicum.filmorate.storage.snapshot.SnapshotStorage;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Map;
+import java.util.Optional;
+import java.util.regex.Pattern;
+
+/**
+ * Снимки данных и восстановление из них. Снимки лежат в каталоге filmorate.snapshot.dir, по API они
+ * выбираются только по имени файла. После восстановления перезагружаются все индексы в памяти, журнал
+ * изменений и шарды лайков, если они включены.
+ */
+@Slf4j
+@Service
+public class SnapshotService {
+
+    private static final Pattern NAME = Pattern.compile("[A-Za-z0-9_-][A-Za-z0-9._-]*");
+    private static final DateTimeFormatter NAME_FORMAT = DateTimeFormatter.ofPattern("'snapshot-'yyyyMMdd-HHmmss'.fsnap'");
+
+    private final Path directory;
+    private final SnapshotStorage snapshotStorage;
+    private final Optional<LikeWriteBuffer> likeBuffer;
+    private final Optional<ShardedLikesFilmStorage> shardedLikes;
+    private final Optional<JournalSeeder> journalSeeder;
+    private final CachingFilmStorage filmCache;
+    private final MpaDbStorage mpaStorage;
+    private final GenreDbStorage genreStorage;
+    private final ExistenceIndex userIds;
+    private final ExistenceIndex filmIds;
+    private final PopularFilmsLeaderboard leaderboard;
+    private final FilmSearchIndex searchIndex;
+    private final FriendshipGraph friendshipGraph;
+    private final LikesMatrix likesMatrix;
+
+    public SnapshotService(@Value("${filmorate.snapshot.dir:./db/snapshots}") Path directory,
+                           SnapshotStorage snapshotStorage, Optional<LikeWriteBuffer> likeBuffer,
+                           Optional<ShardedLikesFilmStorage> shardedLikes, Optional<JournalSeeder> journalSeeder,
+                           CachingFilmStorage filmCache, MpaDbStorage mpaStorage, GenreDbStorage genreStorage,
+                           @Qualifier("userIdIndex") ExistenceIndex userIds,
+                           @Qualifier("filmIdIndex") ExistenceIndex filmIds,
+                           PopularFilmsLeaderboard leaderboard, FilmSearchIndex searchIndex,
+                           FriendshipGraph friendshipGraph, LikesMatrix likesMatrix) {
+        this.directory = directory;
+        this.snapshotStorage = snapshotStorage;
+        this.likeBuffer = likeBuffer;
+        this.shardedLikes = shardedLikes;
+        this.journalSeeder = journalSeeder;
+        this.filmCache = filmCache;
+        this.mpaStorage = mpaStorage;
+        this.genreStorage = genreStorage;
+        this.userIds = userIds;
+        this.filmIds = filmIds;
+        this.leaderboard = leaderboard;
+        this.searchIndex = searchIndex;
+        this.friendshipGraph = friendshipGraph;
+        this.likesMatrix = likesMatrix;
+    }
+
+    public SnapshotInfo createSnapshot(String name) {
+        String fileName = name == null ? LocalDateTime.now().format(NAME_FORMAT) : checkName(name);
+        Path file = directory.resolve(fileName);
+        long start = System.nanoTime();
+        // Лайки из очереди отложенной записи должны попасть в снимок
+        likeBuffer.ifPresent(LikeWriteBuffer::flush);
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось создать каталог снимков " + directory, e);
+        }
+        Map<String, Long> rows = snapshotStorage.write(file);
+        return info(fileName, file, rows, start);
+    }
+
+    public SnapshotInfo restoreSnapshot(String name) {
+        String fileName = checkName(name);
+        Path file = directory.resolve(fileName);
+        if (!Files.isRegularFile(file)) {
+            throw new NotFoundException("Снимок " + fileName + " не найден");
+        }
+        long start = System.nanoTime();
+        likeBuffer.ifPresent(LikeWriteBuffer::flush);
+        Map<String, Long> rows = snapshotStorage.restore(file);
+        shardedLikes.ifPresent(ShardedLikesFilmStorage::reload);
+        journalSeeder.ifPresent(JournalSeeder::reseed);
+        filmCache.invalidateAll();
+        mpaStorage.reload();
+        genreStorage.reload();
+        userIds.reload();
+        filmIds.reload();
+        leaderboard.reload();
+        searchIndex.reload();
+        friendshipGraph.reload();
+        likesMatrix.rebuildInBackground();
+        SnapshotInfo info = info(fileName, file, rows, start);
+        log.info("Данные восстановлены из снимка {} за {} мс", fileName, info.getDurationMs());
+        return info;
+    }
+
+    private SnapshotInfo info(String fileName, Path file, Map<String, Long> rows, long start) {
+        try {
+            return new SnapshotInfo(fileName, Files.size(file), rows, (System.nanoTime() - start) / 1_000_000);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private String checkName(String name) {
+        if (name == null || !NAME.matcher(name).matches()) {
+            throw new ValidationException("Недопустимое имя снимка: " + name);
+        }
+        return name;
+    }
+}
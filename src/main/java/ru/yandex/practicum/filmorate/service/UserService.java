@@ -1,29 +1,83 @@
 package ru.yandex.practicum.filmorate.service;
 
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.model.BatchItemResult;
+import ru.yandex.practicum.filmorate.model.Page;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.LikeWriteBuffer;
 import ru.yandex.practicum.filmorate.storage.UserStorage;
+import ru.yandex.practicum.filmorate.storage.index.ExistenceIndex;
+import ru.yandex.practicum.filmorate.storage.index.FriendshipGraph;
+import ru.yandex.practicum.filmorate.storage.index.LikesMatrix;
+import ru.yandex.practicum.filmorate.storage.index.PopularFilmsLeaderboard;
+import ru.yandex.practicum.filmorate.storage.journal.EventJournal;
+import ru.yandex.practicum.filmorate.storage.journal.JournalEventType;
 
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
 
 @Slf4j
 @Service
 public class UserService {
 
-    private final UserStorage storage;
+    private static final int MAX_PAGE_SIZE = 1000;
+    private static final int MAX_SUGGESTIONS = 100;
 
-    public UserService(UserStorage storage) {
+    private final UserStorage storage;
+    private final FilmStorage filmStorage;
+    private final PopularFilmsLeaderboard leaderboard;
+    private final ExistenceIndex userIds;
+    private final FriendshipGraph friendshipGraph;
+    private final LikesMatrix likesMatrix;
+    private final Optional<EventJournal> journal;
+    private final Optional<LikeWriteBuffer> likeBuffer;
+
+    public UserService(UserStorage storage, FilmStorage filmStorage, PopularFilmsLeaderboard leaderboard,
+                       @Qualifier("userIdIndex") ExistenceIndex userIds, FriendshipGraph friendshipGraph,
+                       LikesMatrix likesMatrix, Optional<EventJournal> journal,
+                       Optional<LikeWriteBuffer> likeBuffer) {
         this.storage = storage;
+        this.filmStorage = filmStorage;
+        this.leaderboard = leaderboard;
+        this.userIds = userIds;
+        this.friendshipGraph = friendshipGraph;
+        this.likesMatrix = likesMatrix;
+        this.journal = journal;
+        this.likeBuffer = likeBuffer;
     }
 
     public Collection<User> getUsers() {
         return storage.getUsers();
     }
 
+    public Page<User> getUsers(long after, int limit) {
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            throw new ValidationException("Размер страницы должен быть от 1 до " + MAX_PAGE_SIZE);
+        }
+        List<User> users = storage.getUsers(after, limit + 1);
+        if (users.size() <= limit) {
+            return new Page<>(users, null);
+        }
+        List<User> items = users.subList(0, limit);
+        return new Page<>(items, items.get(limit - 1).getId());
+    }
+
+    public void exportUsers(Consumer<User> consumer) {
+        storage.exportUsers(consumer);
+    }
+
     public User getUser(long id) {
         return storage.getUser(id).orElseThrow();
     }
@@ -34,10 +88,58 @@ public class UserService {
             newUser.setName(newUser.getLogin());
         }
         storage.createUser(newUser);
+        userIds.add(newUser.getId());
         log.info("Пользователь {} добавлен", newUser.getName());
         return newUser;
     }
 
+    public List<BatchItemResult> createUsers(List<User> newUsers) {
+        List<BatchItemResult> results = new ArrayList<>(newUsers.size());
+        List<User> validUsers = new ArrayList<>();
+        Set<String> emails = new HashSet<>();
+        Set<String> logins = new HashSet<>();
+        // Занятые имейлы и логины одним запросом: иначе уникальный индекс уронил бы весь пакет
+        Set<String> takenEmails = new HashSet<>();
+        Set<String> takenLogins = new HashSet<>();
+        storage.getUsersByEmailsOrLogins(newUsers.stream()
+                        .filter(user -> user.getEmail() != null && user.getLogin() != null)
+                        .toList())
+                .forEach(user -> {
+                    takenEmails.add(user.getEmail());
+                    takenLogins.add(user.getLogin());
+                });
+        for (int i = 0; i < newUsers.size(); i++) {
+            User user = newUsers.get(i);
+            try {
+                check(user);
+                if (!emails.add(user.getEmail()) || !logins.add(user.getLogin())) {
+                    throw new ValidationException("Имейл или логин повторяется в пакете");
+                }
+                if (takenEmails.contains(user.getEmail()) || takenLogins.contains(user.getLogin())) {
+                    throw new ValidationException("Пользователь с таким имейлом или логином уже существует");
+                }
+                if (user.getName() == null || user.getName().isEmpty()) {
+                    user.setName(user.getLogin());
+                }
+                validUsers.add(user);
+                results.add(new BatchItemResult(i, null, null));
+            } catch (ValidationException e) {
+                results.add(new BatchItemResult(i, null, e.getMessage()));
+            }
+        }
+        storage.createUsers(validUsers);
+        int next = 0;
+        for (BatchItemResult result : results) {
+            if (result.getError() == null) {
+                User user = validUsers.get(next++);
+                result.setId(user.getId());
+                userIds.add(user.getId());
+            }
+        }
+        log.info("Пакетно создано пользователей: {} из {}", validUsers.size(), newUsers.size());
+        return results;
+    }
+
     public User updateUser(User updUser) {
         if (updUser.getId() == null) {
             throw new ValidationException("Должен быть указан id пользователя");
@@ -54,20 +156,37 @@ public class UserService {
     }
 
     public void deleteUser(Long id) {
-        User user = checkId(id);
+        User user = storage.getUser(id).orElseThrow();
+        // Отложенные лайки и отмены сначала доходят до базы, иначе рейтинг разойдётся с тем, что удалит хранилище
+        likeBuffer.ifPresent(LikeWriteBuffer::flush);
+        // Лайки удаляются через хранилище фильмов: при шардировании они лежат не в базе пользователей
+        List<Long> likedFilmIds = filmStorage.removeUserLikes(id);
         storage.deleteUser(id);
+        userIds.remove(id);
+        friendshipGraph.removeUser(id);
+        likesMatrix.removeUser(id);
+        likedFilmIds.forEach(filmId -> leaderboard.changeLikes(filmId, -1));
+        journal.ifPresent(events -> events.append(JournalEventType.USER_REMOVED, id, 0));
         log.info("Пользователь {} удален", user.getName());
     }
 
     public Collection<User> getFriends(long id) {
         checkId(id);
-        return storage.getFriends(id);
+        return storage.getUsersByIds(toList(friendshipGraph.getFriends(id)));
     }
 
     public Collection<User> getCommonFriends(long userId, long friendId) {
         checkId(userId);
         checkId(friendId);
-        return storage.getCommonFriends(userId, friendId);
+        return storage.getUsersByIds(toList(friendshipGraph.getCommonFriends(userId, friendId)));
+    }
+
+    public List<User> getFriendSuggestions(long id, int limit) {
+        if (limit < 1 || limit > MAX_SUGGESTIONS) {
+            throw new ValidationException("Количество рекомендаций должно быть от 1 до " + MAX_SUGGESTIONS);
+        }
+        checkId(id);
+        return storage.getUsersByIds(toList(friendshipGraph.suggestFriends(id, limit)));
     }
 
     public void addFriend(long userId, long friendId) {
@@ -77,7 +196,14 @@ public class UserService {
         }
         checkId(userId);
         checkId(friendId);
-        storage.addFriend(userId, friendId);
+        if (friendshipGraph.hasFriend(userId, friendId)) {
+            log.info("Пользователь с id: {} уже в друзьях у пользователя с id: {}", friendId, userId);
+            return;
+        }
+        if (storage.addFriend(userId, friendId)) {
+            friendshipGraph.addFriend(userId, friendId);
+            journal.ifPresent(events -> events.append(JournalEventType.FRIEND_ADDED, userId, friendId));
+        }
         log.info("Пользователь с id: {} добавил в друзья пользователя с id: {}", userId, friendId);
     }
 
@@ -88,16 +214,25 @@ public class UserService {
         }
         checkId(userId);
         checkId(friendId);
-        storage.removeFriend(userId, friendId);
+        if (storage.removeFriend(userId, friendId)) {
+            friendshipGraph.removeFriend(userId, friendId);
+            journal.ifPresent(events -> events.append(JournalEventType.FRIEND_REMOVED, userId, friendId));
+        }
         log.info("Пользователь с id: {} удалил из друзей пользователя с id: {}", userId, friendId);
     }
 
-    User checkId(Long id) {
-        return storage.getUser(id).orElseThrow(() -> new NotFoundException("Пользователь с id " + id + " не найден"));
+    void checkId(Long id) {
+        if (!userIds.contains(id)) {
+            throw new NotFoundException("Пользователь с id " + id + " не найден");
+        }
+    }
+
+    private List<Long> toList(long[] ids) {
+        return Arrays.stream(ids).boxed().toList();
     }
 
     private void check(User user) {
-        if (user.getEmail().isBlank()) {
+        if (user.getEmail() == null || user.getEmail().isBlank()) {
             log.error("Имейл не введен");
             throw new ValidationException("Должен быть указан имейл");
         }
@@ -105,7 +240,7 @@ public class UserService {
             log.error("Имейл не содержит символ @");
             throw new ValidationException("В имейле должен содержаться символ @");
         }
-        if (user.getLogin().isBlank() || user.getLogin().contains(" ")) {
+        if (user.getLogin() == null || user.getLogin().isBlank() || user.getLogin().contains(" ")) {
             log.error("Логин пустой или содержит пробелы");
             throw new ValidationException("Логин не должен быть пустым или содержать пробелы");
         }
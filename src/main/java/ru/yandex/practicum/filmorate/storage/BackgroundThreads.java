@@ -0,0 +1,19 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Потоки для фоновых задач хранилищ. В режиме виртуальных потоков (spring.threads.virtual.enabled)
+ * фоновые задачи тоже выполняются на виртуальных потоках, иначе - на платформенных потоках-демонах.
+ */
+public final class BackgroundThreads {
+
+    private BackgroundThreads() {
+    }
+
+    public static ThreadFactory factory(String name, boolean virtual) {
+        return virtual
+                ? Thread.ofVirtual().name(name).factory()
+                : Thread.ofPlatform().name(name).daemon(true).factory();
+    }
+}
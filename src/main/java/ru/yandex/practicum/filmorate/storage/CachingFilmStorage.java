@@ -0,0 +1,211 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Like;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Кэш фильмов по id поверх любого FilmStorage.
+ * Размер ограничен, вытеснение учитывает частоту обращений (W-TinyLFU в Caffeine).
+ * Запись сбрасывается при обновлении, удалении фильма и изменении его лайков.
+ * Пакетная загрузка идёт вне блокировок кэша, поэтому у каждой группы id есть счётчик сбросов: если за время
+ * загрузки фильм сбросили, загруженная запись могла устареть и удаляется сразу после вставки.
+ * Статистика кэша публикуется в метриках под именем кэша films.
+ */
+public class CachingFilmStorage implements FilmStorage, MeterBinder {
+
+    private static final int VERSION_STRIPES = 1024;
+
+    private final FilmStorage delegate;
+    private final Cache<Long, Film> cache;
+    private final AtomicLongArray versions = new AtomicLongArray(VERSION_STRIPES);
+
+    public CachingFilmStorage(FilmStorage delegate, long maxSize, Duration expireAfterWrite) {
+        this.delegate = delegate;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(expireAfterWrite)
+                .recordStats()
+                .build();
+    }
+
+    @Override
+    public Collection<Film> getFilms() {
+        return delegate.getFilms();
+    }
+
+    @Override
+    public List<Film> getFilms(long after, int limit) {
+        return delegate.getFilms(after, limit);
+    }
+
+    @Override
+    public void exportFilms(Consumer<Film> consumer) {
+        delegate.exportFilms(consumer);
+    }
+
+    @Override
+    public Optional<Film> getFilm(Long id) {
+        // Загрузка одного ключа идёт внутри compute кэша, сброс этого ключа дожидается её и удаляет результат
+        return Optional.ofNullable(cache.get(id, key -> delegate.getFilm(key).orElse(null)));
+    }
+
+    @Override
+    public List<Film> getFilmsByIds(List<Long> ids) {
+        Map<Long, Film> films = new HashMap<>(cache.getAllPresent(ids));
+        List<Long> missing = ids.stream()
+                .filter(id -> !films.containsKey(id))
+                .distinct()
+                .toList();
+        if (!missing.isEmpty()) {
+            long[] seen = missing.stream().mapToLong(id -> versions.get(stripe(id))).toArray();
+            Map<Long, Film> loaded = delegate.getFilmsByIds(missing).stream()
+                    .collect(Collectors.toMap(Film::getId, Function.identity()));
+            cache.putAll(loaded);
+            films.putAll(loaded);
+            for (int i = 0; i < missing.size(); i++) {
+                if (versions.get(stripe(missing.get(i))) != seen[i]) {
+                    cache.invalidate(missing.get(i));
+                }
+            }
+        }
+        return ids.stream()
+                .map(films::get)
+                .filter(Objects::nonNull)
+                .toList();
+    }
+
+    @Override
+    public Film createFilm(Film newFilm) {
+        return delegate.createFilm(newFilm);
+    }
+
+    @Override
+    public List<Film> createFilms(List<Film> newFilms) {
+        return delegate.createFilms(newFilms);
+    }
+
+    @Override
+    public Film updateFilm(Film updFilm) {
+        Film film = delegate.updateFilm(updFilm);
+        invalidate(updFilm.getId());
+        return film;
+    }
+
+    @Override
+    public boolean deleteFilm(Long id) {
+        boolean deleted = delegate.deleteFilm(id);
+        invalidate(id);
+        return deleted;
+    }
+
+    @Override
+    public List<Film> getPopularFilms(int count, Integer genreId, Integer year) {
+        return delegate.getPopularFilms(count, genreId, year);
+    }
+
+    @Override
+    public boolean addLike(Long filmId, Long userId) {
+        boolean added = delegate.addLike(filmId, userId);
+        if (added) {
+            invalidate(filmId);
+        }
+        return added;
+    }
+
+    @Override
+    public boolean removeLike(Long filmId, Long userId) {
+        boolean removed = delegate.removeLike(filmId, userId);
+        if (removed) {
+            invalidate(filmId);
+        }
+        return removed;
+    }
+
+    @Override
+    public boolean hasLike(Long filmId, Long userId) {
+        return delegate.hasLike(filmId, userId);
+    }
+
+    @Override
+    public void applyLikes(Collection<Like> added, Collection<Like> removed) {
+        delegate.applyLikes(added, removed);
+        Stream.concat(added.stream(), removed.stream()).map(Like::getFilmId).distinct().forEach(this::invalidate);
+    }
+
+    @Override
+    public void exportLikes(Consumer<Like> consumer) {
+        delegate.exportLikes(consumer);
+    }
+
+    @Override
+    public long countLikes() {
+        return delegate.countLikes();
+    }
+
+    @Override
+    public List<Long> removeUserLikes(Long userId) {
+        List<Long> filmIds = delegate.removeUserLikes(userId);
+        filmIds.forEach(this::invalidate);
+        return filmIds;
+    }
+
+    @Override
+    public int rebuildLikeCounts() {
+        int fixed = delegate.rebuildLikeCounts();
+        invalidateAll();
+        return fixed;
+    }
+
+    public void invalidateAll() {
+        for (int i = 0; i < VERSION_STRIPES; i++) {
+            versions.incrementAndGet(i);
+        }
+        cache.invalidateAll();
+    }
+
+    public CacheStats getStats() {
+        return cache.stats();
+    }
+
+    public long getSize() {
+        return cache.estimatedSize();
+    }
+
+    // Счётчик увеличивается до удаления записи: загрузка, вставившая фильм позже, увидит новый счётчик
+    private void invalidate(long filmId) {
+        versions.incrementAndGet(stripe(filmId));
+        cache.invalidate(filmId);
+    }
+
+    private static int stripe(long filmId) {
+        return Math.floorMod(Long.hashCode(filmId), VERSION_STRIPES);
+    }
+
+    void cleanUp() {
+        cache.cleanUp();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, cache, "films");
+    }
+}
@@ -1,68 +1,155 @@
 package ru.yandex.practicum.filmorate.storage;
 
 import lombok.RequiredArgsConstructor;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.model.Film;
 import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.Like;
+import ru.yandex.practicum.filmorate.model.Mpa;
 import ru.yandex.practicum.filmorate.storage.mapper.FilmRowMapper;
 
+import java.sql.Date;
 import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.util.*;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 @Repository
 @RequiredArgsConstructor
 public class FilmDbStorage implements FilmStorage {
 
+    private static final int EXPORT_FETCH_SIZE = 500;
+    private static final int IN_CHUNK_SIZE = 1000;
+    private static final int BATCH_SIZE = 1000;
+
     private final JdbcTemplate jdbc;
     private final FilmRowMapper filmRowMapper;
+    private final GenreDbStorage genreDbStorage;
+    private final MpaDbStorage mpaDbStorage;
 
     @Override
+    @Transactional(readOnly = true)
     public Collection<Film> getFilms() {
         String query = "SELECT f.id AS film_id, " +
                 "f.name AS film_name, " +
                 "f.description, " +
                 "f.release_date, " +
                 "f.duration, " +
-                "m.id AS mpa_id, " +
-                "m.name AS mpa_name " +
+                "f.like_count, " +
+                "f.mpa_id " +
+                "FROM films f ";
+        return loadGenres(jdbc.query(query, filmRowMapper));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<Film> getFilms(long after, int limit) {
+        String query = "SELECT f.id AS film_id, " +
+                "f.name AS film_name, " +
+                "f.description, " +
+                "f.release_date, " +
+                "f.duration, " +
+                "f.like_count, " +
+                "f.mpa_id " +
+                "FROM films f " +
+                "WHERE f.id > ? " +
+                "ORDER BY f.id " +
+                "LIMIT ?";
+        return loadGenres(jdbc.query(query, filmRowMapper, after, limit));
+    }
+
+    @Override
+    // Курсор и догрузка жанров идут в одной транзакции: иначе каждая выгрузка держала бы два соединения пула
+    @Transactional(readOnly = true)
+    public void exportFilms(Consumer<Film> consumer) {
+        String query = "SELECT f.id AS film_id, " +
+                "f.name AS film_name, " +
+                "f.description, " +
+                "f.release_date, " +
+                "f.duration, " +
+                "f.like_count, " +
+                "f.mpa_id " +
                 "FROM films f " +
-                "JOIN mpa m ON f.mpa_id = m.id ";
-        return jdbc.query(query, filmRowMapper);
+                "ORDER BY f.id";
+        // Жанры догружаем порциями по размеру выборки, чтобы в памяти не было больше одной порции фильмов
+        List<Film> chunk = new ArrayList<>(EXPORT_FETCH_SIZE);
+        jdbc.query(connection -> {
+            PreparedStatement preparedStatement = connection.prepareStatement(query,
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            preparedStatement.setFetchSize(EXPORT_FETCH_SIZE);
+            return preparedStatement;
+        }, resultSet -> {
+            chunk.add(filmRowMapper.mapRow(resultSet, resultSet.getRow()));
+            if (chunk.size() == EXPORT_FETCH_SIZE) {
+                loadGenres(chunk).forEach(consumer);
+                chunk.clear();
+            }
+        });
+        loadGenres(chunk).forEach(consumer);
     }
 
     @Override
+    @Transactional(readOnly = true)
     public Optional<Film> getFilm(Long id) {
         String query = "SELECT f.id AS film_id, " +
                 "f.name AS film_name, " +
                 "f.description, " +
                 "f.release_date, " +
                 "f.duration, " +
-                "m.id AS mpa_id, " +
-                "m.name AS mpa_name " +
+                "f.like_count, " +
+                "f.mpa_id " +
                 "FROM films f " +
-                "JOIN mpa m ON f.mpa_id = m.id " +
                 "WHERE f.id = ?";
         try {
             Film result = jdbc.queryForObject(query, filmRowMapper, id);
-            return Optional.ofNullable(result);
+            loadGenres(List.of(result));
+            return Optional.of(result);
         } catch (EmptyResultDataAccessException e) {
             throw new NotFoundException("Фильм с id " + id + " не найден");
         }
     }
 
+    @Override
+    @Transactional(readOnly = true)
+    public List<Film> getFilmsByIds(List<Long> ids) {
+        Map<Long, Film> films = new HashMap<>();
+        for (int from = 0; from < ids.size(); from += IN_CHUNK_SIZE) {
+            List<Long> chunk = ids.subList(from, Math.min(from + IN_CHUNK_SIZE, ids.size()));
+            String query = "SELECT f.id AS film_id, " +
+                    "f.name AS film_name, " +
+                    "f.description, " +
+                    "f.release_date, " +
+                    "f.duration, " +
+                    "f.like_count, " +
+                    "f.mpa_id " +
+                    "FROM films f " +
+                    "WHERE f.id IN (" + String.join(",", Collections.nCopies(chunk.size(), "?")) + ")";
+            jdbc.query(query, filmRowMapper, chunk.toArray()).forEach(film -> films.put(film.getId(), film));
+        }
+        // Сохраняем порядок запрошенных id, пропуская уже удалённые фильмы
+        return loadGenres(ids.stream()
+                .map(films::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toCollection(ArrayList::new)));
+    }
+
     @Override
     public Film createFilm(Film newFilm) {
         validateFilmRelations(newFilm);
         String query = "INSERT INTO films(name, description, release_date, duration, mpa_id) VALUES (?, ?, ?, ?, ?)";
         KeyHolder keyHolder = new GeneratedKeyHolder();
         jdbc.update(connection -> {
-            PreparedStatement preparedStatement = connection.prepareStatement(query, PreparedStatement.RETURN_GENERATED_KEYS);
+            PreparedStatement preparedStatement = connection.prepareStatement(query, new String[]{"id"});
             preparedStatement.setString(1, newFilm.getName());
             preparedStatement.setString(2, newFilm.getDescription());
             preparedStatement.setString(3, newFilm.getReleaseDate().toString());
@@ -76,10 +163,57 @@ public class FilmDbStorage implements FilmStorage {
             newFilm.setId(filmId);
         }
         addFilmGenres(newFilm);
+        newFilm.setLikeCount(0);
         return newFilm;
     }
 
     @Override
+    @Transactional
+    public List<Film> createFilms(List<Film> newFilms) {
+        newFilms.forEach(this::validateFilmRelations);
+        String query = "INSERT INTO films(name, description, release_date, duration, mpa_id) VALUES (?, ?, ?, ?, ?)";
+        for (int from = 0; from < newFilms.size(); from += BATCH_SIZE) {
+            List<Film> chunk = newFilms.subList(from, Math.min(from + BATCH_SIZE, newFilms.size()));
+            KeyHolder keyHolder = new GeneratedKeyHolder();
+            jdbc.batchUpdate(connection -> connection.prepareStatement(query, new String[]{"id"}),
+                    new BatchPreparedStatementSetter() {
+                        @Override
+                        public void setValues(PreparedStatement preparedStatement, int i) throws SQLException {
+                            Film film = chunk.get(i);
+                            preparedStatement.setString(1, film.getName());
+                            preparedStatement.setString(2, film.getDescription());
+                            preparedStatement.setDate(3, Date.valueOf(film.getReleaseDate()));
+                            preparedStatement.setInt(4, film.getDuration());
+                            preparedStatement.setInt(5, film.getMpa().getId());
+                        }
+
+                        @Override
+                        public int getBatchSize() {
+                            return chunk.size();
+                        }
+                    }, keyHolder);
+            // Ключи возвращаются в порядке строк пакета
+            List<Map<String, Object>> keys = keyHolder.getKeyList();
+            for (int i = 0; i < chunk.size(); i++) {
+                chunk.get(i).setId(((Number) keys.get(i).get("ID")).longValue());
+            }
+        }
+        List<long[]> filmGenres = new ArrayList<>();
+        for (Film film : newFilms) {
+            if (film.getGenres() != null) {
+                film.getGenres().forEach(genre -> filmGenres.add(new long[]{film.getId(), genre.getId()}));
+            }
+        }
+        jdbc.batchUpdate("INSERT INTO film_genres (film_id, genre_id) VALUES (?, ?)", filmGenres, BATCH_SIZE,
+                (ps, pair) -> {
+                    ps.setLong(1, pair[0]);
+                    ps.setLong(2, pair[1]);
+                });
+        return newFilms;
+    }
+
+    @Override
+    @Transactional
     public Film updateFilm(Film updFilm) {
         validateFilmRelations(updFilm);
         String query = "Update films SET name = ?, description = ?, release_date = ?, duration = ?, mpa_id = ? " +
@@ -94,6 +228,9 @@ public class FilmDbStorage implements FilmStorage {
         if (rows > 0) {
             deleteFilmGenres(updFilm);
             addFilmGenres(updFilm);
+            // Счётчик лайков обновлением не меняется, в ответ отдаём сохранённый, а не пришедший в запросе
+            updFilm.setLikeCount(jdbc.queryForObject("SELECT like_count FROM films WHERE id = ?", Integer.class,
+                    updFilm.getId()));
             return updFilm;
         } else {
             return null;
@@ -107,47 +244,154 @@ public class FilmDbStorage implements FilmStorage {
     }
 
     @Override
-    public List<Film> getPopularFilms(int count) {
-        String query = "SELECT f.id AS film_id, " +
+    @Transactional(readOnly = true)
+    public List<Film> getPopularFilms(int count, Integer genreId, Integer year) {
+        StringBuilder query = new StringBuilder("SELECT f.id AS film_id, " +
                 "f.name AS film_name, " +
                 "f.description, " +
                 "f.release_date, " +
                 "f.duration, " +
-                "m.id AS mpa_id, " +
-                "m.name AS mpa_name, " +
-                "COUNT(l.user_id) AS like_count " +
+                "f.like_count, " +
+                "f.mpa_id " +
                 "FROM films f " +
-                "JOIN mpa m ON f.mpa_id = m.id " +
-                "LEFT JOIN likes l ON f.id = l.film_id " +
-                "GROUP BY f.id, f.name, f.description, f.release_date, f.duration, m.id, m.name " +
-                "ORDER BY like_count DESC " +
-                "LIMIT ?";
-        return jdbc.query(query, filmRowMapper, count);
+                "WHERE TRUE ");
+        List<Object> params = new ArrayList<>();
+        if (genreId != null) {
+            query.append("AND f.id IN (SELECT fg.film_id FROM film_genres fg WHERE fg.genre_id = ?) ");
+            params.add(genreId);
+        }
+        if (year != null) {
+            query.append("AND f.release_year = ? ");
+            params.add(year);
+        }
+        query.append("ORDER BY f.like_count DESC, f.id LIMIT ?");
+        params.add(count);
+        return loadGenres(jdbc.query(query.toString(), filmRowMapper, params.toArray()));
     }
 
     @Override
+    @Transactional
     public boolean addLike(Long filmId, Long userId) {
-        String checkQuery = "SELECT COUNT(*) FROM likes WHERE film_id = ? AND user_id = ?";
-        Integer count = jdbc.queryForObject(checkQuery, Integer.class, filmId, userId);
-        if (count == null || count == 0) {
-            String query = "INSERT INTO likes (film_Id, user_id) VALUES (?, ?)";
-            int countInsert = jdbc.update(query, filmId, userId);
-            Film film = getFilm(filmId).orElseThrow();
-            film.getLikes().add(userId);
-            return countInsert > 0;
+        // Вставка только при отсутствии пары, ответ "уже есть" берём из числа вставленных строк
+        String query = "MERGE INTO likes l " +
+                "USING (VALUES (CAST(? AS INT), CAST(? AS INT))) AS v(film_id, user_id) " +
+                "ON l.film_id = v.film_id AND l.user_id = v.user_id " +
+                "WHEN NOT MATCHED THEN INSERT (film_id, user_id) VALUES (v.film_id, v.user_id)";
+        int inserted;
+        try {
+            inserted = jdbc.update(query, filmId, userId);
+        } catch (DuplicateKeyException e) {
+            // Параллельный запрос успел вставить ту же пару
+            return false;
+        }
+        if (inserted > 0) {
+            jdbc.update("UPDATE films SET like_count = like_count + 1 WHERE id = ?", filmId);
         }
-        return false;
+        return inserted > 0;
     }
 
     @Override
+    @Transactional
     public boolean removeLike(Long filmId, Long userId) {
         String query = "DELETE FROM likes WHERE film_id = ? AND user_id = ?";
         int count = jdbc.update(query, filmId, userId);
-        Film film = getFilm(filmId).orElseThrow();
-        film.getLikes().remove(userId);
+        if (count > 0) {
+            jdbc.update("UPDATE films SET like_count = like_count - 1 WHERE id = ?", filmId);
+        }
         return count > 0;
     }
 
+    @Override
+    public boolean hasLike(Long filmId, Long userId) {
+        String query = "SELECT COUNT(*) FROM likes WHERE film_id = ? AND user_id = ?";
+        Integer count = jdbc.queryForObject(query, Integer.class, filmId, userId);
+        return count != null && count > 0;
+    }
+
+    @Override
+    @Transactional
+    public void applyLikes(Collection<Like> added, Collection<Like> removed) {
+        // Лайки удалённых к этому моменту фильмов и пользователей отбрасываются, повторы не вставляются
+        String insertQuery = "INSERT INTO likes (film_id, user_id) " +
+                "SELECT f.id, u.id FROM films f, users u " +
+                "WHERE f.id = ? AND u.id = ? " +
+                "AND NOT EXISTS (SELECT 1 FROM likes l WHERE l.film_id = f.id AND l.user_id = u.id)";
+        String deleteQuery = "DELETE FROM likes WHERE film_id = ? AND user_id = ?";
+        Map<Long, Integer> deltas = new HashMap<>();
+        collectDeltas(deltas, added, jdbc.batchUpdate(insertQuery, added, BATCH_SIZE, (ps, like) -> {
+            ps.setLong(1, like.getFilmId());
+            ps.setLong(2, like.getUserId());
+        }), 1);
+        collectDeltas(deltas, removed, jdbc.batchUpdate(deleteQuery, removed, BATCH_SIZE, (ps, like) -> {
+            ps.setLong(1, like.getFilmId());
+            ps.setLong(2, like.getUserId());
+        }), -1);
+        deltas.values().removeIf(delta -> delta == 0);
+        jdbc.batchUpdate("UPDATE films SET like_count = like_count + ? WHERE id = ?",
+                new ArrayList<>(deltas.entrySet()), BATCH_SIZE, (ps, delta) -> {
+                    ps.setInt(1, delta.getValue());
+                    ps.setLong(2, delta.getKey());
+                });
+    }
+
+    @Override
+    public void exportLikes(Consumer<Like> consumer) {
+        String query = "SELECT film_id, user_id FROM likes";
+        jdbc.query(connection -> {
+            PreparedStatement preparedStatement = connection.prepareStatement(query,
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            preparedStatement.setFetchSize(EXPORT_FETCH_SIZE);
+            return preparedStatement;
+        }, resultSet -> {
+            consumer.accept(new Like(resultSet.getLong("film_id"), resultSet.getLong("user_id")));
+        });
+    }
+
+    @Override
+    public long countLikes() {
+        return jdbc.queryForObject("SELECT COUNT(*) FROM likes", Long.class);
+    }
+
+    @Override
+    @Transactional
+    public List<Long> removeUserLikes(Long userId) {
+        List<Long> filmIds = jdbc.queryForList("SELECT film_id FROM likes WHERE user_id = ?", Long.class, userId);
+        jdbc.update("UPDATE films SET like_count = like_count - 1 " +
+                "WHERE id IN (SELECT film_id FROM likes WHERE user_id = ?)", userId);
+        jdbc.update("DELETE FROM likes WHERE user_id = ?", userId);
+        return filmIds;
+    }
+
+    @Override
+    @Transactional
+    public int rebuildLikeCounts() {
+        String query = "UPDATE films f SET like_count = (SELECT COUNT(*) FROM likes l WHERE l.film_id = f.id) " +
+                "WHERE like_count <> (SELECT COUNT(*) FROM likes l WHERE l.film_id = f.id)";
+        return jdbc.update(query);
+    }
+
+    private void collectDeltas(Map<Long, Integer> deltas, Collection<Like> likes, int[][] counts, int sign) {
+        Iterator<Like> iterator = likes.iterator();
+        for (int[] chunk : counts) {
+            for (int count : chunk) {
+                Like like = iterator.next();
+                if (count > 0) {
+                    deltas.merge(like.getFilmId(), sign, Integer::sum);
+                }
+            }
+        }
+    }
+
+    private List<Film> loadGenres(List<Film> films) {
+        if (films.isEmpty()) {
+            return films;
+        }
+        Map<Long, List<Genre>> genresByFilm = genreDbStorage.getGenresByFilmIds(
+                films.stream().map(Film::getId).toList());
+        films.forEach(film -> film.setGenres(genresByFilm.getOrDefault(film.getId(), new ArrayList<>())));
+        return films;
+    }
+
     private void addFilmGenres(Film film) {
         if (film.getGenres() == null || film.getGenres().isEmpty()) {
             return;
@@ -166,21 +410,19 @@ public class FilmDbStorage implements FilmStorage {
     }
 
     private void validateFilmRelations(Film film) {
-        // Проверка MPA
-        if (jdbc.queryForObject("SELECT COUNT(*) FROM mpa WHERE id = ?", Integer.class, film.getMpa().getId()) == 0) {
-            throw new NotFoundException("Рейтинг MPA с id " + film.getMpa().getId() + " не существует");
-        }
-        // Проверка жанров (если есть)
+        Mpa mpa = mpaDbStorage.getMpa(film.getMpa().getId())
+                .orElseThrow(() -> new NotFoundException("Рейтинг MPA с id " + film.getMpa().getId() + " не существует"));
+        film.setMpa(mpa);
         if (film.getGenres() != null && !film.getGenres().isEmpty()) {
-            Set<Integer> genreIds = film.getGenres().stream()
+            // Повторы убираем, названия подставляем из справочника
+            List<Genre> genres = film.getGenres().stream()
                     .map(Genre::getId)
-                    .collect(Collectors.toSet());
-            int foundGenres = jdbc.queryForObject("SELECT COUNT(*) FROM genres WHERE id IN (" +
-                            genreIds.stream().map(String::valueOf).collect(Collectors.joining(",")) + ")",
-                    Integer.class);
-            if (foundGenres != genreIds.size()) {
-                throw new NotFoundException("Один или несколько жанров не существуют");
-            }
+                    .distinct()
+                    .sorted()
+                    .map(id -> genreDbStorage.getGenre(id)
+                            .orElseThrow(() -> new NotFoundException("Один или несколько жанров не существуют")))
+                    .collect(Collectors.toCollection(ArrayList::new));
+            film.setGenres(genres);
         }
     }
 }
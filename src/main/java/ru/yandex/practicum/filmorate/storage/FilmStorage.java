@@ -1,26 +1,51 @@
 package ru.yandex.practicum.filmorate.storage;
 
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Like;
 
 import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 public interface FilmStorage {
 
     Collection<Film> getFilms();
 
+    List<Film> getFilms(long after, int limit);
+
+    void exportFilms(Consumer<Film> consumer);
+
     Optional<Film> getFilm(Long id);
 
+    List<Film> getFilmsByIds(List<Long> ids);
+
     Film createFilm(Film newFilm);
 
+    List<Film> createFilms(List<Film> newFilms);
+
     Film updateFilm(Film updFilm);
 
     boolean deleteFilm(Long id);
 
-    List<Film> getPopularFilms(int count);
+    List<Film> getPopularFilms(int count, Integer genreId, Integer year);
 
     boolean addLike(Long filmId, Long userId);
 
     boolean removeLike(Long filmId, Long userId);
+
+    boolean hasLike(Long filmId, Long userId);
+
+    void applyLikes(Collection<Like> added, Collection<Like> removed);
+
+    void exportLikes(Consumer<Like> consumer);
+
+    long countLikes();
+
+    /**
+     * Удаляет все лайки пользователя и уменьшает счётчики фильмов, возвращает id этих фильмов.
+     */
+    List<Long> removeUserLikes(Long userId);
+
+    int rebuildLikeCounts();
 }
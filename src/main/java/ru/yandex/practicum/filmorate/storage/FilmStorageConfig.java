@@ -0,0 +1,56 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.stream.IntStream;
+
+@Configuration
+public class FilmStorageConfig {
+
+    @Bean
+    @Primary
+    public CachingFilmStorage filmStorage(FilmDbStorage filmDbStorage,
+                                          Optional<ShardedLikesFilmStorage> shardedLikesFilmStorage,
+                                          @Value("${filmorate.cache.films.max-size:10000}") long maxSize,
+                                          @Value("${filmorate.cache.films.expire-after-write:10m}") Duration ttl) {
+        FilmStorage storage = shardedLikesFilmStorage.<FilmStorage>map(sharded -> sharded).orElse(filmDbStorage);
+        CachingFilmStorage cachingFilmStorage = new CachingFilmStorage(storage, maxSize, ttl);
+        shardedLikesFilmStorage.ifPresent(sharded -> sharded.onCountsRepaired(cachingFilmStorage::invalidateAll));
+        return cachingFilmStorage;
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "filmorate.likes.shards.enabled", havingValue = "true")
+    public ShardedLikesFilmStorage shardedLikesFilmStorage(FilmDbStorage filmDbStorage, JdbcTemplate jdbc,
+                                                           DataSourceProperties properties,
+                                                           @Value("${filmorate.likes.shards.urls}") List<String> urls,
+                                                           @Value("${filmorate.likes.shards.pool-size:4}") int poolSize,
+                                                           @Value("${spring.threads.virtual.enabled:false}")
+                                                           boolean virtualThreads) {
+        List<DataSource> shards = IntStream.range(0, urls.size())
+                .mapToObj(i -> {
+                    HikariDataSource dataSource = properties.initializeDataSourceBuilder()
+                            .type(HikariDataSource.class)
+                            .url(urls.get(i))
+                            .build();
+                    dataSource.setPoolName("likes-shard-" + i);
+                    dataSource.setMaximumPoolSize(poolSize);
+                    return (DataSource) dataSource;
+                })
+                .toList();
+        return new ShardedLikesFilmStorage(filmDbStorage, jdbc, shards, Executors.newFixedThreadPool(
+                urls.size() * poolSize, BackgroundThreads.factory("likes-shards", virtualThreads)));
+    }
+}
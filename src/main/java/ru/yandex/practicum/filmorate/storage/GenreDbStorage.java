@@ -1,48 +1,72 @@
 package ru.yandex.practicum.filmorate.storage;
 
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
-import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Repository;
 import ru.yandex.practicum.filmorate.model.Genre;
 import ru.yandex.practicum.filmorate.storage.mapper.GenreRowMapper;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
 
 @Repository
 @RequiredArgsConstructor
 public class GenreDbStorage {
 
+    private static final int IN_CHUNK_SIZE = 1000;
+
     private final JdbcTemplate jdbc;
     private final GenreRowMapper genreRowMapper;
 
+    // Справочник жанров читается из базы один раз и подменяется целиком при изменениях
+    private final AtomicReference<Map<Integer, Genre>> genres = new AtomicReference<>(Map.of());
+
+    @PostConstruct
+    public void reload() {
+        Map<Integer, Genre> snapshot = new LinkedHashMap<>();
+        jdbc.query("SELECT * FROM genres ORDER BY id", genreRowMapper)
+                .forEach(genre -> snapshot.put(genre.getId(), genre));
+        genres.set(Collections.unmodifiableMap(snapshot));
+    }
+
     public List<Genre> getGenres() {
-        String query = "SELECT * FROM genres";
-        return jdbc.query(query, genreRowMapper);
+        return new ArrayList<>(genres.get().values());
     }
 
     public Optional<Genre> getGenre(Integer id) {
-        String query = "SELECT * FROM genres WHERE id = ?";
-        try {
-            Genre result = jdbc.queryForObject(query, genreRowMapper, id);
-            return Optional.ofNullable(result);
-        } catch (EmptyResultDataAccessException e) {
-            return Optional.empty();
-        }
+        return Optional.ofNullable(genres.get().get(id));
     }
 
-    public List<Genre> getGenresByFilmId(Long filmId) {
-        String sql = "SELECT g.id, g.name " +
-                "FROM genres g " +
-                "JOIN film_genres fg ON g.id = fg.genre_id " +
-                "WHERE fg.film_id = ?";
-        return jdbc.query(sql, genreRowMapper, filmId);
+    public Map<Long, List<Genre>> getGenresByFilmIds(Collection<Long> filmIds) {
+        Map<Integer, Genre> snapshot = genres.get();
+        Map<Long, List<Genre>> result = new HashMap<>();
+        List<Long> ids = new ArrayList<>(filmIds);
+        for (int from = 0; from < ids.size(); from += IN_CHUNK_SIZE) {
+            List<Long> chunk = ids.subList(from, Math.min(from + IN_CHUNK_SIZE, ids.size()));
+            String sql = "SELECT film_id, genre_id " +
+                    "FROM film_genres " +
+                    "WHERE film_id IN (" + String.join(",", Collections.nCopies(chunk.size(), "?")) + ") " +
+                    "ORDER BY film_id, genre_id";
+            jdbc.query(sql, resultSet -> {
+                result.computeIfAbsent(resultSet.getLong("film_id"), id -> new ArrayList<>())
+                        .add(snapshot.get(resultSet.getInt("genre_id")));
+            }, chunk.toArray());
+        }
+        return result;
     }
 
     public Genre create(Genre genre) {
         String query = "INSERT INTO genres (name) VALUES (?)";
         jdbc.update(query, genre.getName());
+        reload();
         return genre;
     }
 }
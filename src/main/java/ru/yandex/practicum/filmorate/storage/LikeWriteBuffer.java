@@ -0,0 +1,212 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.Like;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Отложенная запись лайков. Изменения копятся в памяти, повторные переключения одной пары
+ * (фильм, пользователь) схлопываются, а фоновый поток пишет их пачкой по размеру или по таймеру.
+ * Для каждой пары помнится состояние в базе на момент первого изменения, поэтому проверка
+ * повторного лайка идёт по памяти. Базу читает только изменение пары, которой нет ни в очереди,
+ * ни в записываемой пачке. Неудачная пачка возвращается в очередь, а ошибка пробрасывается
+ * вызвавшему {@link #flush()}: изменения, о которых клиенту уже ответили, не теряются молча.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "filmorate.likes.write-behind.enabled", havingValue = "true")
+public class LikeWriteBuffer {
+
+    private static final int SHUTDOWN_FLUSH_ATTEMPTS = 3;
+
+    private final FilmStorage storage;
+    private final int batchSize;
+    private final int capacity;
+    private final ScheduledExecutorService flusher;
+
+    private final Map<Like, Change> pending = new ConcurrentHashMap<>();
+    // Пары, которые сейчас пишутся в базу, с целевым состоянием
+    private final Map<Like, Boolean> inFlight = new ConcurrentHashMap<>();
+    private final AtomicLong flushes = new AtomicLong();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    // ReentrantLock вместо synchronized: запись в базу под монитором закрепила бы виртуальный поток за носителем
+    private final Lock flushLock = new ReentrantLock();
+
+    public LikeWriteBuffer(FilmStorage storage,
+                           @Value("${filmorate.likes.write-behind.batch-size:500}") int batchSize,
+                           @Value("${filmorate.likes.write-behind.capacity:10000}") int capacity,
+                           @Value("${filmorate.likes.write-behind.flush-interval:200ms}") Duration flushInterval,
+                           @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        this.storage = storage;
+        this.batchSize = batchSize;
+        this.capacity = capacity;
+        this.flusher = Executors.newSingleThreadScheduledExecutor(
+                BackgroundThreads.factory("like-write-behind", virtualThreads));
+        long interval = flushInterval.toMillis();
+        flusher.scheduleWithFixedDelay(this::flushQuietly, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    public boolean addLike(Long filmId, Long userId) {
+        return change(new Like(filmId, userId), true);
+    }
+
+    public boolean removeLike(Long filmId, Long userId) {
+        return change(new Like(filmId, userId), false);
+    }
+
+    public int getPendingCount() {
+        return pending.size();
+    }
+
+    public void flush() {
+        flushLock.lock();
+        try {
+            flushPending();
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    private void flushPending() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        Map<Like, Change> batch = new HashMap<>();
+        for (Like like : pending.keySet()) {
+            pending.computeIfPresent(like, (key, change) -> {
+                inFlight.put(key, change.liked());
+                batch.put(key, change);
+                return null;
+            });
+        }
+        List<Like> added = new ArrayList<>();
+        List<Like> removed = new ArrayList<>();
+        batch.forEach((like, change) -> (change.liked() ? added : removed).add(like));
+        try {
+            storage.applyLikes(added, removed);
+            log.debug("Записано лайков: {}, удалено: {}", added.size(), removed.size());
+        } catch (RuntimeException e) {
+            // Пока пачка писалась, пары могли измениться снова от незаписанного состояния:
+            // базой для них остаётся то, что лежит в базе на самом деле
+            batch.forEach((like, failed) -> pending.compute(like, (key, newer) -> {
+                inFlight.remove(key);
+                if (newer == null) {
+                    return failed;
+                }
+                return newer.liked() == failed.persisted() ? null : new Change(newer.liked(), failed.persisted());
+            }));
+            log.error("Не удалось записать пачку лайков, изменения возвращены в очередь: {}", batch.size());
+            throw e;
+        } finally {
+            // Счётчик растёт до очистки inFlight: изменение, прочитавшее базу до записи, заметит это и перечитает
+            flushes.incrementAndGet();
+            inFlight.clear();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        flusher.shutdown();
+        flusher.awaitTermination(10, TimeUnit.SECONDS);
+        for (int attempt = 1; ; attempt++) {
+            try {
+                flush();
+                break;
+            } catch (RuntimeException e) {
+                if (attempt == SHUTDOWN_FLUSH_ATTEMPTS) {
+                    log.error("Буфер лайков не сброшен в базу при остановке, потеряно изменений: {}",
+                            pending.size(), e);
+                    throw e;
+                }
+                TimeUnit.MILLISECONDS.sleep(500L * attempt);
+            }
+        }
+        log.info("Буфер лайков сброшен в базу при остановке");
+    }
+
+    private boolean change(Like like, boolean liked) {
+        if (pending.size() >= capacity) {
+            // Очередь переполнена: пишем в базу в потоке запроса, чтобы не расти без предела
+            flush();
+        }
+        while (true) {
+            long version = flushes.get();
+            // База читается заранее и только для незнакомой пары: запрос внутри compute держал бы блокировку карты
+            Boolean stored = pending.containsKey(like) || inFlight.containsKey(like)
+                    ? null : storage.hasLike(like.getFilmId(), like.getUserId());
+            AtomicBoolean changed = new AtomicBoolean();
+            AtomicBoolean stale = new AtomicBoolean();
+            pending.compute(like, (key, change) -> {
+                Boolean base = base(key, change, stored, version);
+                if (base == null) {
+                    stale.set(true);
+                    return null;
+                }
+                boolean state = change != null ? change.liked() : base;
+                if (state == liked) {
+                    return change;
+                }
+                changed.set(true);
+                return liked == base ? null : new Change(liked, base);
+            });
+            if (stale.get()) {
+                continue;
+            }
+            if (pending.size() >= batchSize && flushScheduled.compareAndSet(false, true)) {
+                flusher.execute(() -> {
+                    flushScheduled.set(false);
+                    flushQuietly();
+                });
+            }
+            return changed.get();
+        }
+    }
+
+    /**
+     * Состояние пары в базе, от которого считается изменение, или null, если прочитанное заранее устарело.
+     * Вызывается внутри compute по паре, поэтому пачка не может забрать её из очереди посередине.
+     */
+    private Boolean base(Like like, Change change, Boolean stored, long version) {
+        if (change != null) {
+            // Изменение в очереди уже помнит базу, в том числе исправленную после неудачной записи
+            return change.persisted();
+        }
+        Boolean flushing = inFlight.get(like);
+        if (flushing != null) {
+            return flushing;
+        }
+        if (stored == null || flushes.get() != version) {
+            // Пара ушла в пачку и записалась, пока читали базу, - читаем заново
+            return null;
+        }
+        return stored;
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            log.error("Ошибка фоновой записи лайков", e);
+        }
+    }
+
+    private record Change(boolean liked, boolean persisted) {
+    }
+}
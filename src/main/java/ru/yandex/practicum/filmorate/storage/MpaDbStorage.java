@@ -1,14 +1,19 @@
 package ru.yandex.practicum.filmorate.storage;
 
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
-import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Repository;
 import ru.yandex.practicum.filmorate.model.Mpa;
 import ru.yandex.practicum.filmorate.storage.mapper.MpaRowMapper;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
 
 @Repository
 @RequiredArgsConstructor
@@ -17,18 +22,22 @@ public class MpaDbStorage {
     private final JdbcTemplate jdbc;
     private final MpaRowMapper mpaRowMapper;
 
+    // Справочник рейтингов неизменяем, поэтому читается из базы один раз
+    private final AtomicReference<Map<Integer, Mpa>> ratings = new AtomicReference<>(Map.of());
+
+    @PostConstruct
+    public void reload() {
+        Map<Integer, Mpa> snapshot = new LinkedHashMap<>();
+        jdbc.query("SELECT id AS mpa_id, name AS mpa_name FROM mpa ORDER BY id", mpaRowMapper)
+                .forEach(mpa -> snapshot.put(mpa.getId(), mpa));
+        ratings.set(Collections.unmodifiableMap(snapshot));
+    }
+
     public List<Mpa> getAllMpa() {
-        String query = "SELECT id AS mpa_id, name AS mpa_name FROM mpa";
-        return jdbc.query(query, mpaRowMapper);
+        return new ArrayList<>(ratings.get().values());
     }
 
     public Optional<Mpa> getMpa(Integer id) {
-        String query = "SELECT id AS mpa_id, name AS mpa_name FROM mpa WHERE id = ?";
-        try {
-            Mpa result = jdbc.queryForObject(query, mpaRowMapper, id);
-            return Optional.ofNullable(result);
-        } catch (EmptyResultDataAccessException e) {
-            return Optional.empty();
-        }
+        return Optional.ofNullable(ratings.get().get(id));
     }
 }
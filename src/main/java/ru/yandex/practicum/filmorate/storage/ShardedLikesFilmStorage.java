@@ -0,0 +1,520 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Like;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.io.IOException;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Лайки, разложенные по нескольким базам по film_id. У каждой шарды свой пул соединений, своя таблица
+ * лайков и счётчики лайков её фильмов, поэтому запись лайков разных фильмов не упирается в один файл.
+ * Фильмы остаются в основной базе. Её films.like_count обновляется следом за шардой, чтобы рейтинг,
+ * кэш и отбор по жанру и году работали как раньше. Топ без фильтров собирается из топов шард, которые
+ * запрашиваются параллельно. Шарда и основная база не связаны одной транзакцией: если после записи
+ * в шарду не удалось обновить films.like_count, ошибка пишется в лог, а счётчики в фоне выравнивает
+ * rebuildLikeCounts.
+ */
+@Slf4j
+public class ShardedLikesFilmStorage implements FilmStorage, Closeable {
+
+    private static final int BATCH_SIZE = 1000;
+    private static final int IN_CHUNK_SIZE = 1000;
+    private static final int EXPORT_FETCH_SIZE = 500;
+    private static final String INSERT_LIKE = "MERGE INTO likes l " +
+            "USING (VALUES (CAST(? AS INT), CAST(? AS INT))) AS v(film_id, user_id) " +
+            "ON l.film_id = v.film_id AND l.user_id = v.user_id " +
+            "WHEN NOT MATCHED THEN INSERT (film_id, user_id) VALUES (v.film_id, v.user_id)";
+    private static final RowMapper<FilmLikes> FILM_LIKES_MAPPER = (resultSet, rowNum) ->
+            new FilmLikes(resultSet.getLong("film_id"), resultSet.getInt("like_count"));
+    private static final Comparator<FilmLikes> POPULARITY = Comparator.comparingInt(FilmLikes::likes)
+            .reversed()
+            .thenComparingLong(FilmLikes::filmId);
+
+    private final FilmStorage delegate;
+    private final JdbcTemplate jdbc;
+    private final List<Shard> shards;
+    private final ExecutorService executor;
+    // Отдельный поток: пересчёт сам ждёт задачи в executor и не должен занимать его потоки
+    private final ExecutorService repairExecutor = Executors.newSingleThreadExecutor(
+            BackgroundThreads.factory("likes-counts-repair", false));
+    private final AtomicInteger repairRequests = new AtomicInteger();
+    private volatile Runnable afterRepair = () -> {
+    };
+
+    public ShardedLikesFilmStorage(FilmStorage delegate, JdbcTemplate jdbc, List<DataSource> shardDataSources,
+                                   ExecutorService executor) {
+        if (shardDataSources.isEmpty()) {
+            throw new IllegalArgumentException("Не задано ни одной шарды лайков");
+        }
+        this.delegate = delegate;
+        this.jdbc = jdbc;
+        this.shards = shardDataSources.stream().map(Shard::new).toList();
+        this.executor = executor;
+    }
+
+    /**
+     * Создаёт таблицы шард. Если шарды пусты или в основной базе остались лайки, переносит их в шарды.
+     */
+    @PostConstruct
+    public void init() {
+        ResourceDatabasePopulator populator = new ResourceDatabasePopulator(
+                new ClassPathResource("likes-shard-schema.sql"));
+        shards.forEach(shard -> populator.execute(shard.dataSource()));
+        boolean empty = scatter(shards, shard -> shard.jdbc().queryForObject(
+                "SELECT COUNT(*) FROM film_likes", Long.class)).stream().allMatch(count -> count == 0);
+        // Лайки в основной базе при непустых шардах остаются от прерванного переноса, перенос повторяется
+        boolean leftover = Boolean.TRUE.equals(jdbc.queryForObject("SELECT EXISTS (SELECT 1 FROM likes)",
+                Boolean.class));
+        if (empty || leftover) {
+            migrateFromPrimary();
+        }
+    }
+
+    /**
+     * Задаёт действие после фонового пересчёта счётчиков, например сброс кэша фильмов.
+     */
+    public void onCountsRepaired(Runnable afterRepair) {
+        this.afterRepair = afterRepair;
+    }
+
+    /**
+     * Очищает шарды и заново переносит в них лайки из основной базы, когда её данные заменены целиком.
+     */
+    public void reload() {
+        scatter(shards, shard -> {
+            shard.jdbc().execute("TRUNCATE TABLE likes");
+            shard.jdbc().execute("TRUNCATE TABLE film_likes");
+            return null;
+        });
+        migrateFromPrimary();
+    }
+
+    @Override
+    public Collection<Film> getFilms() {
+        return delegate.getFilms();
+    }
+
+    @Override
+    public List<Film> getFilms(long after, int limit) {
+        return delegate.getFilms(after, limit);
+    }
+
+    @Override
+    public void exportFilms(Consumer<Film> consumer) {
+        delegate.exportFilms(consumer);
+    }
+
+    @Override
+    public Optional<Film> getFilm(Long id) {
+        return delegate.getFilm(id);
+    }
+
+    @Override
+    public List<Film> getFilmsByIds(List<Long> ids) {
+        return delegate.getFilmsByIds(ids);
+    }
+
+    @Override
+    public Film createFilm(Film newFilm) {
+        Film film = delegate.createFilm(newFilm);
+        shardOf(film.getId()).jdbc().update("INSERT INTO film_likes (film_id) VALUES (?)", film.getId());
+        return film;
+    }
+
+    @Override
+    public List<Film> createFilms(List<Film> newFilms) {
+        List<Film> films = delegate.createFilms(newFilms);
+        Map<Shard, List<Long>> filmIds = films.stream()
+                .collect(Collectors.groupingBy(film -> shardOf(film.getId()),
+                        Collectors.mapping(Film::getId, Collectors.toList())));
+        filmIds.forEach((shard, ids) -> shard.jdbc().batchUpdate("INSERT INTO film_likes (film_id) VALUES (?)",
+                ids, BATCH_SIZE, (ps, id) -> ps.setLong(1, id)));
+        return films;
+    }
+
+    @Override
+    public Film updateFilm(Film updFilm) {
+        return delegate.updateFilm(updFilm);
+    }
+
+    @Override
+    public boolean deleteFilm(Long id) {
+        boolean deleted = delegate.deleteFilm(id);
+        Shard shard = shardOf(id);
+        shard.transaction().executeWithoutResult(status -> {
+            shard.jdbc().update("DELETE FROM likes WHERE film_id = ?", id);
+            shard.jdbc().update("DELETE FROM film_likes WHERE film_id = ?", id);
+        });
+        return deleted;
+    }
+
+    @Override
+    public List<Film> getPopularFilms(int count, Integer genreId, Integer year) {
+        if (genreId != null || year != null) {
+            // Жанров и годов в шардах нет, отбор делает основная база по своей копии счётчиков
+            return delegate.getPopularFilms(count, genreId, year);
+        }
+        // Фильм целиком лежит в одной шарде, поэтому общий топ - это лучшие из топов шард
+        List<Long> top = scatter(shards, shard -> shard.jdbc().query(
+                "SELECT film_id, like_count FROM film_likes ORDER BY like_count DESC, film_id LIMIT ?",
+                FILM_LIKES_MAPPER, count)).stream()
+                .flatMap(List::stream)
+                .sorted(POPULARITY)
+                .limit(count)
+                .map(FilmLikes::filmId)
+                .toList();
+        return delegate.getFilmsByIds(top);
+    }
+
+    @Override
+    public boolean addLike(Long filmId, Long userId) {
+        Shard shard = shardOf(filmId);
+        boolean added = Boolean.TRUE.equals(shard.transaction().execute(status -> {
+            int inserted;
+            try {
+                inserted = shard.jdbc().update(INSERT_LIKE, filmId, userId);
+            } catch (DuplicateKeyException e) {
+                // Параллельный запрос успел вставить ту же пару
+                return false;
+            }
+            if (inserted > 0) {
+                changeShardCount(shard, filmId, 1);
+            }
+            return inserted > 0;
+        }));
+        if (added) {
+            updatePrimaryCounts(() -> jdbc.update("UPDATE films SET like_count = like_count + 1 WHERE id = ?",
+                    filmId));
+        }
+        return added;
+    }
+
+    @Override
+    public boolean removeLike(Long filmId, Long userId) {
+        Shard shard = shardOf(filmId);
+        boolean removed = Boolean.TRUE.equals(shard.transaction().execute(status -> {
+            int deleted = shard.jdbc().update("DELETE FROM likes WHERE film_id = ? AND user_id = ?", filmId, userId);
+            if (deleted > 0) {
+                changeShardCount(shard, filmId, -1);
+            }
+            return deleted > 0;
+        }));
+        if (removed) {
+            updatePrimaryCounts(() -> jdbc.update("UPDATE films SET like_count = like_count - 1 WHERE id = ?",
+                    filmId));
+        }
+        return removed;
+    }
+
+    @Override
+    public boolean hasLike(Long filmId, Long userId) {
+        Integer count = shardOf(filmId).jdbc().queryForObject(
+                "SELECT COUNT(*) FROM likes WHERE film_id = ? AND user_id = ?", Integer.class, filmId, userId);
+        return count != null && count > 0;
+    }
+
+    @Override
+    public void applyLikes(Collection<Like> added, Collection<Like> removed) {
+        // Лайки удалённых к этому моменту пользователей отбрасываются, удалённых фильмов - отсекает шарда
+        Set<Long> userIds = existingUserIds(added.stream().map(Like::getUserId).collect(Collectors.toSet()));
+        Map<Shard, List<Like>> addedByShard = added.stream()
+                .filter(like -> userIds.contains(like.getUserId()))
+                .collect(Collectors.groupingBy(like -> shardOf(like.getFilmId())));
+        Map<Shard, List<Like>> removedByShard = removed.stream()
+                .collect(Collectors.groupingBy(like -> shardOf(like.getFilmId())));
+        Set<Shard> touched = new HashSet<>(addedByShard.keySet());
+        touched.addAll(removedByShard.keySet());
+
+        Map<Long, Integer> deltas = new HashMap<>();
+        scatter(touched, shard -> shard.transaction().execute(status -> applyLikes(shard,
+                addedByShard.getOrDefault(shard, List.of()), removedByShard.getOrDefault(shard, List.of()))))
+                .forEach(shardDeltas -> deltas.putAll(shardDeltas));
+        updatePrimaryCounts(() -> jdbc.batchUpdate("UPDATE films SET like_count = like_count + ? WHERE id = ?",
+                new ArrayList<>(deltas.entrySet()), BATCH_SIZE, (ps, delta) -> {
+                    ps.setInt(1, delta.getValue());
+                    ps.setLong(2, delta.getKey());
+                }));
+    }
+
+    @Override
+    public void exportLikes(Consumer<Like> consumer) {
+        for (Shard shard : shards) {
+            shard.jdbc().query(connection -> {
+                PreparedStatement preparedStatement = connection.prepareStatement(
+                        "SELECT film_id, user_id FROM likes", ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                preparedStatement.setFetchSize(EXPORT_FETCH_SIZE);
+                return preparedStatement;
+            }, resultSet -> {
+                consumer.accept(new Like(resultSet.getLong("film_id"), resultSet.getLong("user_id")));
+            });
+        }
+    }
+
+    @Override
+    public long countLikes() {
+        return scatter(shards, shard -> shard.jdbc().queryForObject("SELECT COUNT(*) FROM likes", Long.class))
+                .stream()
+                .mapToLong(Long::longValue)
+                .sum();
+    }
+
+    @Override
+    public List<Long> removeUserLikes(Long userId) {
+        List<Long> filmIds = scatter(shards, shard -> shard.transaction().execute(status -> {
+            List<Long> liked = shard.jdbc().queryForList("SELECT film_id FROM likes WHERE user_id = ?",
+                    Long.class, userId);
+            shard.jdbc().update("UPDATE film_likes SET like_count = like_count - 1 " +
+                    "WHERE film_id IN (SELECT film_id FROM likes WHERE user_id = ?)", userId);
+            shard.jdbc().update("DELETE FROM likes WHERE user_id = ?", userId);
+            return liked;
+        })).stream()
+                .flatMap(List::stream)
+                .toList();
+        updatePrimaryCounts(() -> jdbc.batchUpdate("UPDATE films SET like_count = like_count - 1 WHERE id = ?",
+                filmIds, BATCH_SIZE, (ps, filmId) -> ps.setLong(1, filmId)));
+        return filmIds;
+    }
+
+    @Override
+    public int rebuildLikeCounts() {
+        List<List<FilmLikes>> counts = scatter(shards, shard -> {
+            int fixed = shard.jdbc().update("UPDATE film_likes f " +
+                    "SET like_count = (SELECT COUNT(*) FROM likes l WHERE l.film_id = f.film_id) " +
+                    "WHERE like_count <> (SELECT COUNT(*) FROM likes l WHERE l.film_id = f.film_id)");
+            if (fixed > 0) {
+                log.warn("В шарде лайков исправлено счётчиков: {}", fixed);
+            }
+            return shard.jdbc().query("SELECT film_id, like_count FROM film_likes", FILM_LIKES_MAPPER);
+        });
+        int fixed = 0;
+        for (List<FilmLikes> shardCounts : counts) {
+            for (int[] chunk : jdbc.batchUpdate("UPDATE films SET like_count = ? WHERE id = ? AND like_count <> ?",
+                    shardCounts, BATCH_SIZE, (ps, filmLikes) -> {
+                        ps.setInt(1, filmLikes.likes());
+                        ps.setLong(2, filmLikes.filmId());
+                        ps.setInt(3, filmLikes.likes());
+                    })) {
+                for (int updated : chunk) {
+                    fixed += updated;
+                }
+            }
+        }
+        return fixed;
+    }
+
+    @Override
+    public void close() {
+        repairExecutor.shutdown();
+        executor.shutdown();
+        for (Shard shard : shards) {
+            if (shard.dataSource() instanceof Closeable closeable) {
+                try {
+                    closeable.close();
+                } catch (IOException e) {
+                    log.warn("Не удалось закрыть пул шарды лайков", e);
+                }
+            }
+        }
+    }
+
+    private Shard shardOf(long filmId) {
+        return shards.get(Math.floorMod(Long.hashCode(filmId), shards.size()));
+    }
+
+    // Шарда уже зафиксирована, поэтому ошибка основной базы не откатывает операцию, а ставит пересчёт
+    private void updatePrimaryCounts(Runnable update) {
+        try {
+            update.run();
+        } catch (RuntimeException e) {
+            log.error("Не удалось обновить films.like_count после записи в шарду лайков, " +
+                    "счётчики будут пересчитаны", e);
+            scheduleRepair();
+        }
+    }
+
+    private void scheduleRepair() {
+        if (repairRequests.getAndIncrement() > 0) {
+            // Пересчёт уже запланирован или идёт и повторится, увидев новый запрос
+            return;
+        }
+        repairExecutor.execute(() -> {
+            int requests;
+            do {
+                requests = repairRequests.get();
+                try {
+                    int fixed = rebuildLikeCounts();
+                    log.info("Фоновый пересчёт счётчиков лайков, исправлено фильмов: {}", fixed);
+                    afterRepair.run();
+                } catch (RuntimeException e) {
+                    log.error("Фоновый пересчёт счётчиков лайков не удался, " +
+                            "запустите POST /admin/like-counts/rebuild", e);
+                }
+            } while (!repairRequests.compareAndSet(requests, 0));
+        });
+    }
+
+    private void changeShardCount(Shard shard, long filmId, int delta) {
+        // Строка счётчика создаётся вместе с фильмом, вставка нужна только если её не успели создать
+        if (shard.jdbc().update("UPDATE film_likes SET like_count = like_count + ? WHERE film_id = ?",
+                delta, filmId) == 0) {
+            shard.jdbc().update("INSERT INTO film_likes (film_id, like_count) VALUES (?, ?)", filmId,
+                    Math.max(delta, 0));
+        }
+    }
+
+    private Map<Long, Integer> applyLikes(Shard shard, List<Like> added, List<Like> removed) {
+        Map<Long, Integer> deltas = new HashMap<>();
+        collectDeltas(deltas, added, shard.jdbc().batchUpdate("INSERT INTO likes (film_id, user_id) " +
+                "SELECT f.film_id, ? FROM film_likes f WHERE f.film_id = ? " +
+                "AND NOT EXISTS (SELECT 1 FROM likes l WHERE l.film_id = f.film_id AND l.user_id = ?)",
+                added, BATCH_SIZE, (ps, like) -> {
+                    ps.setLong(1, like.getUserId());
+                    ps.setLong(2, like.getFilmId());
+                    ps.setLong(3, like.getUserId());
+                }), 1);
+        collectDeltas(deltas, removed, shard.jdbc().batchUpdate(
+                "DELETE FROM likes WHERE film_id = ? AND user_id = ?", removed, BATCH_SIZE, (ps, like) -> {
+                    ps.setLong(1, like.getFilmId());
+                    ps.setLong(2, like.getUserId());
+                }), -1);
+        deltas.values().removeIf(delta -> delta == 0);
+        shard.jdbc().batchUpdate("UPDATE film_likes SET like_count = like_count + ? WHERE film_id = ?",
+                new ArrayList<>(deltas.entrySet()), BATCH_SIZE, (ps, delta) -> {
+                    ps.setInt(1, delta.getValue());
+                    ps.setLong(2, delta.getKey());
+                });
+        return deltas;
+    }
+
+    private void collectDeltas(Map<Long, Integer> deltas, Collection<Like> likes, int[][] counts, int sign) {
+        Iterator<Like> iterator = likes.iterator();
+        for (int[] chunk : counts) {
+            for (int count : chunk) {
+                Like like = iterator.next();
+                if (count > 0) {
+                    deltas.merge(like.getFilmId(), sign, Integer::sum);
+                }
+            }
+        }
+    }
+
+    private Set<Long> existingUserIds(Set<Long> userIds) {
+        List<Long> ids = new ArrayList<>(userIds);
+        Set<Long> existing = new HashSet<>();
+        for (int from = 0; from < ids.size(); from += IN_CHUNK_SIZE) {
+            List<Long> chunk = ids.subList(from, Math.min(from + IN_CHUNK_SIZE, ids.size()));
+            String query = "SELECT id FROM users WHERE id IN (" +
+                    String.join(",", Collections.nCopies(chunk.size(), "?")) + ")";
+            existing.addAll(jdbc.queryForList(query, Long.class, chunk.toArray()));
+        }
+        return existing;
+    }
+
+    private void migrateFromPrimary() {
+        Map<Shard, List<Long>> filmIds = jdbc.queryForList("SELECT id FROM films", Long.class).stream()
+                .collect(Collectors.groupingBy(this::shardOf));
+        filmIds.forEach((shard, ids) -> shard.jdbc().batchUpdate(
+                "MERGE INTO film_likes (film_id) KEY (film_id) VALUES (?)",
+                ids, BATCH_SIZE, (ps, id) -> ps.setLong(1, id)));
+
+        Map<Shard, List<Like>> buffers = new HashMap<>();
+        long[] copied = new long[1];
+        jdbc.query(connection -> {
+            PreparedStatement preparedStatement = connection.prepareStatement("SELECT film_id, user_id FROM likes",
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            preparedStatement.setFetchSize(EXPORT_FETCH_SIZE);
+            return preparedStatement;
+        }, resultSet -> {
+            Like like = new Like(resultSet.getLong("film_id"), resultSet.getLong("user_id"));
+            Shard shard = shardOf(like.getFilmId());
+            List<Like> buffer = buffers.computeIfAbsent(shard, key -> new ArrayList<>(BATCH_SIZE));
+            buffer.add(like);
+            if (buffer.size() == BATCH_SIZE) {
+                copyLikes(shard, buffer);
+                buffer.clear();
+            }
+            copied[0]++;
+        });
+        buffers.forEach(this::copyLikes);
+        shards.forEach(shard -> shard.jdbc().update("UPDATE film_likes f " +
+                "SET like_count = (SELECT COUNT(*) FROM likes l WHERE l.film_id = f.film_id)"));
+        // Перенесённые лайки больше не читаются из основной базы. Оставленные там, они бы устарели,
+        // а удаление пользователя уменьшило бы по ним счётчики фильмов второй раз
+        jdbc.execute("TRUNCATE TABLE likes");
+        log.info("Лайки перенесены в шарды: фильмов {}, лайков {}, шард {}",
+                filmIds.values().stream().mapToInt(List::size).sum(), copied[0], shards.size());
+    }
+
+    private void copyLikes(Shard shard, List<Like> likes) {
+        // MERGE: после прерванного переноса часть лайков уже лежит в шарде
+        shard.jdbc().batchUpdate(INSERT_LIKE, likes, BATCH_SIZE,
+                (ps, like) -> {
+                    ps.setLong(1, like.getFilmId());
+                    ps.setLong(2, like.getUserId());
+                });
+    }
+
+    private <T> List<T> scatter(Collection<Shard> targets, Function<Shard, T> task) {
+        List<Future<T>> futures = targets.stream()
+                .map(shard -> executor.submit(() -> task.apply(shard)))
+                .toList();
+        List<T> results = new ArrayList<>(futures.size());
+        for (Future<T> future : futures) {
+            try {
+                results.add(future.get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Запрос к шардам лайков прерван", e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof RuntimeException runtimeException) {
+                    throw runtimeException;
+                }
+                throw new IllegalStateException(e.getCause());
+            }
+        }
+        return results;
+    }
+
+    private record Shard(DataSource dataSource, JdbcTemplate jdbc, TransactionTemplate transaction) {
+
+        Shard(DataSource dataSource) {
+            this(dataSource, new JdbcTemplate(dataSource),
+                    new TransactionTemplate(new DataSourceTransactionManager(dataSource)));
+        }
+    }
+
+    private record FilmLikes(long filmId, int likes) {
+    }
+}
@@ -0,0 +1,118 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.stereotype.Component;
+
+import java.lang.reflect.Method;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Время и число строк для каждого публичного метода хранилищ *DbStorage. Метод в тегах записан с типами
+ * параметров, например getFilms(long,int), чтобы перегрузки не сливались в одну метрику.
+ * Метрики создаются один раз на метод и дальше берутся из кэша, поэтому на вызов приходится
+ * поиск в ConcurrentHashMap и запись в уже готовые счетчики.
+ */
+@Aspect
+@Component
+public class StorageMetricsAspect {
+
+    static final String CALLS = "filmorate.storage.calls";
+    static final String ROWS = "filmorate.storage.rows";
+
+    private final MeterRegistry registry;
+    private final Map<Method, MethodMetrics> metrics = new ConcurrentHashMap<>();
+
+    public StorageMetricsAspect(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    @Around("execution(public * ru.yandex.practicum.filmorate.storage.*DbStorage.*(..))")
+    public Object measure(ProceedingJoinPoint joinPoint) throws Throwable {
+        Method method = ((MethodSignature) joinPoint.getSignature()).getMethod();
+        MethodMetrics methodMetrics = metrics.computeIfAbsent(method,
+                key -> new MethodMetrics(joinPoint.getTarget().getClass().getSimpleName(), key));
+        long started = System.nanoTime();
+        Object result;
+        try {
+            result = joinPoint.proceed();
+        } catch (Throwable e) {
+            methodMetrics.failure.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+            throw e;
+        }
+        methodMetrics.success.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+        if (methodMetrics.rows != null) {
+            methodMetrics.rows.record(rowCount(result));
+        }
+        return result;
+    }
+
+    private static int rowCount(Object result) {
+        if (result instanceof Collection<?> collection) {
+            return collection.size();
+        }
+        if (result instanceof Map<?, ?> map) {
+            return map.size();
+        }
+        if (result instanceof Optional<?> optional) {
+            return optional.isPresent() ? 1 : 0;
+        }
+        return result == null ? 0 : 1;
+    }
+
+    static String signature(Method method) {
+        return Arrays.stream(method.getParameterTypes())
+                .map(Class::getSimpleName)
+                .collect(Collectors.joining(",", method.getName() + "(", ")"));
+    }
+
+    private final class MethodMetrics {
+
+        private final Timer success;
+        private final Timer failure;
+        private final DistributionSummary rows;
+
+        private MethodMetrics(String storage, Method method) {
+            String signature = signature(method);
+            success = timer(storage, signature, "success");
+            failure = timer(storage, signature, "error");
+            // Число строк имеет смысл только для методов, которые возвращают данные
+            Class<?> type = method.getReturnType();
+            boolean returnsRows = !type.isPrimitive() && type != Void.class && type != Boolean.class
+                    && !Number.class.isAssignableFrom(type);
+            rows = returnsRows
+                    ? DistributionSummary.builder(ROWS)
+                    .description("Число строк, возвращенных методом хранилища")
+                    .tag("storage", storage)
+                    .tag("method", signature)
+                    .publishPercentileHistogram()
+                    .maximumExpectedValue(100_000.0)
+                    .register(registry)
+                    : null;
+        }
+
+        private Timer timer(String storage, String method, String outcome) {
+            return Timer.builder(CALLS)
+                    .description("Время выполнения метода хранилища")
+                    .tag("storage", storage)
+                    .tag("method", method)
+                    .tag("outcome", outcome)
+                    .publishPercentileHistogram()
+                    .minimumExpectedValue(Duration.ofNanos(100_000))
+                    .maximumExpectedValue(Duration.ofSeconds(10))
+                    .register(registry);
+        }
+    }
+}
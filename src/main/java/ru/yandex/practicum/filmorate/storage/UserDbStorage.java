@@ -2,33 +2,70 @@ package ru.yandex.practicum.filmorate.storage;
 
 import lombok.RequiredArgsConstructor;
 import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.model.User;
 import ru.yandex.practicum.filmorate.storage.mapper.UserRowMapper;
 
+import java.sql.Date;
 import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 @Repository
 @RequiredArgsConstructor
 public class UserDbStorage implements UserStorage {
 
+    private static final int EXPORT_FETCH_SIZE = 500;
+    private static final int BATCH_SIZE = 1000;
+    private static final int IN_CHUNK_SIZE = 1000;
+
     private final JdbcTemplate jdbc;
     private final UserRowMapper userRowMapper;
 
     @Override
+    @Transactional(readOnly = true)
     public Collection<User> getUsers() {
         String query = "SELECT * FROM users";
         return jdbc.query(query, userRowMapper);
     }
 
     @Override
+    @Transactional(readOnly = true)
+    public List<User> getUsers(long after, int limit) {
+        String query = "SELECT * FROM users WHERE id > ? ORDER BY id LIMIT ?";
+        return jdbc.query(query, userRowMapper, after, limit);
+    }
+
+    @Override
+    public void exportUsers(Consumer<User> consumer) {
+        String query = "SELECT * FROM users ORDER BY id";
+        jdbc.query(connection -> {
+            PreparedStatement preparedStatement = connection.prepareStatement(query,
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            preparedStatement.setFetchSize(EXPORT_FETCH_SIZE);
+            return preparedStatement;
+        }, resultSet -> {
+            consumer.accept(userRowMapper.mapRow(resultSet, resultSet.getRow()));
+        });
+    }
+
+    @Override
+    @Transactional(readOnly = true)
     public Optional<User> getUser(long id) {
         String query = "SELECT * FROM users WHERE id = ?";
         try {
@@ -39,6 +76,22 @@ public class UserDbStorage implements UserStorage {
         }
     }
 
+    @Override
+    @Transactional(readOnly = true)
+    public List<User> getUsersByIds(List<Long> ids) {
+        Map<Long, User> users = new HashMap<>();
+        for (int from = 0; from < ids.size(); from += IN_CHUNK_SIZE) {
+            List<Long> chunk = ids.subList(from, Math.min(from + IN_CHUNK_SIZE, ids.size()));
+            String query = "SELECT * FROM users WHERE id IN (" +
+                    String.join(",", Collections.nCopies(chunk.size(), "?")) + ")";
+            jdbc.query(query, userRowMapper, chunk.toArray()).forEach(user -> users.put(user.getId(), user));
+        }
+        return ids.stream()
+                .map(users::get)
+                .filter(Objects::nonNull)
+                .toList();
+    }
+
     @Override
     public User createUser(User newUser) {
         String query = "INSERT INTO users(name, email, login, birthday) VALUES (?, ?, ?, ?)";
@@ -59,6 +112,52 @@ public class UserDbStorage implements UserStorage {
         return newUser;
     }
 
+    @Override
+    @Transactional
+    public List<User> createUsers(List<User> newUsers) {
+        String query = "INSERT INTO users(name, email, login, birthday) VALUES (?, ?, ?, ?)";
+        for (int from = 0; from < newUsers.size(); from += BATCH_SIZE) {
+            List<User> chunk = newUsers.subList(from, Math.min(from + BATCH_SIZE, newUsers.size()));
+            KeyHolder keyHolder = new GeneratedKeyHolder();
+            jdbc.batchUpdate(connection -> connection.prepareStatement(query, PreparedStatement.RETURN_GENERATED_KEYS),
+                    new BatchPreparedStatementSetter() {
+                        @Override
+                        public void setValues(PreparedStatement preparedStatement, int i) throws SQLException {
+                            User user = chunk.get(i);
+                            preparedStatement.setString(1, user.getName());
+                            preparedStatement.setString(2, user.getEmail());
+                            preparedStatement.setString(3, user.getLogin());
+                            preparedStatement.setDate(4, Date.valueOf(user.getBirthday()));
+                        }
+
+                        @Override
+                        public int getBatchSize() {
+                            return chunk.size();
+                        }
+                    }, keyHolder);
+            List<Map<String, Object>> keys = keyHolder.getKeyList();
+            for (int i = 0; i < chunk.size(); i++) {
+                chunk.get(i).setId(((Number) keys.get(i).get("ID")).longValue());
+            }
+        }
+        return newUsers;
+    }
+
+    @Override
+    public List<User> getUsersByEmailsOrLogins(List<User> candidates) {
+        List<User> users = new ArrayList<>();
+        for (int from = 0; from < candidates.size(); from += IN_CHUNK_SIZE) {
+            List<User> chunk = candidates.subList(from, Math.min(from + IN_CHUNK_SIZE, candidates.size()));
+            String placeholders = String.join(",", Collections.nCopies(chunk.size(), "?"));
+            String query = "SELECT * FROM users WHERE email IN (" + placeholders + ") OR login IN (" + placeholders + ")";
+            List<Object> params = new ArrayList<>(chunk.size() * 2);
+            chunk.forEach(user -> params.add(user.getEmail()));
+            chunk.forEach(user -> params.add(user.getLogin()));
+            users.addAll(jdbc.query(query, userRowMapper, params.toArray()));
+        }
+        return users;
+    }
+
     @Override
     public User updateUser(User updUser) {
         String query = "UPDATE users SET name = ?, email = ?, login = ?, birthday = ? WHERE id = ?";
@@ -76,12 +175,17 @@ public class UserDbStorage implements UserStorage {
     }
 
     @Override
+    @Transactional
     public boolean deleteUser(Long id) {
+        // Лайки пользователя удалятся каскадно, поэтому заранее уменьшаем счётчики фильмов
+        jdbc.update("UPDATE films SET like_count = like_count - 1 " +
+                "WHERE id IN (SELECT film_id FROM likes WHERE user_id = ?)", id);
         String query = "DELETE FROM users WHERE id = ?";
         return jdbc.update(query, id) > 0;
     }
 
     @Override
+    @Transactional(readOnly = true)
     public Collection<User> getFriends(Long id) {
         String query = "SELECT u.* FROM friendship f " +
                 "JOIN users u ON f.friend_id = u.id " +
@@ -90,6 +194,7 @@ public class UserDbStorage implements UserStorage {
     }
 
     @Override
+    @Transactional(readOnly = true)
     public Collection<User> getCommonFriends(Long userId, Long friendId) {
         String query = "SELECT u.* FROM friendship f1 " +
                 "JOIN friendship f2 ON f1.friend_id = f2.friend_id " +
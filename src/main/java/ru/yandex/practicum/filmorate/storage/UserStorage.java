@@ -3,16 +3,31 @@ package ru.yandex.practicum.filmorate.storage;
 import ru.yandex.practicum.filmorate.model.User;
 
 import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 public interface UserStorage {
 
     Collection<User> getUsers();
 
+    List<User> getUsers(long after, int limit);
+
+    void exportUsers(Consumer<User> consumer);
+
     Optional<User> getUser(long id);
 
+    List<User> getUsersByIds(List<Long> ids);
+
     User createUser(User newUser);
 
+    List<User> createUsers(List<User> newUsers);
+
+    /**
+     * Возвращает уже сохранённых пользователей, у которых совпадает имейл или логин с кем-то из переданных.
+     */
+    List<User> getUsersByEmailsOrLogins(List<User> candidates);
+
     User updateUser(User updUser);
 
     boolean deleteUser(Long id);
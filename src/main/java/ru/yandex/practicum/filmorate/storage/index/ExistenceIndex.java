@@ -0,0 +1,145 @@
+package ru.yandex.practicum.filmorate.storage.index;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Битовое множество существующих id одной таблицы.
+ * Проверка наличия идёт без обращения к базе; запись (создание и удаление) редкая и сериализуется.
+ * Перезагрузка читает таблицу в новое множество без блокировки и подменяет им текущее одной записью
+ * ссылки. Изменения, пришедшие во время чтения, повторяются на новом множестве перед подменой.
+ */
+@Slf4j
+public class ExistenceIndex {
+
+    private static final int INITIAL_WORDS = 1024;
+
+    private final JdbcTemplate jdbc;
+    private final String table;
+    private final Lock writeLock = new ReentrantLock();
+    private final Lock reloadLock = new ReentrantLock();
+
+    private volatile AtomicLongArray words = new AtomicLongArray(INITIAL_WORDS);
+    // Изменения во время перезагрузки, null вне её. Меняется только под writeLock
+    private List<Change> changesDuringReload;
+
+    public ExistenceIndex(JdbcTemplate jdbc, String table) {
+        this.jdbc = jdbc;
+        this.table = table;
+    }
+
+    @PostConstruct
+    public void reload() {
+        reloadLock.lock();
+        try {
+            writeLock.lock();
+            try {
+                changesDuringReload = new ArrayList<>();
+            } finally {
+                writeLock.unlock();
+            }
+            AtomicLongArray[] loaded = {new AtomicLongArray(INITIAL_WORDS)};
+            try {
+                jdbc.query("SELECT id FROM " + table, resultSet -> {
+                    loaded[0] = set(loaded[0], resultSet.getLong("id"));
+                });
+            } catch (RuntimeException e) {
+                writeLock.lock();
+                try {
+                    changesDuringReload = null;
+                } finally {
+                    writeLock.unlock();
+                }
+                throw e;
+            }
+            writeLock.lock();
+            try {
+                AtomicLongArray replayed = loaded[0];
+                for (Change change : changesDuringReload) {
+                    replayed = change.added() ? set(replayed, change.id()) : clear(replayed, change.id());
+                }
+                words = replayed;
+                changesDuringReload = null;
+            } finally {
+                writeLock.unlock();
+            }
+        } finally {
+            reloadLock.unlock();
+        }
+        log.info("Индекс существующих id таблицы {} загружен", table);
+    }
+
+    public boolean contains(long id) {
+        if (id < 0 || id > Integer.MAX_VALUE) {
+            return false;
+        }
+        return contains(words, id);
+    }
+
+    public void add(long id) {
+        if (id < 0 || id > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Id " + id + " вне допустимого диапазона");
+        }
+        writeLock.lock();
+        try {
+            words = set(words, id);
+            if (changesDuringReload != null) {
+                changesDuringReload.add(new Change(id, true));
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    public void remove(long id) {
+        if (id < 0 || id > Integer.MAX_VALUE) {
+            return;
+        }
+        writeLock.lock();
+        try {
+            words = clear(words, id);
+            if (changesDuringReload != null) {
+                changesDuringReload.add(new Change(id, false));
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private static boolean contains(AtomicLongArray words, long id) {
+        int word = (int) (id >>> 6);
+        return word < words.length() && (words.get(word) & (1L << id)) != 0;
+    }
+
+    // Возвращает то же множество или его увеличенную копию, если id не помещается
+    private static AtomicLongArray set(AtomicLongArray words, long id) {
+        int word = (int) (id >>> 6);
+        AtomicLongArray current = words;
+        if (word >= current.length()) {
+            AtomicLongArray grown = new AtomicLongArray(Math.max(word + 1, current.length() * 2));
+            for (int i = 0; i < current.length(); i++) {
+                grown.set(i, current.get(i));
+            }
+            current = grown;
+        }
+        current.getAndAccumulate(word, 1L << id, (bits, mask) -> bits | mask);
+        return current;
+    }
+
+    private static AtomicLongArray clear(AtomicLongArray words, long id) {
+        if (contains(words, id)) {
+            words.getAndAccumulate((int) (id >>> 6), ~(1L << id), (bits, mask) -> bits & mask);
+        }
+        return words;
+    }
+
+    private record Change(long id, boolean added) {
+    }
+}
@@ -0,0 +1,19 @@
+package ru.yandex.practicum.filmorate.storage.index;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+@Configuration
+public class ExistenceIndexConfig {
+
+    @Bean
+    public ExistenceIndex userIdIndex(JdbcTemplate jdbc) {
+        return new ExistenceIndex(jdbc, "users");
+    }
+
+    @Bean
+    public ExistenceIndex filmIdIndex(JdbcTemplate jdbc) {
+        return new ExistenceIndex(jdbc, "films");
+    }
+}
@@ -0,0 +1,214 @@
+package ru.yandex.practicum.filmorate.storage.index;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Pattern;
+
+/**
+ * Обратный индекс по названию и описанию фильмов.
+ * Словарь отсортирован, поэтому поиск по префиксу - это обход поддиапазона словаря, а не всех фильмов.
+ * Каждый термин запроса должен найтись хотя бы в одном из выбранных полей. Ранг учитывает частоту термина,
+ * совпадение в названии весит больше, чем в описании, точное совпадение больше, чем по префиксу.
+ * Изменения индекса сериализуются, поиск идет без блокировок, в том числе во время перезагрузки:
+ * новый индекс строится рядом с текущим и подменяет его одной записью ссылки.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class FilmSearchIndex {
+
+    public enum Field {
+        TITLE(3),
+        DESCRIPTION(1);
+
+        private final int weight;
+
+        Field(int weight) {
+            this.weight = weight;
+        }
+    }
+
+    private static final Pattern SEPARATOR = Pattern.compile("[^\\p{L}\\p{Nd}]+");
+    private static final int EXACT_MATCH_WEIGHT = 2;
+
+    private final JdbcTemplate jdbc;
+    private final Lock writeLock = new ReentrantLock();
+    private final Lock reloadLock = new ReentrantLock();
+
+    private volatile Index current = new Index();
+    // Изменения, пришедшие за время чтения таблицы; null, пока перезагрузки нет. Под writeLock
+    private List<Change> changesDuringReload;
+
+    /**
+     * Строит новый индекс по таблице без блокировки и подменяет им текущий. Поиск всё это время идёт
+     * по старому индексу, изменения, пришедшие во время чтения таблицы, повторяются на новом перед подменой.
+     */
+    @PostConstruct
+    public void reload() {
+        Index loaded = new Index();
+        reloadLock.lock();
+        try {
+            writeLock.lock();
+            try {
+                changesDuringReload = new ArrayList<>();
+            } finally {
+                writeLock.unlock();
+            }
+            try {
+                jdbc.query("SELECT id, name, description FROM films", resultSet -> {
+                    loaded.index(resultSet.getLong("id"), resultSet.getString("name"),
+                            resultSet.getString("description"));
+                });
+            } catch (RuntimeException e) {
+                writeLock.lock();
+                try {
+                    changesDuringReload = null;
+                } finally {
+                    writeLock.unlock();
+                }
+                throw e;
+            }
+            writeLock.lock();
+            try {
+                changesDuringReload.forEach(change -> change.applyTo(loaded));
+                current = loaded;
+                changesDuringReload = null;
+            } finally {
+                writeLock.unlock();
+            }
+        } finally {
+            reloadLock.unlock();
+        }
+        log.info("Поисковый индекс фильмов загружен, фильмов: {}, терминов в названиях: {}",
+                loaded.filmTerms.size(), loaded.postings.get(Field.TITLE).size());
+    }
+
+    public void index(long filmId, String name, String description) {
+        change(new Change(filmId, name, description, false));
+    }
+
+    public void remove(long filmId) {
+        change(new Change(filmId, null, null, true));
+    }
+
+    public List<Long> search(String query, Set<Field> fields, int limit) {
+        List<String> terms = tokenize(query).keySet().stream().toList();
+        if (terms.isEmpty() || fields.isEmpty()) {
+            return List.of();
+        }
+        Index index = current;
+        Map<Long, Integer> scores = null;
+        for (String term : terms) {
+            Map<Long, Integer> termScores = new HashMap<>();
+            for (Field field : fields) {
+                NavigableMap<String, Map<Long, Integer>> dictionary = index.postings.get(field);
+                for (Map.Entry<String, Map<Long, Integer>> entry
+                        : dictionary.subMap(term, true, term + Character.MAX_VALUE, false).entrySet()) {
+                    int weight = field.weight * (entry.getKey().equals(term) ? EXACT_MATCH_WEIGHT : 1);
+                    entry.getValue().forEach((filmId, frequency) ->
+                            termScores.merge(filmId, weight * frequency, Integer::sum));
+                }
+            }
+            if (scores == null) {
+                scores = termScores;
+            } else {
+                scores.keySet().retainAll(termScores.keySet());
+                scores.replaceAll((filmId, score) -> score + termScores.get(filmId));
+            }
+            if (scores.isEmpty()) {
+                return List.of();
+            }
+        }
+        return scores.entrySet().stream()
+                .sorted(Map.Entry.<Long, Integer>comparingByValue(Comparator.reverseOrder())
+                        .thenComparing(Map.Entry.comparingByKey()))
+                .limit(limit)
+                .map(Map.Entry::getKey)
+                .toList();
+    }
+
+    static Map<String, Integer> tokenize(String text) {
+        Map<String, Integer> terms = new HashMap<>();
+        if (text == null) {
+            return terms;
+        }
+        String normalized = text.toLowerCase(Locale.ROOT).replace('ё', 'е');
+        for (String term : SEPARATOR.split(normalized)) {
+            if (!term.isEmpty()) {
+                terms.merge(term, 1, Integer::sum);
+            }
+        }
+        return terms;
+    }
+
+    private void change(Change change) {
+        writeLock.lock();
+        try {
+            change.applyTo(current);
+            if (changesDuringReload != null) {
+                changesDuringReload.add(change);
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private static final class Index {
+
+        private final Map<Field, NavigableMap<String, Map<Long, Integer>>> postings = new EnumMap<>(Map.of(
+                Field.TITLE, new ConcurrentSkipListMap<>(),
+                Field.DESCRIPTION, new ConcurrentSkipListMap<>()));
+        // Термины каждого фильма нужны, чтобы при изменении и удалении убрать его из старых списков
+        private final Map<Long, Map<Field, Map<String, Integer>>> filmTerms = new ConcurrentHashMap<>();
+
+        void index(long filmId, String name, String description) {
+            remove(filmId);
+            Map<Field, Map<String, Integer>> terms = new EnumMap<>(Field.class);
+            terms.put(Field.TITLE, tokenize(name));
+            terms.put(Field.DESCRIPTION, tokenize(description));
+            terms.forEach((field, fieldTerms) -> fieldTerms.forEach((term, frequency) ->
+                    postings.get(field).computeIfAbsent(term, key -> new ConcurrentHashMap<>())
+                            .put(filmId, frequency)));
+            filmTerms.put(filmId, terms);
+        }
+
+        void remove(long filmId) {
+            Map<Field, Map<String, Integer>> old = filmTerms.remove(filmId);
+            if (old != null) {
+                old.forEach((field, fieldTerms) -> fieldTerms.keySet().forEach(term ->
+                        postings.get(field).computeIfPresent(term, (key, films) -> {
+                            films.remove(filmId);
+                            return films.isEmpty() ? null : films;
+                        })));
+            }
+        }
+    }
+
+    private record Change(long filmId, String name, String description, boolean removed) {
+
+        void applyTo(Index index) {
+            if (removed) {
+                index.remove(filmId);
+            } else {
+                index.index(filmId, name, description);
+            }
+        }
+    }
+}
@@ -0,0 +1,256 @@
+package ru.yandex.practicum.filmorate.storage.index;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.storage.journal.EventJournal;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+/**
+ * Граф дружбы в памяти: для каждого пользователя отсортированный массив id друзей.
+ * Массивы не изменяются на месте, при добавлении и удалении связи подменяются копией,
+ * поэтому читатели работают без блокировок. Перезагрузка строит новый граф рядом с текущим и подменяет его
+ * одной записью; изменения, пришедшие во время загрузки, повторяются на новом графе перед подменой.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class FriendshipGraph {
+
+    private static final long[] EMPTY = new long[0];
+    // Ниже этого числа ребер второго уровня обход в одном потоке быстрее, чем накладные расходы fork-join
+    static final int PARALLEL_THRESHOLD = 50_000;
+    private static final int FRIENDS_PER_TASK = 64;
+
+    private final JdbcTemplate jdbc;
+    private final Optional<EventJournal> journal;
+
+    private volatile Map<Long, long[]> friends = new ConcurrentHashMap<>();
+    private final Lock reloadLock = new ReentrantLock();
+    // Обновления берут чтение, начало перезагрузки и подмена графа - запись
+    private final ReadWriteLock swapLock = new ReentrantReadWriteLock();
+    // Изменения за время загрузки графа, null вне перезагрузки
+    private volatile Queue<Consumer<Map<Long, long[]>>> changesDuringReload;
+
+    @PostConstruct
+    public void reload() {
+        reloadLock.lock();
+        try {
+            swapLock.writeLock().lock();
+            try {
+                changesDuringReload = new ConcurrentLinkedQueue<>();
+            } finally {
+                swapLock.writeLock().unlock();
+            }
+            Map<Long, long[]> loaded = new ConcurrentHashMap<>();
+            try {
+                if (journal.isPresent()) {
+                    replay(journal.get(), loaded);
+                } else {
+                    load(loaded);
+                }
+            } catch (RuntimeException e) {
+                swapLock.writeLock().lock();
+                try {
+                    changesDuringReload = null;
+                } finally {
+                    swapLock.writeLock().unlock();
+                }
+                throw e;
+            }
+            swapLock.writeLock().lock();
+            try {
+                changesDuringReload.forEach(change -> change.accept(loaded));
+                friends = loaded;
+                changesDuringReload = null;
+            } finally {
+                swapLock.writeLock().unlock();
+            }
+        } finally {
+            reloadLock.unlock();
+        }
+    }
+
+    private void load(Map<Long, long[]> friends) {
+        Map<Long, long[]> loaded = new HashMap<>();
+        Map<Long, Integer> sizes = new HashMap<>();
+        jdbc.query("SELECT user_id, friend_id FROM friendship ORDER BY user_id, friend_id", resultSet -> {
+            long userId = resultSet.getLong("user_id");
+            int size = sizes.getOrDefault(userId, 0);
+            long[] adjacency = loaded.getOrDefault(userId, EMPTY);
+            if (size == adjacency.length) {
+                adjacency = Arrays.copyOf(adjacency, Math.max(4, size * 2));
+                loaded.put(userId, adjacency);
+            }
+            adjacency[size] = resultSet.getLong("friend_id");
+            sizes.put(userId, size + 1);
+        });
+        loaded.forEach((userId, adjacency) -> friends.put(userId, Arrays.copyOf(adjacency, sizes.get(userId))));
+        log.info("Граф дружбы загружен, пользователей с друзьями: {}", friends.size());
+    }
+
+    private void replay(EventJournal events, Map<Long, long[]> friends) {
+        friends.putAll(events.replayFriends());
+        log.info("Граф дружбы восстановлен из журнала, пользователей с друзьями: {}", friends.size());
+    }
+
+    public long[] getFriends(long userId) {
+        return friends.getOrDefault(userId, EMPTY);
+    }
+
+    public boolean hasFriend(long userId, long friendId) {
+        return Arrays.binarySearch(getFriends(userId), friendId) >= 0;
+    }
+
+    public long[] getCommonFriends(long userId, long otherId) {
+        long[] first = getFriends(userId);
+        long[] second = getFriends(otherId);
+        long[] common = new long[Math.min(first.length, second.length)];
+        int size = 0;
+        int i = 0;
+        int j = 0;
+        while (i < first.length && j < second.length) {
+            if (first[i] < second[j]) {
+                i++;
+            } else if (first[i] > second[j]) {
+                j++;
+            } else {
+                common[size++] = first[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(common, size);
+    }
+
+    /**
+     * Друзья друзей, которые еще не в друзьях у пользователя, по убыванию числа общих друзей.
+     */
+    public long[] suggestFriends(long userId, int limit) {
+        long[] direct = getFriends(userId);
+        long edges = 0;
+        for (long friendId : direct) {
+            edges += getFriends(friendId).length;
+        }
+        LongIntCounter mutual = edges < PARALLEL_THRESHOLD
+                ? countMutual(direct, 0, direct.length)
+                : ForkJoinPool.commonPool().invoke(new MutualCountTask(direct, 0, direct.length));
+        return mutual.top(limit, candidate -> candidate == userId || Arrays.binarySearch(direct, candidate) >= 0);
+    }
+
+    private LongIntCounter countMutual(long[] direct, int from, int to) {
+        LongIntCounter mutual = new LongIntCounter(64);
+        for (int i = from; i < to; i++) {
+            for (long candidate : getFriends(direct[i])) {
+                mutual.increment(candidate, 1);
+            }
+        }
+        return mutual;
+    }
+
+    private class MutualCountTask extends RecursiveTask<LongIntCounter> {
+
+        private final long[] direct;
+        private final int from;
+        private final int to;
+
+        MutualCountTask(long[] direct, int from, int to) {
+            this.direct = direct;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected LongIntCounter compute() {
+            if (to - from <= FRIENDS_PER_TASK) {
+                return countMutual(direct, from, to);
+            }
+            int middle = (from + to) >>> 1;
+            MutualCountTask left = new MutualCountTask(direct, from, middle);
+            left.fork();
+            LongIntCounter right = new MutualCountTask(direct, middle, to).compute();
+            LongIntCounter merged = left.join();
+            if (merged.size() < right.size()) {
+                right.addAll(merged);
+                return right;
+            }
+            merged.addAll(right);
+            return merged;
+        }
+    }
+
+    public void addFriend(long userId, long friendId) {
+        update(friends -> friends.compute(userId, (id, adjacency) -> {
+            long[] current = adjacency == null ? EMPTY : adjacency;
+            int position = Arrays.binarySearch(current, friendId);
+            if (position >= 0) {
+                return current;
+            }
+            int insertAt = -position - 1;
+            long[] updated = new long[current.length + 1];
+            System.arraycopy(current, 0, updated, 0, insertAt);
+            updated[insertAt] = friendId;
+            System.arraycopy(current, insertAt, updated, insertAt + 1, current.length - insertAt);
+            return updated;
+        }));
+    }
+
+    public void removeFriend(long userId, long friendId) {
+        update(friends -> friends.computeIfPresent(userId, (id, adjacency) -> without(adjacency, friendId)));
+    }
+
+    public void removeUser(long userId) {
+        update(friends -> {
+            friends.remove(userId);
+            // Входящие связи хранятся только у других пользователей, поэтому проходим по всем
+            friends.replaceAll((id, adjacency) -> {
+                long[] updated = without(adjacency, userId);
+                return updated == null ? EMPTY : updated;
+            });
+        });
+    }
+
+    private long[] without(long[] adjacency, long friendId) {
+        int position = Arrays.binarySearch(adjacency, friendId);
+        if (position < 0) {
+            return adjacency;
+        }
+        if (adjacency.length == 1) {
+            return null;
+        }
+        long[] updated = new long[adjacency.length - 1];
+        System.arraycopy(adjacency, 0, updated, 0, position);
+        System.arraycopy(adjacency, position + 1, updated, position, adjacency.length - position - 1);
+        return updated;
+    }
+
+    // Изменения - операции над множествами, поэтому повтор уже учтённого загрузкой изменения безопасен
+    private void update(Consumer<Map<Long, long[]>> change) {
+        swapLock.readLock().lock();
+        try {
+            change.accept(friends);
+            Queue<Consumer<Map<Long, long[]>>> changes = changesDuringReload;
+            if (changes != null) {
+                changes.add(change);
+            }
+        } finally {
+            swapLock.readLock().unlock();
+        }
+    }
+}
@@ -0,0 +1,278 @@
+package ru.yandex.practicum.filmorate.storage.index;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.storage.BackgroundThreads;
+import ru.yandex.practicum.filmorate.storage.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.journal.EventJournal;
+
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Матрица лайков в памяти: для каждого пользователя битовое множество id понравившихся фильмов.
+ * Строится в фоне после старта приложения, изменения до окончания построения копятся в очереди
+ * и применяются поверх загруженных данных. Неудачное построение повторяется с растущей паузой.
+ * Очередь ограничена: при переполнении она сбрасывается, а загруженные данные считаются устаревшими
+ * и строятся заново. Множества не изменяются на месте, а подменяются копией.
+ * Обратный индекс фильм -> пользователи ограничивает поиск соседей пользователями, у которых есть хотя бы
+ * один общий лайк. Он меняется внутри изменения множества пользователя, поэтому не расходится с ним.
+ */
+@Slf4j
+@Component
+public class LikesMatrix {
+
+    private static final int NEIGHBOURS = 20;
+    static final int MAX_PENDING = 100_000;
+    private static final long FIRST_RETRY_DELAY_MS = 1_000;
+    private static final long MAX_RETRY_DELAY_MS = 60_000;
+
+    private final FilmStorage filmStorage;
+    private final Optional<EventJournal> journal;
+    private final ExecutorService executor;
+
+    private final Map<Long, BitSet> likes = new ConcurrentHashMap<>();
+    private final Map<Integer, Set<Long>> likedBy = new ConcurrentHashMap<>();
+    private final Queue<Runnable> pending = new ConcurrentLinkedQueue<>();
+    private final Object readyLock = new Object();
+    private volatile boolean ready;
+    // Меняются только под readyLock
+    private int pendingSize;
+    private boolean overflowed;
+
+    public LikesMatrix(FilmStorage filmStorage, Optional<EventJournal> journal,
+                       @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        this.filmStorage = filmStorage;
+        this.journal = journal;
+        this.executor = Executors.newSingleThreadExecutor(
+                BackgroundThreads.factory("likes-matrix-builder", virtualThreads));
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void buildInBackground() {
+        executor.execute(this::buildWithRetry);
+    }
+
+    /**
+     * Строит матрицу заново после замены данных в базе. До конца построения изменения копятся в очереди
+     * и применяются поверх новых данных, рекомендации не выдаются.
+     */
+    public void rebuildInBackground() {
+        synchronized (readyLock) {
+            ready = false;
+            pending.clear();
+            pendingSize = 0;
+        }
+        buildInBackground();
+    }
+
+    /**
+     * Загружает лайки и применяет накопленные изменения. Возвращает false, если за время загрузки очередь
+     * переполнилась и часть изменений потеряна: тогда построение нужно повторить.
+     */
+    public boolean build() {
+        synchronized (readyLock) {
+            overflowed = false;
+        }
+        Map<Long, BitSet> loaded = new HashMap<>();
+        if (journal.isPresent()) {
+            replay(journal.get(), loaded);
+        } else {
+            filmStorage.exportLikes(like -> loaded.computeIfAbsent(like.getUserId(), id -> new BitSet())
+                    .set(Math.toIntExact(like.getFilmId())));
+        }
+        synchronized (readyLock) {
+            if (overflowed) {
+                log.warn("Во время построения матрицы лайков переполнилась очередь изменений, строим заново");
+                return false;
+            }
+            likes.clear();
+            likedBy.clear();
+            likes.putAll(loaded);
+            loaded.forEach((userId, films) -> {
+                for (int filmId = films.nextSetBit(0); filmId >= 0; filmId = films.nextSetBit(filmId + 1)) {
+                    link(filmId, userId);
+                }
+            });
+            Runnable change;
+            while ((change = pending.poll()) != null) {
+                change.run();
+            }
+            pendingSize = 0;
+            ready = true;
+        }
+        log.info("Матрица лайков построена, пользователей с лайками: {}", likes.size());
+        return true;
+    }
+
+    private void buildWithRetry() {
+        long delay = FIRST_RETRY_DELAY_MS;
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                if (build()) {
+                    return;
+                }
+                continue;
+            } catch (RuntimeException e) {
+                log.error("Не удалось построить матрицу лайков, повтор через {} мс", delay, e);
+            }
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            delay = Math.min(delay * 2, MAX_RETRY_DELAY_MS);
+        }
+    }
+
+    // Изменения, попавшие и в журнал, и в очередь ожидания, применятся дважды - операции над множествами это допускают
+    private void replay(EventJournal events, Map<Long, BitSet> loaded) {
+        loaded.putAll(events.replayLikes());
+        log.info("Лайки для матрицы прочитаны из журнала, пользователей с лайками: {}", loaded.size());
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public void addLike(long filmId, long userId) {
+        int bit = Math.toIntExact(filmId);
+        apply(() -> likes.compute(userId, (id, films) -> {
+            BitSet updated = films == null ? new BitSet() : (BitSet) films.clone();
+            updated.set(bit);
+            link(bit, userId);
+            return updated;
+        }));
+    }
+
+    public void removeLike(long filmId, long userId) {
+        int bit = Math.toIntExact(filmId);
+        apply(() -> likes.computeIfPresent(userId, (id, films) -> without(films, bit, userId)));
+    }
+
+    public void removeFilm(long filmId) {
+        int bit = Math.toIntExact(filmId);
+        apply(() -> {
+            Set<Long> users = likedBy.get(bit);
+            if (users != null) {
+                users.forEach(userId -> likes.computeIfPresent(userId, (id, films) -> without(films, bit, userId)));
+            }
+        });
+    }
+
+    public void removeUser(long userId) {
+        apply(() -> likes.computeIfPresent(userId, (id, films) -> {
+            for (int filmId = films.nextSetBit(0); filmId >= 0; filmId = films.nextSetBit(filmId + 1)) {
+                unlink(filmId, userId);
+            }
+            return null;
+        }));
+    }
+
+    /**
+     * Фильмы, которые понравились пользователям с наибольшим пересечением лайков, но не понравились самому
+     * пользователю. Вклад фильма равен сумме пересечений соседей, которые его лайкнули.
+     * Пересечения считаются по обратному индексу только для пользователей с общими лайками.
+     */
+    public long[] recommend(long userId, int limit) {
+        BitSet own = likes.get(userId);
+        if (own == null) {
+            return new long[0];
+        }
+        int ownCount = own.cardinality();
+        LongIntCounter overlaps = new LongIntCounter(64);
+        for (int filmId = own.nextSetBit(0); filmId >= 0; filmId = own.nextSetBit(filmId + 1)) {
+            Set<Long> users = likedBy.get(filmId);
+            if (users != null) {
+                for (long other : users) {
+                    if (other != userId) {
+                        overlaps.increment(other, 1);
+                    }
+                }
+            }
+        }
+        // Сосед, у которого нет фильмов сверх общих, ничего не может порекомендовать
+        long[] neighbours = overlaps.top(NEIGHBOURS, other -> {
+            BitSet films = likes.get(other);
+            return films == null || films.cardinality() <= overlaps.get(other);
+        });
+        LongIntCounter scores = new LongIntCounter(ownCount * 2);
+        for (long neighbour : neighbours) {
+            BitSet films = likes.get(neighbour);
+            if (films == null) {
+                continue;
+            }
+            int overlap = overlaps.get(neighbour);
+            for (int filmId = films.nextSetBit(0); filmId >= 0; filmId = films.nextSetBit(filmId + 1)) {
+                if (!own.get(filmId)) {
+                    scores.increment(filmId, overlap);
+                }
+            }
+        }
+        return scores.top(limit, filmId -> false);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    // Вызывается внутри изменения множества пользователя, как и остальные правки обратного индекса
+    private BitSet without(BitSet films, int filmId, long userId) {
+        if (!films.get(filmId)) {
+            return films;
+        }
+        BitSet updated = (BitSet) films.clone();
+        updated.clear(filmId);
+        unlink(filmId, userId);
+        return updated.isEmpty() ? null : updated;
+    }
+
+    // Добавление внутри compute: иначе параллельный unlink может убрать опустевшее множество вместе с ним
+    private void link(int filmId, long userId) {
+        likedBy.compute(filmId, (id, users) -> {
+            Set<Long> linked = users == null ? ConcurrentHashMap.newKeySet() : users;
+            linked.add(userId);
+            return linked;
+        });
+    }
+
+    private void unlink(int filmId, long userId) {
+        likedBy.computeIfPresent(filmId, (id, users) -> {
+            users.remove(userId);
+            return users.isEmpty() ? null : users;
+        });
+    }
+
+    private void apply(Runnable change) {
+        if (!ready) {
+            synchronized (readyLock) {
+                if (!ready) {
+                    if (pendingSize == MAX_PENDING) {
+                        // Построение затянулось: изменения не копятся без предела, матрица будет загружена заново
+                        pending.clear();
+                        pendingSize = 0;
+                        overflowed = true;
+                    }
+                    pending.add(change);
+                    pendingSize++;
+                    return;
+                }
+            }
+        }
+        change.run();
+    }
+}
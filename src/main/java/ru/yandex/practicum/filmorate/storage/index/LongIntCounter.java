@@ -0,0 +1,103 @@
+package ru.yandex.practicum.filmorate.storage.index;
+
+import java.util.PriorityQueue;
+import java.util.function.LongPredicate;
+
+/**
+ * Счетчик long -> int с открытой адресацией и линейным пробированием, без упаковки ключей.
+ * Ключ 0 занят под пустую ячейку: id в базе начинаются с единицы.
+ */
+public class LongIntCounter {
+
+    private static final float LOAD_FACTOR = 0.5f;
+
+    private long[] keys;
+    private int[] values;
+    private int size;
+    private int mask;
+
+    public LongIntCounter(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(4, (int) (expectedSize / LOAD_FACTOR)) - 1) << 1;
+        keys = new long[capacity];
+        values = new int[capacity];
+        mask = capacity - 1;
+    }
+
+    public void increment(long key, int delta) {
+        int slot = slot(key);
+        if (keys[slot] == key) {
+            values[slot] += delta;
+            return;
+        }
+        keys[slot] = key;
+        values[slot] = delta;
+        if (++size > keys.length * LOAD_FACTOR) {
+            resize();
+        }
+    }
+
+    public int get(long key) {
+        int slot = slot(key);
+        return keys[slot] == key ? values[slot] : 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void addAll(LongIntCounter other) {
+        for (int i = 0; i < other.keys.length; i++) {
+            if (other.keys[i] != 0) {
+                increment(other.keys[i], other.values[i]);
+            }
+        }
+    }
+
+    /**
+     * Ключи с наибольшими значениями, при равенстве значений меньший ключ идет раньше.
+     */
+    public long[] top(int limit, LongPredicate exclude) {
+        PriorityQueue<long[]> heap = new PriorityQueue<>(limit + 1, (a, b) -> a[1] != b[1]
+                ? Long.compare(a[1], b[1])
+                : Long.compare(b[0], a[0]));
+        for (int i = 0; i < keys.length; i++) {
+            long key = keys[i];
+            if (key == 0 || exclude.test(key)) {
+                continue;
+            }
+            heap.offer(new long[]{key, values[i]});
+            if (heap.size() > limit) {
+                heap.poll();
+            }
+        }
+        long[] result = new long[heap.size()];
+        for (int i = result.length - 1; i >= 0; i--) {
+            result[i] = heap.poll()[0];
+        }
+        return result;
+    }
+
+    private int slot(long key) {
+        int slot = Long.hashCode(key * 0x9E3779B97F4A7C15L) & mask;
+        while (keys[slot] != 0 && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void resize() {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        keys = new long[oldKeys.length * 2];
+        values = new int[oldKeys.length * 2];
+        mask = keys.length - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != 0) {
+                int slot = slot(oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+}
@@ -0,0 +1,221 @@
+package ru.yandex.practicum.filmorate.storage.index;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Рейтинг фильмов по числу лайков, который хранится в памяти.
+ * Порядок совпадает с SQL-выборкой популярных фильмов: по убыванию лайков, при равенстве по id.
+ * Кроме общего рейтинга ведутся отдельные рейтинги по каждому жанру и году выпуска,
+ * поэтому топ с фильтром читается сразу из нужного рейтинга.
+ * Чтение топа идёт без блокировок. Изменение фильма - это снятие старой записи и вставка новой, и обход,
+ * мимо курсора которого переехал фильм, мог бы его пропустить. Поэтому обход проверяет, что за время чтения
+ * перестановок не было, и иначе повторяется. Изменения одного фильма сериализуются через ConcurrentHashMap.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class PopularFilmsLeaderboard {
+
+    private static final Comparator<Entry> RANKING_ORDER = Comparator.comparingInt(Entry::likes).reversed()
+            .thenComparingLong(Entry::filmId);
+    private static final int[] NO_GENRES = new int[0];
+    private static final int READ_ATTEMPTS = 8;
+
+    private final JdbcTemplate jdbc;
+
+    private volatile Rankings rankings = new Rankings();
+    // Перезагрузка останавливает обновления отдельных фильмов, чтобы их изменения не ушли в старые рейтинги
+    private final ReadWriteLock reloadLock = new ReentrantReadWriteLock();
+    // Число идущих перестановок и счётчик завершённых: по ним обход топа узнаёт, что рейтинг менялся под ним
+    private final AtomicInteger moving = new AtomicInteger();
+    private final AtomicLong moves = new AtomicLong();
+
+    /**
+     * Строит рейтинги заново рядом с текущими и подменяет их одной записью. Топ всё это время читается
+     * из прежних рейтингов.
+     */
+    @PostConstruct
+    public void reload() {
+        reloadLock.writeLock().lock();
+        try {
+            Rankings loaded = new Rankings();
+            Map<Long, List<Integer>> genres = new HashMap<>();
+            jdbc.query("SELECT film_id, genre_id FROM film_genres", resultSet -> {
+                genres.computeIfAbsent(resultSet.getLong("film_id"), id -> new ArrayList<>())
+                        .add(resultSet.getInt("genre_id"));
+            });
+            jdbc.query("SELECT id, like_count, release_year FROM films", resultSet -> {
+                long filmId = resultSet.getLong("id");
+                Entry entry = new Entry(filmId, resultSet.getInt("like_count"), resultSet.getInt("release_year"),
+                        toArray(genres.getOrDefault(filmId, List.of())));
+                loaded.entries.put(filmId, entry);
+                loaded.place(entry);
+            });
+            rankings = loaded;
+            log.info("Рейтинг популярных фильмов загружен, фильмов: {}, жанров: {}, лет: {}",
+                    loaded.entries.size(), loaded.byGenre.size(), loaded.byYear.size());
+        } finally {
+            reloadLock.writeLock().unlock();
+        }
+    }
+
+    public void addFilm(long filmId, int year, Collection<Integer> genreIds) {
+        update(current -> current.entries.computeIfAbsent(filmId, id -> {
+            Entry entry = new Entry(id, 0, year, toArray(genreIds));
+            current.place(entry);
+            return entry;
+        }));
+    }
+
+    /**
+     * Переносит фильм в рейтинги нового года и жанров, сохраняя число лайков.
+     */
+    public void updateFilm(long filmId, int year, Collection<Integer> genreIds) {
+        update(current -> current.entries.computeIfPresent(filmId, (id, old) -> {
+            Entry entry = new Entry(id, old.likes(), year, toArray(genreIds));
+            move(current, old, entry);
+            return entry;
+        }));
+    }
+
+    public void removeFilm(long filmId) {
+        update(current -> current.entries.computeIfPresent(filmId, (id, entry) -> {
+            current.displace(entry);
+            return null;
+        }));
+    }
+
+    public void changeLikes(long filmId, int delta) {
+        update(current -> current.entries.computeIfPresent(filmId, (id, old) -> {
+            Entry entry = new Entry(id, old.likes() + delta, old.year(), old.genreIds());
+            move(current, old, entry);
+            return entry;
+        }));
+    }
+
+    public List<Long> getTop(int count) {
+        return getTop(count, null, null);
+    }
+
+    public List<Long> getTop(int count, Integer genreId, Integer year) {
+        Rankings current = rankings;
+        NavigableSet<Entry> source = current.ranking;
+        if (genreId != null) {
+            source = current.byGenre.getOrDefault(genreId, Collections.emptyNavigableSet());
+        }
+        if (year != null) {
+            NavigableSet<Entry> byYear = current.byYear.getOrDefault(year, Collections.emptyNavigableSet());
+            // При двух фильтрах обходим меньший рейтинг и проверяем второе условие у записи
+            if (genreId == null || byYear.size() < source.size()) {
+                source = byYear;
+            }
+        }
+        for (int attempt = 0; attempt < READ_ATTEMPTS; attempt++) {
+            long seen = moves.get();
+            if (moving.get() == 0) {
+                List<Long> top = top(source.stream(), count, genreId, year);
+                if (moving.get() == 0 && moves.get() == seen) {
+                    return top;
+                }
+            }
+            Thread.onSpinWait();
+        }
+        // Рейтинг меняется непрерывно: собираем топ из записей фильмов, каждая из которых встречается один раз
+        return top(current.entries.values().stream().sorted(RANKING_ORDER), count, genreId, year);
+    }
+
+    private static List<Long> top(Stream<Entry> entries, int count, Integer genreId, Integer year) {
+        return entries
+                .filter(entry -> year == null || entry.year() == year)
+                .filter(entry -> genreId == null || entry.hasGenre(genreId))
+                .limit(Math.max(count, 0))
+                .map(Entry::filmId)
+                .toList();
+    }
+
+    private void move(Rankings current, Entry old, Entry entry) {
+        moving.incrementAndGet();
+        try {
+            current.displace(old);
+            current.place(entry);
+        } finally {
+            moves.incrementAndGet();
+            moving.decrementAndGet();
+        }
+    }
+
+    private int[] toArray(Collection<Integer> genreIds) {
+        if (genreIds == null || genreIds.isEmpty()) {
+            return NO_GENRES;
+        }
+        return genreIds.stream().mapToInt(Integer::intValue).distinct().sorted().toArray();
+    }
+
+    private void update(Consumer<Rankings> action) {
+        reloadLock.readLock().lock();
+        try {
+            action.accept(rankings);
+        } finally {
+            reloadLock.readLock().unlock();
+        }
+    }
+
+    private static final class Rankings {
+
+        private final NavigableSet<Entry> ranking = new ConcurrentSkipListSet<>(RANKING_ORDER);
+        private final Map<Integer, NavigableSet<Entry>> byGenre = new ConcurrentHashMap<>();
+        private final Map<Integer, NavigableSet<Entry>> byYear = new ConcurrentHashMap<>();
+        private final Map<Long, Entry> entries = new ConcurrentHashMap<>();
+
+        void place(Entry entry) {
+            ranking.add(entry);
+            byYear.computeIfAbsent(entry.year(), year -> new ConcurrentSkipListSet<>(RANKING_ORDER)).add(entry);
+            for (int genreId : entry.genreIds()) {
+                byGenre.computeIfAbsent(genreId, id -> new ConcurrentSkipListSet<>(RANKING_ORDER)).add(entry);
+            }
+        }
+
+        void displace(Entry entry) {
+            ranking.remove(entry);
+            NavigableSet<Entry> year = byYear.get(entry.year());
+            if (year != null) {
+                year.remove(entry);
+            }
+            for (int genreId : entry.genreIds()) {
+                NavigableSet<Entry> genre = byGenre.get(genreId);
+                if (genre != null) {
+                    genre.remove(entry);
+                }
+            }
+        }
+    }
+
+    private record Entry(long filmId, int likes, int year, int[] genreIds) {
+
+        boolean hasGenre(int genreId) {
+            return Arrays.binarySearch(genreIds, genreId) >= 0;
+        }
+    }
+}
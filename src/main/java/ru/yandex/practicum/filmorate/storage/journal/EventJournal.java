@@ -0,0 +1,290 @@
+package ru.yandex.practicum.filmorate.storage.journal;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Журнал изменений лайков и дружбы: только дозапись, записи фиксированной длины в отображённых в память
+ * сегментах одинакового размера. Формат записи (32 байта, little-endian): код типа int, CRC32C int по
+ * остальным 28 байтам, два long id и время записи в миллисекундах. Незаписанная часть сегмента заполнена
+ * нулями, поэтому конец журнала - первая запись с нулевым типом или неверной контрольной суммой.
+ * Заполненный сегмент сбрасывается на диск и больше не меняется. Записи до сбоя процесса остаются в кэше
+ * страниц ОС. При открытии недописанный хвост последнего сегмента отбрасывается.
+ * Номер записи от начала журнала служит позицией для чтения ленты изменений с нужного места.
+ * Состояние, прочитанное при проверке журнала на старте, сохраняется до первой загрузки индексов,
+ * чтобы они не читали журнал повторно.
+ */
+@Slf4j
+public class EventJournal implements Closeable {
+
+    static final int RECORD_SIZE = 32;
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".journal";
+
+    @FunctionalInterface
+    public interface Visitor {
+        void accept(JournalEventType type, long first, long second, long timestamp);
+    }
+
+    private final Path directory;
+    private final int segmentRecords;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final CRC32C appendCrc = new CRC32C();
+
+    private int segmentNumber;
+    private MappedByteBuffer segment;
+    private ByteBuffer segmentView;
+    private int capacity;
+    private int position;
+    private boolean empty;
+    // Лайки и дружба на момент старта, пока их не забрали индексы
+    private volatile JournalState startupState;
+
+    public EventJournal(Path directory, int segmentRecords) throws IOException {
+        if (segmentRecords < 1 || (long) segmentRecords * RECORD_SIZE > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Недопустимый размер сегмента журнала: " + segmentRecords);
+        }
+        this.directory = directory;
+        this.segmentRecords = segmentRecords;
+        Files.createDirectories(directory);
+        List<Path> segments = listSegments();
+        if (segments.isEmpty()) {
+            openSegment(1, segmentRecords);
+            empty = true;
+            return;
+        }
+        Path last = segments.get(segments.size() - 1);
+        // Сегмент, обрезанный при сбое, дополняется нулями до полного размера
+        int records = (int) Math.max(segmentRecords, Files.size(last) / RECORD_SIZE);
+        openSegment(segmentNumber(last), records);
+        CRC32C crc = new CRC32C();
+        while (position < capacity && segment.getInt(position * RECORD_SIZE) != 0
+                && isValid(segment, segmentView, crc, position * RECORD_SIZE)) {
+            position++;
+        }
+        if (position < capacity && segment.getInt(position * RECORD_SIZE) != 0) {
+            log.warn("Журнал {}: недописанная запись {} в сегменте {}, хвост сегмента отброшен",
+                    directory, position, last.getFileName());
+            for (int offset = position * RECORD_SIZE; offset < capacity * RECORD_SIZE; offset += Long.BYTES) {
+                segment.putLong(offset, 0L);
+            }
+            segment.force();
+        }
+        empty = segments.size() == 1 && position == 0;
+    }
+
+    public void append(JournalEventType type, long first, long second) {
+        long timestamp = System.currentTimeMillis();
+        lock.lock();
+        try {
+            if (segment == null) {
+                throw new IllegalStateException("Журнал закрыт");
+            }
+            if (position == capacity) {
+                segment.force();
+                openSegment(segmentNumber + 1, segmentRecords);
+            }
+            int offset = position * RECORD_SIZE;
+            segment.putLong(offset + 8, first);
+            segment.putLong(offset + 16, second);
+            segment.putLong(offset + 24, timestamp);
+            segment.putInt(offset, type.getCode());
+            // Контрольная сумма пишется последней: запись без неё при чтении считается концом журнала
+            segment.putInt(offset + 4, checksum(segmentView, appendCrc, offset));
+            position++;
+            empty = false;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось открыть новый сегмент журнала", e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public boolean isEmpty() {
+        return empty;
+    }
+
+    /**
+     * Читает журнал с начала, возвращает номер следующей записи.
+     */
+    public long replay(Visitor visitor) {
+        return replay(0, visitor);
+    }
+
+    /**
+     * Читает записи начиная с номера fromSequence, возвращает номер следующей записи, с которого
+     * продолжать чтение ленты изменений.
+     */
+    public long replay(long fromSequence, Visitor visitor) {
+        long sequence = 0;
+        CRC32C crc = new CRC32C();
+        try {
+            for (Path path : listSegments()) {
+                int records = (int) (Files.size(path) / RECORD_SIZE);
+                // Все сегменты, кроме последнего, заполнены целиком, их можно пропускать без чтения
+                if (sequence + records <= fromSequence) {
+                    sequence += records;
+                    continue;
+                }
+                MappedByteBuffer buffer = map(path, records, FileChannel.MapMode.READ_ONLY);
+                ByteBuffer view = buffer.duplicate();
+                buffer.order(ByteOrder.LITTLE_ENDIAN);
+                for (int record = 0; record < records; record++, sequence++) {
+                    int offset = record * RECORD_SIZE;
+                    int code = buffer.getInt(offset);
+                    if (code == 0) {
+                        return sequence;
+                    }
+                    if (!isValid(buffer, view, crc, offset)) {
+                        log.warn("Журнал {}: неверная контрольная сумма записи {}, чтение остановлено",
+                                directory, sequence);
+                        return sequence;
+                    }
+                    JournalEventType type = JournalEventType.fromCode(code);
+                    if (sequence >= fromSequence && type != null) {
+                        visitor.accept(type, buffer.getLong(offset + 8), buffer.getLong(offset + 16),
+                                buffer.getLong(offset + 24));
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось прочитать журнал " + directory, e);
+        }
+        return sequence;
+    }
+
+    /**
+     * Лайки по пользователям на конец журнала. Первый вызов после старта берёт состояние, прочитанное при
+     * проверке журнала, и дочитывает только записи после него, остальные читают журнал целиком.
+     */
+    public Map<Long, BitSet> replayLikes() {
+        Map<Long, BitSet> likes = takeStartupState(state -> state.takeLikes(this));
+        return likes != null ? likes : JournalState.replay(this).takeLikes(this);
+    }
+
+    /**
+     * Отсортированные списки друзей на конец журнала, без удалённых пользователей. Как и
+     * {@link #replayLikes()}, первый вызов после старта не читает журнал заново.
+     */
+    public Map<Long, long[]> replayFriends() {
+        Map<Long, long[]> friends = takeStartupState(state -> state.takeFriends(this));
+        return friends != null ? friends : JournalState.replay(this).takeFriends(this);
+    }
+
+    void keepStartupState(JournalState state) {
+        startupState = state;
+    }
+
+    private <T> T takeStartupState(Function<JournalState, T> part) {
+        JournalState state = startupState;
+        if (state == null) {
+            return null;
+        }
+        T taken = part.apply(state);
+        if (state.isTaken()) {
+            startupState = null;
+        }
+        return taken;
+    }
+
+    /**
+     * Удаляет все сегменты и начинает журнал заново, например после замены данных в базе из снимка.
+     * Номера записей тоже начинаются с нуля.
+     */
+    public void reset() {
+        lock.lock();
+        try {
+            if (segment == null) {
+                throw new IllegalStateException("Журнал закрыт");
+            }
+            startupState = null;
+            for (Path path : listSegments()) {
+                Files.delete(path);
+            }
+            openSegment(1, segmentRecords);
+            empty = true;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось очистить журнал " + directory, e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            if (segment != null) {
+                segment.force();
+                segment = null;
+                segmentView = null;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void openSegment(int number, int records) throws IOException {
+        segmentNumber = number;
+        segment = map(directory.resolve(String.format("%s%06d%s", SEGMENT_PREFIX, number, SEGMENT_SUFFIX)),
+                records, FileChannel.MapMode.READ_WRITE);
+        segmentView = segment.duplicate();
+        segment.order(ByteOrder.LITTLE_ENDIAN);
+        capacity = records;
+        position = 0;
+    }
+
+    private List<Path> listSegments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> {
+                String name = path.getFileName().toString();
+                return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+            }).sorted().toList();
+        }
+    }
+
+    private static int segmentNumber(Path path) {
+        String name = path.getFileName().toString();
+        return Integer.parseInt(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    private static MappedByteBuffer map(Path path, int records, FileChannel.MapMode mode) throws IOException {
+        StandardOpenOption[] options = mode == FileChannel.MapMode.READ_ONLY
+                ? new StandardOpenOption[]{StandardOpenOption.READ}
+                : new StandardOpenOption[]{StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE};
+        // Отображение остаётся действительным после закрытия канала, при записи файл дорастает нулями
+        try (FileChannel channel = FileChannel.open(path, options)) {
+            return channel.map(mode, 0, (long) records * RECORD_SIZE);
+        }
+    }
+
+    private static boolean isValid(ByteBuffer buffer, ByteBuffer view, CRC32C crc, int offset) {
+        return buffer.getInt(offset + 4) == checksum(view, crc, offset);
+    }
+
+    private static int checksum(ByteBuffer view, CRC32C crc, int offset) {
+        crc.reset();
+        view.clear().position(offset).limit(offset + 4);
+        crc.update(view);
+        view.clear().position(offset + 8).limit(offset + RECORD_SIZE);
+        crc.update(view);
+        return (int) crc.getValue();
+    }
+}
@@ -0,0 +1,30 @@
+package ru.yandex.practicum.filmorate.storage.journal;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.yandex.practicum.filmorate.storage.FilmStorage;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+@Configuration
+@ConditionalOnProperty(name = "filmorate.journal.enabled", havingValue = "true")
+public class JournalConfig {
+
+    @Bean(destroyMethod = "close")
+    public EventJournal eventJournal(@Value("${filmorate.journal.dir:./db/journal}") Path directory,
+                                     @Value("${filmorate.journal.segment-records:1048576}") int segmentRecords,
+                                     FilmStorage filmStorage, JdbcTemplate jdbc) throws IOException {
+        EventJournal journal = new EventJournal(directory, segmentRecords);
+        new JournalSeeder(journal, filmStorage, jdbc).open();
+        return journal;
+    }
+
+    @Bean
+    public JournalSeeder journalSeeder(EventJournal eventJournal, FilmStorage filmStorage, JdbcTemplate jdbc) {
+        return new JournalSeeder(eventJournal, filmStorage, jdbc);
+    }
+}
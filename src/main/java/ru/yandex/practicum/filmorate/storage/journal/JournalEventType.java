@@ -0,0 +1,36 @@
+package ru.yandex.practicum.filmorate.storage.journal;
+
+/**
+ * Типы записей журнала. Код хранится в записи, 0 зарезервирован под незаписанное место сегмента,
+ * поэтому коды существующих типов менять нельзя.
+ */
+public enum JournalEventType {
+    LIKE_ADDED(1),
+    LIKE_REMOVED(2),
+    FRIEND_ADDED(3),
+    FRIEND_REMOVED(4),
+    FILM_REMOVED(5),
+    USER_REMOVED(6);
+
+    private static final JournalEventType[] BY_CODE = new JournalEventType[7];
+
+    static {
+        for (JournalEventType type : values()) {
+            BY_CODE[type.code] = type;
+        }
+    }
+
+    private final int code;
+
+    JournalEventType(int code) {
+        this.code = code;
+    }
+
+    public int getCode() {
+        return code;
+    }
+
+    static JournalEventType fromCode(int code) {
+        return code > 0 && code < BY_CODE.length ? BY_CODE[code] : null;
+    }
+}
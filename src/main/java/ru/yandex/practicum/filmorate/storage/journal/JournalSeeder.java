@@ -0,0 +1,111 @@
+package ru.yandex.practicum.filmorate.storage.journal;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.yandex.practicum.filmorate.storage.FilmStorage;
+
+/**
+ * Заполняет журнал текущими лайками и дружбой из базы и сверяет с ней уже заполненный журнал.
+ * При старте журнал читается один раз: прочитанное состояние служит и для сверки, и для загрузки индексов.
+ */
+@Slf4j
+@RequiredArgsConstructor
+public class JournalSeeder {
+
+    // Журнал переписывается текущим состоянием, когда событий в нём больше, чем живых связей, в столько раз
+    static final int COMPACTION_RATIO = 2;
+    // Маленький журнал не сжимается: чтение всё равно дешёвое
+    static final long COMPACTION_MIN_EVENTS = 10_000;
+
+    private final EventJournal journal;
+    private final FilmStorage filmStorage;
+    private final JdbcTemplate jdbc;
+
+    /**
+     * Готовит журнал при старте приложения, пока в него никто не пишет. Новый журнал заполняется из базы,
+     * отставший - заполняется заново, разросшийся из-за отмен и удалений - сжимается.
+     */
+    public void open() {
+        JournalState state = new JournalState();
+        if (journal.isEmpty()) {
+            // Новый журнал начинается с текущего состояния базы, дальше индексы можно строить только по нему
+            seed(state);
+        } else {
+            state = JournalState.replay(journal);
+            long events = state.events();
+            if (!matchesDatabase(state)) {
+                // Индексы строятся только по журналу, поэтому отставший журнал заполняется из базы заново
+                journal.reset();
+                state = new JournalState();
+                seed(state);
+            } else if (events >= COMPACTION_MIN_EVENTS
+                    && events > (state.likeCount() + state.friendshipCount()) * COMPACTION_RATIO) {
+                state.compact(journal);
+                log.info("Журнал сжат: событий было {}, осталось {}", events, state.events());
+            }
+        }
+        journal.keepStartupState(state);
+    }
+
+    public long seed() {
+        return seed(null);
+    }
+
+    /**
+     * Очищает журнал и заполняет его заново, когда данные в базе заменены целиком.
+     * Заполнение заново заодно сжимает журнал: в нём остаются только текущие связи.
+     */
+    public long reseed() {
+        journal.reset();
+        return seed();
+    }
+
+    /**
+     * Сравнивает число лайков и дружб, восстановленных из журнала, с числом строк в таблицах.
+     * Журнал пишется после фиксации в базе, поэтому падение между ними, потеря незаписанного на диск хвоста
+     * или несохранённая пачка отложенных лайков оставляют его позади базы. Сверка по количеству ловит такие
+     * расхождения, но не взаимно погашенные: потерянный лайк и потерянную отмену другого лайка.
+     */
+    public boolean matchesDatabase() {
+        return matchesDatabase(JournalState.replay(journal));
+    }
+
+    // Записанные события применяются и к state, если он передан, чтобы индексы не читали журнал заново
+    private long seed(JournalState state) {
+        EventJournal.Visitor written = state != null ? state : (type, first, second, timestamp) -> {
+        };
+        long[] events = new long[1];
+        filmStorage.exportLikes(like -> {
+            journal.append(JournalEventType.LIKE_ADDED, like.getFilmId(), like.getUserId());
+            written.accept(JournalEventType.LIKE_ADDED, like.getFilmId(), like.getUserId(), 0);
+            events[0]++;
+        });
+        jdbc.query("SELECT user_id, friend_id FROM friendship", resultSet -> {
+            long userId = resultSet.getLong("user_id");
+            long friendId = resultSet.getLong("friend_id");
+            journal.append(JournalEventType.FRIEND_ADDED, userId, friendId);
+            written.accept(JournalEventType.FRIEND_ADDED, userId, friendId, 0);
+            events[0]++;
+        });
+        if (state != null) {
+            // Журнал перед заполнением был пуст, и при старте в него больше никто не пишет
+            state.readUpTo(events[0]);
+        }
+        log.info("Журнал заполнен текущим состоянием базы, записей: {}", events[0]);
+        return events[0];
+    }
+
+    private boolean matchesDatabase(JournalState state) {
+        long journalLikes = state.likeCount();
+        long journalFriends = state.friendshipCount();
+        long databaseLikes = filmStorage.countLikes();
+        Long databaseFriends = jdbc.queryForObject("SELECT COUNT(*) FROM friendship", Long.class);
+        if (journalLikes == databaseLikes && databaseFriends != null && journalFriends == databaseFriends) {
+            return true;
+        }
+        log.warn("Журнал расходится с базой: лайков {} против {}, дружб {} против {}",
+                journalLikes, databaseLikes, journalFriends, databaseFriends);
+        return false;
+    }
+}
@@ -0,0 +1,163 @@
+package ru.yandex.practicum.filmorate.storage.journal;
+
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Лайки и дружба, восстановленные из журнала. Лайки и граф дружбы забираются по одному разу: после этого
+ * события этой части больше не применяются, а сами данные принадлежат забравшему их индексу.
+ * Все события - присваивания отдельных связей, поэтому повторное применение уже учтённых записей
+ * не меняет состояние.
+ */
+final class JournalState implements EventJournal.Visitor {
+
+    private Map<Long, BitSet> likes = new HashMap<>();
+    private Map<Long, Set<Long>> friends = new HashMap<>();
+    private Set<Long> removedUsers = new HashSet<>();
+    private long events;
+    private long nextSequence;
+
+    static JournalState replay(EventJournal journal) {
+        JournalState state = new JournalState();
+        state.nextSequence = journal.replay(state);
+        return state;
+    }
+
+    @Override
+    public synchronized void accept(JournalEventType type, long first, long second, long timestamp) {
+        events++;
+        switch (type) {
+            case LIKE_ADDED -> {
+                if (likes != null) {
+                    likes.computeIfAbsent(second, id -> new BitSet()).set(Math.toIntExact(first));
+                }
+            }
+            case LIKE_REMOVED -> {
+                BitSet films = likes == null ? null : likes.get(second);
+                if (films != null) {
+                    films.clear(Math.toIntExact(first));
+                }
+            }
+            case FILM_REMOVED -> {
+                if (likes != null) {
+                    likes.values().forEach(films -> films.clear(Math.toIntExact(first)));
+                }
+            }
+            case FRIEND_ADDED -> {
+                if (friends != null) {
+                    friends.computeIfAbsent(first, id -> new HashSet<>()).add(second);
+                }
+            }
+            case FRIEND_REMOVED -> {
+                Set<Long> adjacency = friends == null ? null : friends.get(first);
+                if (adjacency != null) {
+                    adjacency.remove(second);
+                }
+            }
+            case USER_REMOVED -> {
+                if (likes != null) {
+                    likes.remove(first);
+                }
+                if (friends != null) {
+                    // Входящие связи удалённого пользователя вычищаются при выдаче графа одним проходом
+                    friends.remove(first);
+                    removedUsers.add(first);
+                }
+            }
+        }
+    }
+
+    /**
+     * Дочитывает записи, добавленные в журнал после последнего чтения.
+     */
+    synchronized void catchUp(EventJournal journal) {
+        nextSequence = journal.replay(nextSequence, this);
+    }
+
+    // Состояние собрано не чтением журнала, а вместе с его заполнением
+    synchronized void readUpTo(long sequence) {
+        nextSequence = sequence;
+    }
+
+    synchronized long events() {
+        return events;
+    }
+
+    synchronized long likeCount() {
+        return likes.values().stream().mapToLong(BitSet::cardinality).sum();
+    }
+
+    synchronized long friendshipCount() {
+        return friends.values().stream()
+                .flatMap(Set::stream)
+                .filter(friendId -> !removedUsers.contains(friendId))
+                .count();
+    }
+
+    /**
+     * Переписывает журнал текущим состоянием: по записи на каждый лайк и дружбу. Вызывается, пока в журнал
+     * никто не пишет, поэтому число записанных событий и есть позиция конца журнала.
+     */
+    synchronized void compact(EventJournal journal) {
+        journal.reset();
+        long written = 0;
+        for (Map.Entry<Long, BitSet> entry : likes.entrySet()) {
+            BitSet films = entry.getValue();
+            for (int filmId = films.nextSetBit(0); filmId >= 0; filmId = films.nextSetBit(filmId + 1)) {
+                journal.append(JournalEventType.LIKE_ADDED, filmId, entry.getKey());
+                written++;
+            }
+        }
+        for (Map.Entry<Long, Set<Long>> entry : friends.entrySet()) {
+            for (long friendId : entry.getValue()) {
+                if (!removedUsers.contains(friendId)) {
+                    journal.append(JournalEventType.FRIEND_ADDED, entry.getKey(), friendId);
+                    written++;
+                }
+            }
+        }
+        friends.values().forEach(adjacency -> adjacency.removeAll(removedUsers));
+        removedUsers.clear();
+        events = written;
+        nextSequence = written;
+    }
+
+    synchronized Map<Long, BitSet> takeLikes(EventJournal journal) {
+        if (likes == null) {
+            return null;
+        }
+        catchUp(journal);
+        Map<Long, BitSet> taken = likes;
+        likes = null;
+        taken.values().removeIf(BitSet::isEmpty);
+        return taken;
+    }
+
+    synchronized Map<Long, long[]> takeFriends(EventJournal journal) {
+        if (friends == null) {
+            return null;
+        }
+        catchUp(journal);
+        Map<Long, long[]> taken = new HashMap<>();
+        friends.forEach((userId, adjacency) -> {
+            long[] sorted = adjacency.stream()
+                    .mapToLong(Long::longValue)
+                    .filter(friendId -> !removedUsers.contains(friendId))
+                    .sorted()
+                    .toArray();
+            if (sorted.length > 0) {
+                taken.put(userId, sorted);
+            }
+        });
+        friends = null;
+        removedUsers = null;
+        return taken;
+    }
+
+    synchronized boolean isTaken() {
+        return likes == null && friends == null;
+    }
+}
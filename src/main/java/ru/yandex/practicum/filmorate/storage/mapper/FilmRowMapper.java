@@ -4,20 +4,16 @@ import lombok.RequiredArgsConstructor;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.stereotype.Component;
 import ru.yandex.practicum.filmorate.model.Film;
-import ru.yandex.practicum.filmorate.model.Genre;
-import ru.yandex.practicum.filmorate.model.Mpa;
-import ru.yandex.practicum.filmorate.storage.GenreDbStorage;
+import ru.yandex.practicum.filmorate.storage.MpaDbStorage;
 
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.util.List;
 
 @Component
 @RequiredArgsConstructor
 public class FilmRowMapper implements RowMapper<Film> {
 
-    private final MpaRowMapper mpaRowMapper;
-    private final GenreDbStorage genreDbStorage;
+    private final MpaDbStorage mpaDbStorage;
 
     @Override
     public Film mapRow(ResultSet resultSet, int rowNum) throws SQLException {
@@ -27,13 +23,9 @@ public class FilmRowMapper implements RowMapper<Film> {
         film.setDescription(resultSet.getString("description"));
         film.setReleaseDate(resultSet.getDate("release_date").toLocalDate());
         film.setDuration(resultSet.getInt("duration"));
-
-        Mpa mpa = mpaRowMapper.mapRow(resultSet, rowNum);
-        film.setMpa(mpa);
-
-        List<Genre> genres = genreDbStorage.getGenresByFilmId(film.getId());
-        film.setGenres(genres);
+        film.setLikeCount(resultSet.getInt("like_count"));
+        // Рейтинг берётся из справочника в памяти, жанры подгружаются пачкой в FilmDbStorage
+        film.setMpa(mpaDbStorage.getMpa(resultSet.getInt("mpa_id")).orElse(null));
         return film;
     }
 }
-
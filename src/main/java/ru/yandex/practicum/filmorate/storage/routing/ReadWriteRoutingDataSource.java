@@ -0,0 +1,71 @@
+package ru.yandex.practicum.filmorate.storage.routing;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Отправляет соединения read-only транзакций HTTP-запросов на реплики по кругу, остальные - на основную базу.
+ * Вне запроса (загрузка индексов при старте и после восстановления из снимка, фоновые задачи) все
+ * соединения идут на основную базу: отстающая реплика оставила бы индекс в памяти без последних записей.
+ * Флаг read-only выставляется после получения соединения, поэтому источник должен стоять за
+ * {@link org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy}, который берёт настоящее
+ * соединение только перед первым запросом.
+ */
+public class ReadWriteRoutingDataSource extends AbstractRoutingDataSource implements Closeable {
+
+    static final String PRIMARY = "primary";
+    static final String REPLICA_PREFIX = "replica-";
+
+    private final DataSource primary;
+    private final List<DataSource> replicas;
+    private final ReplicaConsistency consistency;
+    private final AtomicInteger next = new AtomicInteger();
+
+    public ReadWriteRoutingDataSource(DataSource primary, List<DataSource> replicas, ReplicaConsistency consistency) {
+        if (replicas.isEmpty()) {
+            throw new IllegalArgumentException("Не задано ни одной реплики");
+        }
+        this.primary = primary;
+        this.replicas = List.copyOf(replicas);
+        this.consistency = consistency;
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(PRIMARY, primary);
+        for (int i = 0; i < replicas.size(); i++) {
+            targets.put(REPLICA_PREFIX + i, replicas.get(i));
+        }
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+        setLenientFallback(false);
+        afterPropertiesSet();
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (TransactionSynchronizationManager.isCurrentTransactionReadOnly() && RequestWrites.inRequest()
+                && !(consistency == ReplicaConsistency.READ_YOUR_WRITES && RequestWrites.isWritten())) {
+            return REPLICA_PREFIX + Math.floorMod(next.getAndIncrement(), replicas.size());
+        }
+        RequestWrites.markWritten();
+        return PRIMARY;
+    }
+
+    @Override
+    public void close() {
+        closePool(primary);
+        replicas.forEach(ReadWriteRoutingDataSource::closePool);
+    }
+
+    private static void closePool(DataSource dataSource) {
+        if (dataSource instanceof HikariDataSource hikari) {
+            hikari.close();
+        }
+    }
+}
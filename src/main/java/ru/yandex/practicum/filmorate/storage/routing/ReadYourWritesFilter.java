@@ -0,0 +1,90 @@
+package ru.yandex.practicum.filmorate.storage.routing;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.time.Clock;
+import java.time.Duration;
+
+/**
+ * Задаёт границы запроса: только чтения внутри них отдаются репликам. Для политики
+ * {@link ReplicaConsistency#READ_YOUR_WRITES} изменяющий запрос, дошедший до основной базы, получает cookie
+ * с временем записи; пока с этого момента не прошло окно отставания реплик, все чтения клиента идут на
+ * основную базу. Так POST /films и следующий за ним GET /films/{id} видят одни и те же данные.
+ * При нулевом окне (политика {@link ReplicaConsistency#EVENTUAL}) cookie не ставится.
+ */
+public class ReadYourWritesFilter extends OncePerRequestFilter {
+
+    static final String LAST_WRITE_COOKIE = "filmorate-last-write";
+
+    private final Duration window;
+    private final Clock clock;
+
+    public ReadYourWritesFilter(Duration window) {
+        this(window, Clock.systemUTC());
+    }
+
+    ReadYourWritesFilter(Duration window, Clock clock) {
+        this.window = window;
+        this.clock = clock;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        long now = clock.millis();
+        boolean pinned = withinWindow(lastWrite(request), now);
+        // Cookie ставится при первом обращении к основной базе, пока ответ ещё не начал отправляться
+        Runnable onFirstWrite = isModifying(request) && !window.isZero() ? () -> rememberWrite(response) : () -> {
+        };
+        RequestWrites.begin(pinned, onFirstWrite);
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            RequestWrites.end();
+        }
+    }
+
+    private boolean withinWindow(Long lastWrite, long now) {
+        return lastWrite != null && lastWrite <= now && now - lastWrite < window.toMillis();
+    }
+
+    private void rememberWrite(HttpServletResponse response) {
+        if (response.isCommitted()) {
+            return;
+        }
+        Cookie cookie = new Cookie(LAST_WRITE_COOKIE, Long.toString(clock.millis()));
+        cookie.setPath("/");
+        cookie.setHttpOnly(true);
+        cookie.setMaxAge((int) ((window.toMillis() + 999) / 1000));
+        response.addCookie(cookie);
+    }
+
+    private static Long lastWrite(HttpServletRequest request) {
+        Cookie[] cookies = request.getCookies();
+        if (cookies == null) {
+            return null;
+        }
+        for (Cookie cookie : cookies) {
+            if (LAST_WRITE_COOKIE.equals(cookie.getName())) {
+                try {
+                    return Long.parseLong(cookie.getValue());
+                } catch (NumberFormatException e) {
+                    return null;
+                }
+            }
+        }
+        return null;
+    }
+
+    // Чтения тоже могут идти на основную базу (вне read-only транзакций), cookie ставят только изменения
+    private static boolean isModifying(HttpServletRequest request) {
+        String method = request.getMethod();
+        return !("GET".equals(method) || "HEAD".equals(method) || "OPTIONS".equals(method));
+    }
+}
@@ -0,0 +1,17 @@
+package ru.yandex.practicum.filmorate.storage.routing;
+
+/**
+ * Какие чтения можно отдать реплике.
+ */
+public enum ReplicaConsistency {
+    /**
+     * Все read-only транзакции идут на реплики, отставание реплики видно клиенту.
+     */
+    EVENTUAL,
+    /**
+     * Как EVENTUAL, но после первой записи в рамках HTTP-запроса его чтения идут на основную базу,
+     * а следующие запросы того же клиента читают с основной базы в течение
+     * filmorate.datasource.replicas.read-your-writes-window (клиент помечается cookie).
+     */
+    READ_YOUR_WRITES
+}
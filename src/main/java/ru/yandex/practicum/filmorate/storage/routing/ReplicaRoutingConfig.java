@@ -0,0 +1,87 @@
+package ru.yandex.practicum.filmorate.storage.routing;
+
+import com.zaxxer.hikari.HikariDataSource;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Включается через filmorate.datasource.replicas.enabled=true. Основная база берётся из spring.datasource.*,
+ * реплики - из filmorate.datasource.replicas.urls с теми же учётными данными. Настройки пулов
+ * spring.datasource.hikari.* действуют на все пулы, filmorate.datasource.replicas.hikari.* переопределяет их
+ * для реплик. Данные на реплики приложение не переносит и не синхронизирует: их наполняет внешняя
+ * репликация основной базы, миграции Flyway применяются только к основной.
+ */
+@Configuration
+@ConditionalOnProperty(name = "filmorate.datasource.replicas.enabled", havingValue = "true")
+@RequiredArgsConstructor
+public class ReplicaRoutingConfig {
+
+    private final DataSourceProperties properties;
+    private final Environment environment;
+
+    @Value("${filmorate.datasource.replicas.urls}")
+    private List<String> replicaUrls;
+
+    @Value("${filmorate.datasource.replicas.consistency:read-your-writes}")
+    private ReplicaConsistency consistency;
+
+    @Value("${filmorate.datasource.replicas.read-your-writes-window:5s}")
+    private Duration readYourWritesWindow;
+
+    // Не кандидат на внедрение: приложение получает только ленивый прокси ниже
+    @Bean(autowireCandidate = false)
+    public ReadWriteRoutingDataSource routingDataSource() {
+        HikariDataSource primary = pool("filmorate-primary", properties.determineUrl(), false);
+        List<DataSource> replicas = IntStream.range(0, replicaUrls.size())
+                .mapToObj(i -> (DataSource) pool("filmorate-replica-" + i, replicaUrls.get(i), true))
+                .toList();
+        return new ReadWriteRoutingDataSource(primary, replicas, consistency);
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource() {
+        LazyConnectionDataSourceProxy proxy = new LazyConnectionDataSourceProxy();
+        // Значения по умолчанию H2 - иначе прокси при старте берёт соединение, чтобы их узнать
+        proxy.setDefaultAutoCommit(true);
+        proxy.setDefaultTransactionIsolation(Connection.TRANSACTION_READ_COMMITTED);
+        proxy.setTargetDataSource(routingDataSource());
+        return proxy;
+    }
+
+    // Нужен при любой политике: вне границ запроса чтения идут на основную базу
+    @Bean
+    public ReadYourWritesFilter readYourWritesFilter() {
+        return new ReadYourWritesFilter(consistency == ReplicaConsistency.READ_YOUR_WRITES
+                ? readYourWritesWindow : Duration.ZERO);
+    }
+
+    private HikariDataSource pool(String name, String url, boolean replica) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder()
+                .type(HikariDataSource.class)
+                .url(url)
+                .build();
+        Binder binder = Binder.get(environment);
+        binder.bind("spring.datasource.hikari", Bindable.ofInstance(dataSource));
+        if (replica) {
+            binder.bind("filmorate.datasource.replicas.hikari", Bindable.ofInstance(dataSource));
+        }
+        dataSource.setPoolName(name);
+        return dataSource;
+    }
+}
@@ -0,0 +1,59 @@
+package ru.yandex.practicum.filmorate.storage.routing;
+
+/**
+ * Границы текущего HTTP-запроса и отметка о том, что его чтения должны идти на основную базу: запрос уже
+ * писал в неё или клиент писал недавно, в пределах окна отставания реплик. Вне запроса (фоновые потоки,
+ * загрузка индексов при старте) состояния нет, и реплики не используются.
+ */
+final class RequestWrites {
+
+    private static final ThreadLocal<State> STATE = new ThreadLocal<>();
+
+    private RequestWrites() {
+    }
+
+    /**
+     * @param pinned       клиент писал недавно, чтения запроса сразу идут на основную базу
+     * @param onFirstWrite вызывается при первом обращении запроса к основной базе
+     */
+    static void begin(boolean pinned, Runnable onFirstWrite) {
+        STATE.set(new State(pinned, onFirstWrite));
+    }
+
+    static void begin() {
+        begin(false, () -> {
+        });
+    }
+
+    static void end() {
+        STATE.remove();
+    }
+
+    static boolean inRequest() {
+        return STATE.get() != null;
+    }
+
+    static void markWritten() {
+        State state = STATE.get();
+        if (state != null && !state.written) {
+            state.written = true;
+            state.onFirstWrite.run();
+        }
+    }
+
+    static boolean isWritten() {
+        State state = STATE.get();
+        return state != null && (state.written || state.pinned);
+    }
+
+    private static final class State {
+        private final boolean pinned;
+        private final Runnable onFirstWrite;
+        private boolean written;
+
+        private State(boolean pinned, Runnable onFirstWrite) {
+            this.pinned = pinned;
+            this.onFirstWrite = onFirstWrite;
+        }
+    }
+}
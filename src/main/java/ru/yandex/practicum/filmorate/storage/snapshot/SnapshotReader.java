@@ -0,0 +1,208 @@
+package ru.yandex.practicum.filmorate.storage.snapshot;
+
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Читает снимок, записанный {@link SnapshotWriter}, через отображение файла в память окнами по 64 МБ.
+ * Блок целиком помещается в окно, поэтому столбцы разбираются прямо из отображённой памяти.
+ */
+final class SnapshotReader implements Closeable {
+
+    private static final long WINDOW = 64L << 20;
+
+    record Block(int rows, int[][] ints, String[][] strings, boolean[][] nulls) {
+
+        boolean isNull(int column, int row) {
+            return nulls[column] != null && nulls[column][row];
+        }
+    }
+
+    private final Path file;
+    private final FileChannel channel;
+    private final long size;
+    private final int tableCount;
+
+    private MappedByteBuffer buffer;
+    private long bufferStart;
+    private SnapshotTable table;
+
+    SnapshotReader(Path file) throws IOException {
+        this.file = file;
+        this.channel = FileChannel.open(file, StandardOpenOption.READ);
+        this.size = channel.size();
+        try {
+            remap(0, Integer.BYTES * 3);
+            if (buffer.getInt() != SnapshotWriter.MAGIC) {
+                throw new ValidationException("Файл " + file.getFileName() + " не является снимком");
+            }
+            int version = buffer.getInt();
+            if (version != SnapshotWriter.VERSION) {
+                throw new ValidationException("Неподдерживаемая версия снимка: " + version);
+            }
+            tableCount = buffer.getInt();
+        } catch (RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    int getTableCount() {
+        return tableCount;
+    }
+
+    SnapshotTable readTable() throws IOException {
+        String name = readString();
+        int columnCount = readInt();
+        List<SnapshotTable.Column> columns = new ArrayList<>(columnCount);
+        SnapshotTable.ColumnType[] types = SnapshotTable.ColumnType.values();
+        for (int i = 0; i < columnCount; i++) {
+            String column = readString();
+            ensure(1);
+            int type = buffer.get();
+            if (type < 0 || type >= types.length) {
+                throw corrupted();
+            }
+            columns.add(new SnapshotTable.Column(column, types[type]));
+        }
+        table = new SnapshotTable(name, columns);
+        return table;
+    }
+
+    /**
+     * Возвращает следующий блок текущей таблицы или null, если таблица закончилась.
+     */
+    Block readBlock() throws IOException {
+        int rows = readInt();
+        if (rows == 0) {
+            return null;
+        }
+        if (rows < 0 || rows > SnapshotWriter.BLOCK_ROWS) {
+            throw corrupted();
+        }
+        int length = readInt();
+        ensure(length);
+        ByteBuffer data = buffer.slice(buffer.position(), length);
+        buffer.position(buffer.position() + length);
+        try {
+            return decodeBlock(data, rows);
+        } catch (BufferUnderflowException e) {
+            throw corrupted();
+        }
+    }
+
+    private Block decodeBlock(ByteBuffer data, int rows) {
+        int columnCount = table.columns().size();
+        int[][] ints = new int[columnCount][];
+        String[][] strings = new String[columnCount][];
+        boolean[][] nulls = new boolean[columnCount][];
+        for (int column = 0; column < columnCount; column++) {
+            if (data.get() != 0) {
+                boolean[] columnNulls = new boolean[rows];
+                for (int from = 0; from < rows; from += 8) {
+                    int bits = data.get();
+                    for (int bit = 0; bit < 8 && from + bit < rows; bit++) {
+                        columnNulls[from + bit] = (bits & (1 << bit)) != 0;
+                    }
+                }
+                nulls[column] = columnNulls;
+            }
+            if (table.columns().get(column).type() == SnapshotTable.ColumnType.STRING) {
+                String[] values = new String[rows];
+                for (int row = 0; row < rows; row++) {
+                    values[row] = decodeString(data, data.getInt());
+                }
+                strings[column] = values;
+            } else {
+                int[] values = new int[rows];
+                data.asIntBuffer().get(values);
+                data.position(data.position() + rows * Integer.BYTES);
+                ints[column] = values;
+            }
+        }
+        if (data.hasRemaining()) {
+            throw corrupted();
+        }
+        return new Block(rows, ints, strings, nulls);
+    }
+
+    /**
+     * Пропускает оставшиеся блоки текущей таблицы, возвращает число строк в них.
+     */
+    long skipTable() throws IOException {
+        long rows = 0;
+        int blockRows;
+        while ((blockRows = readInt()) != 0) {
+            int length = readInt();
+            if (length < 0 || bufferStart + buffer.position() + length > size) {
+                throw corrupted();
+            }
+            if (length <= buffer.remaining()) {
+                buffer.position(buffer.position() + length);
+            } else {
+                remap(bufferStart + buffer.position() + length, 0);
+            }
+            rows += blockRows;
+        }
+        return rows;
+    }
+
+    @Override
+    public void close() throws IOException {
+        buffer = null;
+        channel.close();
+    }
+
+    private int readInt() throws IOException {
+        ensure(Integer.BYTES);
+        return buffer.getInt();
+    }
+
+    private String readString() throws IOException {
+        int length = readInt();
+        ensure(length);
+        return decodeString(buffer, length);
+    }
+
+    private String decodeString(ByteBuffer source, int length) {
+        if (length < 0 || length > source.remaining()) {
+            throw corrupted();
+        }
+        byte[] bytes = new byte[length];
+        source.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private void ensure(int bytes) throws IOException {
+        if (bytes < 0) {
+            throw corrupted();
+        }
+        if (buffer.remaining() < bytes) {
+            remap(bufferStart + buffer.position(), bytes);
+        }
+    }
+
+    private void remap(long position, int required) throws IOException {
+        if (position + required > size) {
+            throw corrupted();
+        }
+        bufferStart = position;
+        buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(size - position,
+                Math.max(WINDOW, required)));
+    }
+
+    private ValidationException corrupted() {
+        return new ValidationException("Снимок " + file.getFileName() + " повреждён или обрезан");
+    }
+}
@@ -0,0 +1,248 @@
+package ru.yandex.practicum.filmorate.storage.snapshot;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Isolation;
+import org.springframework.transaction.annotation.Transactional;
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.storage.FilmStorage;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static ru.yandex.practicum.filmorate.storage.snapshot.SnapshotTable.ColumnType.DATE;
+import static ru.yandex.practicum.filmorate.storage.snapshot.SnapshotTable.ColumnType.INT;
+import static ru.yandex.practicum.filmorate.storage.snapshot.SnapshotTable.ColumnType.STRING;
+import static ru.yandex.practicum.filmorate.storage.snapshot.SnapshotTable.column;
+
+/**
+ * Снимок всех данных в одном файле и восстановление базы из него. Таблицы пишутся в порядке внешних
+ * ключей, поэтому при восстановлении строки вставляются пакетами по блоку снимка без отключения
+ * ограничений. Лайки читаются через FilmStorage, чтобы в снимок попали и лайки из шард.
+ */
+@Slf4j
+@Repository
+@RequiredArgsConstructor
+public class SnapshotStorage {
+
+    private static final int EXPORT_FETCH_SIZE = 500;
+    private static final List<SnapshotTable> TABLES = List.of(
+            SnapshotTable.of("mpa", column("id", INT), column("name", STRING)),
+            SnapshotTable.of("genres", column("id", INT), column("name", STRING)),
+            SnapshotTable.of("users", column("id", INT), column("name", STRING), column("email", STRING),
+                    column("login", STRING), column("birthday", DATE)),
+            SnapshotTable.of("films", column("id", INT), column("name", STRING), column("description", STRING),
+                    column("release_date", DATE), column("duration", INT), column("mpa_id", INT),
+                    column("like_count", INT)),
+            SnapshotTable.of("film_genres", column("film_id", INT), column("genre_id", INT)),
+            SnapshotTable.of("likes", column("film_id", INT), column("user_id", INT)),
+            SnapshotTable.of("friendship", column("user_id", INT), column("friend_id", INT)));
+    private static final List<String> IDENTITY_TABLES = List.of("mpa", "genres", "users", "films");
+
+    private final JdbcTemplate jdbc;
+    private final FilmStorage filmStorage;
+
+    /**
+     * Пишет снимок во временный файл рядом с целевым и переименовывает его, чтобы недописанный снимок
+     * не оказался под рабочим именем. Возвращает число строк по таблицам.
+     */
+    @Transactional(readOnly = true, isolation = Isolation.REPEATABLE_READ)
+    public Map<String, Long> write(Path file) {
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        Map<String, Long> rows = new LinkedHashMap<>();
+        try {
+            try (SnapshotWriter writer = new SnapshotWriter(temporary, TABLES.size())) {
+                for (SnapshotTable table : TABLES) {
+                    writer.beginTable(table);
+                    if (table.name().equals("likes")) {
+                        filmStorage.exportLikes(like -> {
+                            writer.putInt(0, Math.toIntExact(like.getFilmId()));
+                            writer.putInt(1, Math.toIntExact(like.getUserId()));
+                            endRow(writer);
+                        });
+                    } else {
+                        exportTable(table, writer);
+                    }
+                    rows.put(table.name(), writer.endTable());
+                }
+            }
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось записать снимок " + file, e);
+        } finally {
+            deleteQuietly(temporary);
+        }
+        log.info("Снимок {} записан: {}", file, rows);
+        return rows;
+    }
+
+    /**
+     * Заменяет все данные в базе содержимым снимка. Перед удалением данных снимок проверяется целиком,
+     * повреждённый или чужой файл базу не затрагивает. Дальше операция не атомарна: сбой во время загрузки
+     * (например, нехватка места) оставляет часть таблиц пустыми или неполными, и восстановление нужно
+     * повторить. Счётчики идентификаторов продолжаются после наибольшего восстановленного id. Возвращает
+     * число строк по таблицам.
+     */
+    public Map<String, Long> restore(Path file) {
+        Map<String, Long> rows = verify(file);
+        jdbc.execute((ConnectionCallback<Void>) connection -> {
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            // Откатывать при сбое нечего: TRUNCATE и ALTER TABLE фиксируют транзакцию сами, а строки
+            // фиксируются поблочно. Сбой оставляет базу восстановленной частично, восстановление нужно повторить
+            try (SnapshotReader reader = new SnapshotReader(file)) {
+                clear(connection);
+                for (int i = 0; i < reader.getTableCount(); i++) {
+                    load(reader, reader.readTable(), connection);
+                }
+                resetIdentities(connection);
+                connection.commit();
+            } catch (IOException e) {
+                log.error("Восстановление из снимка {} прервано, база восстановлена частично", file, e);
+                throw new UncheckedIOException("Не удалось прочитать снимок " + file, e);
+            } catch (SQLException | RuntimeException e) {
+                log.error("Восстановление из снимка {} прервано, база восстановлена частично", file, e);
+                throw e;
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+            return null;
+        });
+        log.info("База восстановлена из снимка {}: {}", file, rows);
+        return rows;
+    }
+
+    private void exportTable(SnapshotTable table, SnapshotWriter writer) {
+        List<SnapshotTable.Column> columns = table.columns();
+        String query = "SELECT " + table.columnList() + " FROM " + table.name();
+        jdbc.query(connection -> {
+            PreparedStatement preparedStatement = connection.prepareStatement(query,
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            preparedStatement.setFetchSize(EXPORT_FETCH_SIZE);
+            return preparedStatement;
+        }, resultSet -> {
+            for (int i = 0; i < columns.size(); i++) {
+                switch (columns.get(i).type()) {
+                    case INT -> writer.putInt(i, resultSet.getObject(i + 1, Integer.class));
+                    case STRING -> writer.putString(i, resultSet.getString(i + 1));
+                    case DATE -> writer.putDate(i, resultSet.getObject(i + 1, LocalDate.class));
+                }
+            }
+            endRow(writer);
+        });
+    }
+
+    private Map<String, Long> verify(Path file) {
+        Map<String, Long> rows = new LinkedHashMap<>();
+        try (SnapshotReader reader = new SnapshotReader(file)) {
+            if (reader.getTableCount() != TABLES.size()) {
+                throw new ValidationException("Снимок не совпадает со схемой базы: таблиц " + reader.getTableCount()
+                        + " вместо " + TABLES.size());
+            }
+            for (SnapshotTable expected : TABLES) {
+                SnapshotTable table = reader.readTable();
+                if (!table.equals(expected)) {
+                    throw new ValidationException("Снимок не совпадает со схемой базы: таблица " + table.name()
+                            + " вместо " + expected.name());
+                }
+                rows.put(table.name(), reader.skipTable());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось прочитать снимок " + file, e);
+        }
+        return rows;
+    }
+
+    private void clear(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            // На таблицы связей внешние ключи не ссылаются, их можно очистить без удаления по строкам
+            statement.execute("TRUNCATE TABLE friendship");
+            statement.execute("TRUNCATE TABLE likes");
+            statement.execute("TRUNCATE TABLE film_genres");
+            statement.execute("DELETE FROM films");
+            statement.execute("DELETE FROM users");
+            statement.execute("DELETE FROM genres");
+            statement.execute("DELETE FROM mpa");
+        }
+    }
+
+    private void load(SnapshotReader reader, SnapshotTable table, Connection connection)
+            throws IOException, SQLException {
+        List<SnapshotTable.Column> columns = table.columns();
+        String insert = "INSERT INTO " + table.name() + " (" + table.columnList() + ") VALUES ("
+                + columns.stream().map(column -> "?").collect(Collectors.joining(", ")) + ")";
+        try (PreparedStatement preparedStatement = connection.prepareStatement(insert)) {
+            SnapshotReader.Block block;
+            while ((block = reader.readBlock()) != null) {
+                for (int row = 0; row < block.rows(); row++) {
+                    for (int i = 0; i < columns.size(); i++) {
+                        SnapshotTable.ColumnType type = columns.get(i).type();
+                        if (block.isNull(i, row)) {
+                            preparedStatement.setNull(i + 1, switch (type) {
+                                case INT -> Types.INTEGER;
+                                case STRING -> Types.VARCHAR;
+                                case DATE -> Types.DATE;
+                            });
+                            continue;
+                        }
+                        switch (type) {
+                            case INT -> preparedStatement.setInt(i + 1, block.ints()[i][row]);
+                            case STRING -> preparedStatement.setString(i + 1, block.strings()[i][row]);
+                            case DATE -> preparedStatement.setObject(i + 1,
+                                    LocalDate.ofEpochDay(block.ints()[i][row]));
+                        }
+                    }
+                    preparedStatement.addBatch();
+                }
+                preparedStatement.executeBatch();
+                connection.commit();
+            }
+        }
+    }
+
+    private void resetIdentities(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            for (String table : IDENTITY_TABLES) {
+                long next;
+                try (ResultSet resultSet = statement.executeQuery("SELECT COALESCE(MAX(id), 0) + 1 FROM " + table)) {
+                    resultSet.next();
+                    next = resultSet.getLong(1);
+                }
+                statement.execute("ALTER TABLE " + table + " ALTER COLUMN id RESTART WITH " + next);
+            }
+        }
+    }
+
+    private static void endRow(SnapshotWriter writer) {
+        try {
+            writer.endRow();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("Не удалось удалить временный файл снимка {}", file, e);
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package ru.yandex.practicum.filmorate.storage.snapshot;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Описание таблицы в снимке: имя и столбцы в порядке их записи.
+ */
+record SnapshotTable(String name, List<Column> columns) {
+
+    enum ColumnType {
+        INT, STRING, DATE
+    }
+
+    record Column(String name, ColumnType type) {
+    }
+
+    static SnapshotTable of(String name, Column... columns) {
+        return new SnapshotTable(name, List.of(columns));
+    }
+
+    static Column column(String name, ColumnType type) {
+        return new Column(name, type);
+    }
+
+    String columnList() {
+        return columns.stream().map(Column::name).collect(Collectors.joining(", "));
+    }
+}
@@ -0,0 +1,153 @@
+package ru.yandex.practicum.filmorate.storage.snapshot;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Пишет снимок по колонкам. Строки таблицы копятся в блоке до {@link #BLOCK_ROWS} штук, затем блок
+ * выводится столбец за столбцом: флаг наличия NULL, битовая маска NULL, значения. Числа и даты занимают
+ * по 4 байта, строка - длина в байтах и UTF-8. Перед блоком пишутся число строк и длина блока в байтах,
+ * поэтому при чтении блок можно пропустить или отобразить в память целиком. Таблица заканчивается
+ * блоком из нуля строк.
+ */
+final class SnapshotWriter implements Closeable {
+
+    static final int MAGIC = 0x46534E50;
+    static final int VERSION = 1;
+    static final int BLOCK_ROWS = 65536;
+
+    private final DataOutputStream out;
+    private final ByteArrayOutputStream blockBytes = new ByteArrayOutputStream();
+    private final DataOutputStream block = new DataOutputStream(blockBytes);
+
+    private SnapshotTable table;
+    private int[][] ints;
+    private String[][] strings;
+    private boolean[][] nulls;
+    private int rows;
+    private long tableRows;
+
+    SnapshotWriter(Path file, int tableCount) throws IOException {
+        out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), 1 << 16));
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(tableCount);
+    }
+
+    void beginTable(SnapshotTable table) throws IOException {
+        this.table = table;
+        List<SnapshotTable.Column> columns = table.columns();
+        writeString(out, table.name());
+        out.writeInt(columns.size());
+        ints = new int[columns.size()][];
+        strings = new String[columns.size()][];
+        nulls = new boolean[columns.size()][BLOCK_ROWS];
+        for (int i = 0; i < columns.size(); i++) {
+            SnapshotTable.Column column = columns.get(i);
+            writeString(out, column.name());
+            out.writeByte(column.type().ordinal());
+            if (column.type() == SnapshotTable.ColumnType.STRING) {
+                strings[i] = new String[BLOCK_ROWS];
+            } else {
+                ints[i] = new int[BLOCK_ROWS];
+            }
+        }
+        rows = 0;
+        tableRows = 0;
+    }
+
+    void putInt(int column, Integer value) {
+        nulls[column][rows] = value == null;
+        ints[column][rows] = value == null ? 0 : value;
+    }
+
+    void putString(int column, String value) {
+        nulls[column][rows] = value == null;
+        strings[column][rows] = value;
+    }
+
+    void putDate(int column, LocalDate value) {
+        nulls[column][rows] = value == null;
+        ints[column][rows] = value == null ? 0 : Math.toIntExact(value.toEpochDay());
+    }
+
+    void endRow() throws IOException {
+        rows++;
+        if (rows == BLOCK_ROWS) {
+            flushBlock();
+        }
+    }
+
+    /**
+     * Дописывает неполный блок и признак конца таблицы, возвращает число строк таблицы.
+     */
+    long endTable() throws IOException {
+        flushBlock();
+        out.writeInt(0);
+        table = null;
+        return tableRows;
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+
+    private void flushBlock() throws IOException {
+        if (rows == 0) {
+            return;
+        }
+        blockBytes.reset();
+        for (int column = 0; column < table.columns().size(); column++) {
+            boolean[] columnNulls = nulls[column];
+            boolean hasNulls = false;
+            for (int row = 0; row < rows && !hasNulls; row++) {
+                hasNulls = columnNulls[row];
+            }
+            block.writeBoolean(hasNulls);
+            if (hasNulls) {
+                for (int from = 0; from < rows; from += 8) {
+                    int bits = 0;
+                    for (int bit = 0; bit < 8 && from + bit < rows; bit++) {
+                        if (columnNulls[from + bit]) {
+                            bits |= 1 << bit;
+                        }
+                    }
+                    block.writeByte(bits);
+                }
+            }
+            if (strings[column] != null) {
+                String[] values = strings[column];
+                for (int row = 0; row < rows; row++) {
+                    writeString(block, values[row] == null ? "" : values[row]);
+                    values[row] = null;
+                }
+            } else {
+                int[] values = ints[column];
+                for (int row = 0; row < rows; row++) {
+                    block.writeInt(values[row]);
+                }
+            }
+        }
+        block.flush();
+        out.writeInt(rows);
+        out.writeInt(blockBytes.size());
+        blockBytes.writeTo(out);
+        tableRows += rows;
+        rows = 0;
+    }
+
+    private static void writeString(DataOutputStream stream, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        stream.writeInt(bytes.length);
+        stream.write(bytes);
+    }
+}
@@ -0,0 +1,57 @@
+CREATE TABLE IF NOT EXISTS users (
+    id INT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    name VARCHAR(255),
+    email VARCHAR(255) NOT NULL UNIQUE,
+    login VARCHAR(255) NOT NULL UNIQUE,
+    birthday DATE NOT NULL
+);
+
+CREATE TABLE IF NOT EXISTS friendship (
+    user_id INT NOT NULL REFERENCES users (id) ON DELETE CASCADE,
+    friend_id INT NOT NULL REFERENCES users (id) ON DELETE CASCADE,
+    PRIMARY KEY (user_id, friend_id)
+);
+
+CREATE TABLE IF NOT EXISTS genres (
+    id INT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    name VARCHAR(255) NOT NULL UNIQUE
+);
+
+CREATE TABLE IF NOT EXISTS mpa (
+    id INT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    name VARCHAR(255) NOT NULL UNIQUE
+);
+
+CREATE TABLE IF NOT EXISTS films (
+    id INT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    name VARCHAR(255) NOT NULL,
+    description VARCHAR(200),
+    release_date DATE NOT NULL,
+    duration INT NOT NULL CHECK (duration > 0),
+    mpa_id INT REFERENCES mpa (id) ON DELETE CASCADE
+);
+
+CREATE TABLE IF NOT EXISTS film_genres (
+    film_id INT NOT NULL REFERENCES films (id) ON DELETE CASCADE,
+    genre_id INT NOT NULL REFERENCES genres (id) ON DELETE CASCADE,
+    PRIMARY KEY (film_id, genre_id)
+);
+
+CREATE TABLE IF NOT EXISTS likes (
+    film_id INT NOT NULL REFERENCES films (id) ON DELETE CASCADE,
+    user_id INT NOT NULL REFERENCES users (id) ON DELETE CASCADE,
+    PRIMARY KEY (film_id, user_id)
+);
+
+INSERT INTO genres(name) VALUES ('Комедия');
+INSERT INTO genres(name) VALUES ('Драма');
+INSERT INTO genres(name) VALUES ('Мультфильм');
+INSERT INTO genres(name) VALUES ('Триллер');
+INSERT INTO genres(name) VALUES ('Документальный');
+INSERT INTO genres(name) VALUES ('Боевик');
+
+INSERT INTO mpa(name) VALUES ('G');
+INSERT INTO mpa(name) VALUES ('PG');
+INSERT INTO mpa(name) VALUES ('PG-13');
+INSERT INTO mpa(name) VALUES ('R');
+INSERT INTO mpa(name) VALUES ('NC-17');
@@ -0,0 +1,10 @@
+ALTER TABLE films ADD COLUMN IF NOT EXISTS like_count INT NOT NULL DEFAULT 0;
+
+UPDATE films SET like_count = (SELECT COUNT(*) FROM likes WHERE likes.film_id = films.id);
+
+ALTER TABLE films ADD COLUMN IF NOT EXISTS release_year INT GENERATED ALWAYS AS (EXTRACT(YEAR FROM release_date));
+
+CREATE INDEX IF NOT EXISTS films_like_count_idx ON films (like_count DESC, id);
+CREATE INDEX IF NOT EXISTS films_release_year_idx ON films (release_year, like_count DESC, id);
+
+CREATE INDEX IF NOT EXISTS film_genres_genre_id_idx ON film_genres (genre_id, film_id);
@@ -0,0 +1,2 @@
+CREATE INDEX IF NOT EXISTS likes_user_id_idx ON likes (user_id, film_id);
+CREATE INDEX IF NOT EXISTS friendship_friend_id_idx ON friendship (friend_id, user_id);
@@ -0,0 +1,14 @@
+CREATE TABLE IF NOT EXISTS likes (
+    film_id INT NOT NULL,
+    user_id INT NOT NULL,
+    PRIMARY KEY (film_id, user_id)
+);
+
+CREATE INDEX IF NOT EXISTS likes_user_id_idx ON likes (user_id);
+
+CREATE TABLE IF NOT EXISTS film_likes (
+    film_id INT PRIMARY KEY,
+    like_count INT NOT NULL DEFAULT 0
+);
+
+CREATE INDEX IF NOT EXISTS film_likes_like_count_idx ON film_likes (like_count DESC, film_id);
@@ -0,0 +1,206 @@
+package ru.yandex.practicum.filmorate.perf;
+
+import lombok.extern.slf4j.Slf4j;
+import org.flywaydb.core.Flyway;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Заполняет таблицы приложения синтетическими данными пакетными вставками.
+ * Лайки смещены к фильмам с меньшими id (доля фильма пропорциональна 1 / sqrt(id)), степени в графе дружбы распределены по степенному закону
+ * (Парето с показателем 2.5), а друзей чаще выбирают среди пользователей с меньшими id.
+ * <p>
+ * Запуск: mvn -Pperf test-compile exec:exec@generate-dataset
+ * -Ddataset.args="--users=1000000 --films=100000 --likes=50000000 --friends=20"
+ * <p>
+ * По умолчанию база создается в ./perfdb/filmorate, существующая база очищается и создается заново
+ * миграциями приложения. Приложение поверх нее запускается с
+ * --spring.datasource.url=jdbc:h2:file:./perfdb/filmorate.
+ */
+@Slf4j
+public class DatasetGenerator {
+
+    public record Sizes(int users, int films, long likes, int averageFriends) {
+    }
+
+    private static final int GENRES = 6;
+    private static final int MPA = 5;
+    private static final int BATCH_SIZE = 10_000;
+    private static final double FRIENDS_POWER_LAW = 2.5;
+
+    private final DataSource dataSource;
+    private final Random random;
+
+    public DatasetGenerator(DataSource dataSource, Random random) {
+        this.dataSource = dataSource;
+        this.random = random;
+    }
+
+    public static void main(String[] args) throws SQLException {
+        PerfArgs perfArgs = new PerfArgs(args);
+        Sizes sizes = new Sizes(
+                perfArgs.getInt("users", 100_000),
+                perfArgs.getInt("films", 10_000),
+                perfArgs.getLong("likes", 2_000_000),
+                perfArgs.getInt("friends", 20));
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                perfArgs.getString("url", "jdbc:h2:file:./perfdb/filmorate"), "sa", "password");
+        Flyway flyway = Flyway.configure().dataSource(dataSource).cleanDisabled(false).load();
+        flyway.clean();
+        flyway.migrate();
+        new DatasetGenerator(dataSource, new Random(perfArgs.getLong("seed", 42))).generate(sizes);
+    }
+
+    public void generate(Sizes sizes) throws SQLException {
+        long started = System.nanoTime();
+        try (Connection connection = dataSource.getConnection()) {
+            connection.setAutoCommit(false);
+            insertUsers(connection, sizes.users());
+            insertFilms(connection, sizes.films());
+            insertLikes(connection, sizes);
+            insertFriendships(connection, sizes);
+            try (Statement statement = connection.createStatement()) {
+                statement.executeUpdate("UPDATE films f SET like_count = " +
+                        "(SELECT COUNT(*) FROM likes l WHERE l.film_id = f.id)");
+                statement.execute("ALTER TABLE users ALTER COLUMN id RESTART WITH " + (sizes.users() + 1));
+                statement.execute("ALTER TABLE films ALTER COLUMN id RESTART WITH " + (sizes.films() + 1));
+            }
+            connection.commit();
+        }
+        log.info("Данные сгенерированы за {} с: {}", (System.nanoTime() - started) / 1_000_000_000, sizes);
+    }
+
+    private void insertUsers(Connection connection, int users) throws SQLException {
+        try (Batch batch = new Batch(connection,
+                "INSERT INTO users (id, name, email, login, birthday) VALUES (?, ?, ?, ?, ?)")) {
+            for (int id = 1; id <= users; id++) {
+                batch.add(id, "User " + id, "user" + id + "@example.com", "user" + id,
+                        Date.valueOf(LocalDate.of(1960 + id % 50, 1 + id % 12, 1 + id % 28)));
+            }
+        }
+        log.info("Пользователей: {}", users);
+    }
+
+    private void insertFilms(Connection connection, int films) throws SQLException {
+        try (Batch batch = new Batch(connection,
+                "INSERT INTO films (id, name, description, release_date, duration, mpa_id) VALUES (?, ?, ?, ?, ?, ?)")) {
+            for (int id = 1; id <= films; id++) {
+                batch.add(id, "Film " + id, "Description of film " + id,
+                        Date.valueOf(LocalDate.of(1950 + id % 75, 1 + id % 12, 1 + id % 28)), 60 + id % 120,
+                        1 + id % MPA);
+            }
+        }
+        try (Batch batch = new Batch(connection, "INSERT INTO film_genres (film_id, genre_id) VALUES (?, ?)")) {
+            for (int id = 1; id <= films; id++) {
+                batch.add(id, 1 + id % GENRES);
+                if (id % 3 == 0) {
+                    batch.add(id, 1 + (id + 1) % GENRES);
+                }
+            }
+        }
+        log.info("Фильмов: {}", films);
+    }
+
+    private void insertLikes(Connection connection, Sizes sizes) throws SQLException {
+        if (sizes.users() == 0 || sizes.films() == 0) {
+            return;
+        }
+        // Доля лайков фильма пропорциональна 1 / sqrt(id); строки идут в порядке первичного ключа,
+        // так вставка в индекс likes заметно быстрее, чем в случайном порядке
+        double totalWeight = 0;
+        for (int filmId = 1; filmId <= sizes.films(); filmId++) {
+            totalWeight += 1 / Math.sqrt(filmId);
+        }
+        long inserted = 0;
+        try (Batch batch = new Batch(connection, "INSERT INTO likes (film_id, user_id) VALUES (?, ?)")) {
+            for (int filmId = 1; filmId <= sizes.films(); filmId++) {
+                int count = (int) Math.min(sizes.users(), Math.round(sizes.likes() / Math.sqrt(filmId) / totalWeight));
+                for (long userId : pick(count, sizes.users(), 0, false)) {
+                    batch.add(filmId, userId);
+                    inserted++;
+                }
+            }
+        }
+        log.info("Лайков: {}", inserted);
+    }
+
+    private void insertFriendships(Connection connection, Sizes sizes) throws SQLException {
+        // Среднее распределения Парето равно minDegree * (a - 1) / (a - 2)
+        double minDegree = sizes.averageFriends() * (FRIENDS_POWER_LAW - 2) / (FRIENDS_POWER_LAW - 1);
+        long edges = 0;
+        try (Batch batch = new Batch(connection, "INSERT INTO friendship (user_id, friend_id) VALUES (?, ?)")) {
+            for (int userId = 1; userId <= sizes.users(); userId++) {
+                double degree = minDegree / Math.pow(1 - random.nextDouble(), 1 / (FRIENDS_POWER_LAW - 1));
+                int count = (int) Math.min(sizes.users() - 1, Math.round(degree));
+                for (long friendId : pick(count, sizes.users(), userId, true)) {
+                    batch.add(userId, friendId);
+                    edges++;
+                }
+            }
+        }
+        log.info("Связей дружбы: {}", edges);
+    }
+
+    /**
+     * Различные id от 1 до bound по возрастанию, без id exclude, при skewed смещенные к началу диапазона.
+     */
+    private long[] pick(int count, int bound, long exclude, boolean skewed) {
+        Set<Long> ids = new HashSet<>();
+        int attempts = 0;
+        while (ids.size() < count) {
+            double value = random.nextDouble();
+            // При плотном выборе смещение мешает набрать нужное число, переходим на равномерное
+            long id = 1 + (long) ((skewed && attempts++ < count * 4 ? value * value : value) * bound);
+            if (id != exclude) {
+                ids.add(id);
+            }
+        }
+        return ids.stream().mapToLong(Long::longValue).sorted().toArray();
+    }
+
+    private static class Batch implements AutoCloseable {
+
+        private final Connection connection;
+        private final PreparedStatement statement;
+        private int size;
+
+        Batch(Connection connection, String query) throws SQLException {
+            this.connection = connection;
+            this.statement = connection.prepareStatement(query);
+        }
+
+        void add(Object... values) throws SQLException {
+            for (int i = 0; i < values.length; i++) {
+                statement.setObject(i + 1, values[i]);
+            }
+            statement.addBatch();
+            if (++size == BATCH_SIZE) {
+                flush();
+            }
+        }
+
+        private void flush() throws SQLException {
+            statement.executeBatch();
+            connection.commit();
+            size = 0;
+        }
+
+        @Override
+        public void close() throws SQLException {
+            if (size > 0) {
+                flush();
+            }
+            statement.close();
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package ru.yandex.practicum.filmorate.perf;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.Mpa;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сериализация фильма в JSON тем же ObjectMapper, что собирает Spring Boot для контроллеров.
+ * Запуск: mvn -Pperf test-compile exec:exec -Djmh.include=FilmJsonBenchmark
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class FilmJsonBenchmark {
+
+    private ObjectMapper objectMapper;
+    private Film film;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        film = new Film();
+        film.setId(42L);
+        film.setName("Film 42");
+        film.setDescription("Description of film 42");
+        film.setReleaseDate(LocalDate.of(1999, 3, 31));
+        film.setDuration(136);
+        film.setLikeCount(1_024);
+        Mpa mpa = new Mpa();
+        mpa.setId(3);
+        mpa.setName("PG-13");
+        film.setMpa(mpa);
+        List<Genre> genres = new ArrayList<>();
+        for (int id = 1; id <= 2; id++) {
+            Genre genre = new Genre();
+            genre.setId(id);
+            genre.setName("Genre " + id);
+            genres.add(genre);
+        }
+        film.setGenres(genres);
+    }
+
+    @Benchmark
+    public byte[] serialize() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(film);
+    }
+}
@@ -0,0 +1,61 @@
+package ru.yandex.practicum.filmorate.perf;
+
+import org.h2.tools.SimpleResultSet;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.storage.mapper.FilmRowMapper;
+
+import java.sql.Date;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Разбор одной строки выборки фильмов без обращения к базе: строка лежит в SimpleResultSet.
+ * Запуск: mvn -Pperf test-compile exec:exec -Djmh.include=FilmRowMapperBenchmark
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class FilmRowMapperBenchmark {
+
+    private PerfDatabase database;
+    private FilmRowMapper mapper;
+    private SimpleResultSet resultSet;
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException {
+        database = new PerfDatabase(0, 0, 0, 0);
+        mapper = database.getFilmRowMapper();
+        resultSet = new SimpleResultSet();
+        resultSet.addColumn("film_id", Types.BIGINT, 19, 0);
+        resultSet.addColumn("film_name", Types.VARCHAR, 255, 0);
+        resultSet.addColumn("description", Types.VARCHAR, 200, 0);
+        resultSet.addColumn("release_date", Types.DATE, 10, 0);
+        resultSet.addColumn("duration", Types.INTEGER, 10, 0);
+        resultSet.addColumn("like_count", Types.INTEGER, 10, 0);
+        resultSet.addColumn("mpa_id", Types.INTEGER, 10, 0);
+        resultSet.addRow(42L, "Film 42", "Description of film 42", Date.valueOf(LocalDate.of(1999, 3, 31)),
+                136, 1_024, 3);
+        resultSet.next();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        database.close();
+    }
+
+    @Benchmark
+    public Film mapRow() throws SQLException {
+        return mapper.mapRow(resultSet, 0);
+    }
+}
@@ -0,0 +1,59 @@
+package ru.yandex.practicum.filmorate.perf;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import ru.yandex.practicum.filmorate.storage.index.FriendshipGraph;
+
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Рекомендации друзей на графе из миллиона ребер.
+ * sparse: 100 000 пользователей по 10 друзей, dense: 2 000 пользователей по 500 друзей.
+ * Запуск: mvn -Pperf test-compile exec:exec -Djmh.include=FriendSuggestionsBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class FriendSuggestionsBenchmark {
+
+    private static final int EDGES = 1_000_000;
+
+    @Param({"sparse", "dense"})
+    private String shape;
+
+    private FriendshipGraph graph;
+    private long[] queries;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        int users = "dense".equals(shape) ? 2_000 : 100_000;
+        int degree = EDGES / users;
+        Random random = new Random(42);
+        graph = new FriendshipGraph(null, Optional.empty());
+        for (long user = 1; user <= users; user++) {
+            for (int i = 0; i < degree; i++) {
+                long friend = 1 + random.nextInt(users);
+                if (friend != user) {
+                    graph.addFriend(user, friend);
+                }
+            }
+        }
+        queries = random.longs(1_024, 1, users + 1).toArray();
+    }
+
+    @Benchmark
+    public long[] suggestFriends() {
+        long userId = queries[next++ & (queries.length - 1)];
+        return graph.suggestFriends(userId, 10);
+    }
+}
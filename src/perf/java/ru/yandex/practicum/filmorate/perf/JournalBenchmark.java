@@ -0,0 +1,70 @@
+package ru.yandex.practicum.filmorate.perf;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.util.FileSystemUtils;
+import ru.yandex.practicum.filmorate.storage.journal.EventJournal;
+import ru.yandex.practicum.filmorate.storage.journal.JournalEventType;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Дозапись в журнал и чтение журнала из 1 000 000 событий, результат в наносекундах на событие.
+ * Запуск: mvn -Pperf test-compile exec:exec -Djmh.include=JournalBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class JournalBenchmark {
+
+    private static final int EVENTS = 1_000_000;
+
+    @Param("1048576")
+    private int segmentRecords;
+
+    private Path directory;
+    private EventJournal journal;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("filmorate-journal");
+        journal = new EventJournal(directory, segmentRecords);
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < EVENTS; i++) {
+            journal.append(JournalEventType.LIKE_ADDED, random.nextLong(100_000), random.nextLong(1_000_000));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        journal.close();
+        FileSystemUtils.deleteRecursively(directory);
+    }
+
+    @Benchmark
+    public void append() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        journal.append(JournalEventType.FRIEND_ADDED, random.nextLong(1_000_000), random.nextLong(1_000_000));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(EVENTS)
+    public long replay() {
+        long[] checksum = new long[1];
+        journal.replay((type, first, second, timestamp) -> checksum[0] += first ^ second);
+        return checksum[0];
+    }
+}
@@ -0,0 +1,252 @@
+package ru.yandex.practicum.filmorate.perf;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Function;
+
+/**
+ * Нагрузка на REST API запущенного приложения: заданное число потоков в цикле выполняет запросы
+ * из смеси операций с весами, в конце печатаются пропускная способность и перцентили задержек.
+ * id пользователей и фильмов выбираются со смещением к меньшим, как и в {@link DatasetGenerator}.
+ * <p>
+ * Запуск: mvn -Pperf test-compile exec:exec@load-test
+ * -Dload.args="--base-url=http://localhost:8080 --concurrency=32 --duration=60s --users=1000000 --films=100000"
+ * <p>
+ * Смесь задается как --mix=film=20,popular=30,like=10; доступные операции перечислены в OPERATIONS.
+ */
+public class LoadHarness {
+
+    private record Operation(String method, Function<Ids, String> path) {
+    }
+
+    private record Ids(ThreadLocalRandom random, int users, int films) {
+
+        long user() {
+            return skewed(users);
+        }
+
+        long film() {
+            return skewed(films);
+        }
+
+        private long skewed(int bound) {
+            double value = random.nextDouble();
+            return 1 + (long) (value * value * bound);
+        }
+    }
+
+    private static final Map<String, Operation> OPERATIONS = new LinkedHashMap<>();
+
+    static {
+        OPERATIONS.put("film", new Operation("GET", ids -> "/films/" + ids.film()));
+        OPERATIONS.put("films-page", new Operation("GET", ids -> "/films?limit=100&after=" + ids.film()));
+        OPERATIONS.put("popular", new Operation("GET", ids -> "/films/popular?count=10"));
+        OPERATIONS.put("popular-genre", new Operation("GET",
+                ids -> "/films/popular?count=10&genreId=" + (1 + ids.random().nextInt(6))));
+        OPERATIONS.put("search", new Operation("GET", ids -> "/films/search?query=film+" + ids.random().nextInt(100)));
+        OPERATIONS.put("like", new Operation("PUT", ids -> "/films/" + ids.film() + "/like/" + ids.user()));
+        OPERATIONS.put("unlike", new Operation("DELETE", ids -> "/films/" + ids.film() + "/like/" + ids.user()));
+        OPERATIONS.put("user", new Operation("GET", ids -> "/users/" + ids.user()));
+        OPERATIONS.put("friends", new Operation("GET", ids -> "/users/" + ids.user() + "/friends"));
+        OPERATIONS.put("common-friends", new Operation("GET",
+                ids -> "/users/" + ids.user() + "/friends/common/" + ids.user()));
+        OPERATIONS.put("suggestions", new Operation("GET", ids -> "/users/" + ids.user() + "/friends/suggestions"));
+        OPERATIONS.put("recommendations", new Operation("GET", ids -> "/users/" + ids.user() + "/recommendations"));
+    }
+
+    private static final String DEFAULT_MIX = "film=20,popular=20,popular-genre=5,films-page=5,search=10," +
+            "like=10,unlike=5,user=5,friends=10,common-friends=5,suggestions=3,recommendations=2";
+
+    public record Settings(String baseUrl, int concurrency, Duration warmup, Duration duration,
+                           int users, int films, Map<String, Integer> mix) {
+
+        static Settings parse(PerfArgs args) {
+            return new Settings(
+                    args.getString("base-url", "http://localhost:8080"),
+                    args.getInt("concurrency", 16),
+                    args.getDuration("warmup", Duration.ofSeconds(10)),
+                    args.getDuration("duration", Duration.ofSeconds(60)),
+                    args.getInt("users", 100_000),
+                    args.getInt("films", 10_000),
+                    parseMix(args.getString("mix", DEFAULT_MIX)));
+        }
+
+        public Settings withBaseUrl(String baseUrl) {
+            return new Settings(baseUrl, concurrency, warmup, duration, users, films, mix);
+        }
+    }
+
+    public record Result(String operation, long count, double rps, double p50, double p90, double p99,
+                         double p999, double max, long clientErrors, long errors) {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Settings settings = Settings.parse(new PerfArgs(args));
+        System.out.printf("Нагрузка на %s: потоков %d, прогрев %s, замер %s, смесь %s%n", settings.baseUrl(),
+                settings.concurrency(), settings.warmup(), settings.duration(), settings.mix());
+        print(run(settings));
+    }
+
+    /**
+     * Выполняет нагрузку и возвращает результаты по операциям, последней строкой - итог по всем.
+     */
+    public static List<Result> run(Settings settings) throws Exception {
+        String[] names = settings.mix().keySet().toArray(String[]::new);
+        int[] cumulativeWeights = new int[names.length];
+        int total = 0;
+        for (int i = 0; i < names.length; i++) {
+            total += settings.mix().get(names[i]);
+            cumulativeWeights[i] = total;
+        }
+        int totalWeight = total;
+
+        HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+        long measureFrom = System.nanoTime() + settings.warmup().toNanos();
+        long deadline = measureFrom + settings.duration().toNanos();
+
+        ExecutorService executor = Executors.newFixedThreadPool(settings.concurrency());
+        List<Future<Recorder[]>> futures = new ArrayList<>();
+        for (int worker = 0; worker < settings.concurrency(); worker++) {
+            futures.add(executor.submit(() -> {
+                Recorder[] recorders = new Recorder[names.length];
+                Arrays.setAll(recorders, i -> new Recorder());
+                Ids ids = new Ids(ThreadLocalRandom.current(), settings.users(), settings.films());
+                long now;
+                while ((now = System.nanoTime()) < deadline) {
+                    int weight = ids.random().nextInt(totalWeight);
+                    int index = 0;
+                    while (cumulativeWeights[index] <= weight) {
+                        index++;
+                    }
+                    Operation operation = OPERATIONS.get(names[index]);
+                    HttpRequest request = HttpRequest.newBuilder(
+                                    URI.create(settings.baseUrl() + operation.path().apply(ids)))
+                            .method(operation.method(), HttpRequest.BodyPublishers.noBody())
+                            .timeout(Duration.ofSeconds(30))
+                            .build();
+                    int status;
+                    try {
+                        status = client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+                    } catch (IOException e) {
+                        status = -1;
+                    }
+                    long finished = System.nanoTime();
+                    if (now >= measureFrom) {
+                        recorders[index].record(finished - now, status);
+                    }
+                }
+                return recorders;
+            }));
+        }
+
+        Recorder[] merged = new Recorder[names.length];
+        Arrays.setAll(merged, i -> new Recorder());
+        for (Future<Recorder[]> future : futures) {
+            Recorder[] recorders = future.get();
+            for (int i = 0; i < names.length; i++) {
+                merged[i].addAll(recorders[i]);
+            }
+        }
+        executor.shutdown();
+
+        double seconds = settings.duration().toNanos() / 1e9;
+        List<Result> results = new ArrayList<>();
+        Recorder all = new Recorder();
+        for (int i = 0; i < names.length; i++) {
+            results.add(merged[i].result(names[i], seconds));
+            all.addAll(merged[i]);
+        }
+        results.add(all.result("total", seconds));
+        return results;
+    }
+
+    public static void print(List<Result> results) {
+        System.out.printf("%-16s %9s %9s %9s %9s %9s %9s %9s %7s %7s%n",
+                "operation", "count", "rps", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms", "4xx", "errors");
+        for (Result result : results) {
+            System.out.printf("%-16s %9d %9.1f %9.2f %9.2f %9.2f %9.2f %9.2f %7d %7d%n",
+                    result.operation(), result.count(), result.rps(), result.p50(), result.p90(), result.p99(),
+                    result.p999(), result.max(), result.clientErrors(), result.errors());
+        }
+    }
+
+    static Map<String, Integer> parseMix(String mix) {
+        Map<String, Integer> weights = new LinkedHashMap<>();
+        for (String part : mix.split(",")) {
+            String[] pair = part.trim().split("=");
+            if (!OPERATIONS.containsKey(pair[0])) {
+                throw new IllegalArgumentException("Неизвестная операция " + pair[0] + ", доступны " + OPERATIONS.keySet());
+            }
+            int weight = Integer.parseInt(pair[1]);
+            if (weight > 0) {
+                weights.put(pair[0], weight);
+            }
+        }
+        if (weights.isEmpty()) {
+            throw new IllegalArgumentException("Смесь операций пуста");
+        }
+        return weights;
+    }
+
+    private static double percentile(long[] sorted, double percentile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(percentile * sorted.length) - 1;
+        return sorted[Math.max(index, 0)] / 1e6;
+    }
+
+    private static class Recorder {
+
+        private long[] latencies = new long[1024];
+        private int size;
+        private long clientErrors;
+        private long errors;
+
+        void record(long latencyNanos, int status) {
+            if (size == latencies.length) {
+                latencies = Arrays.copyOf(latencies, size * 2);
+            }
+            latencies[size++] = latencyNanos;
+            if (status < 0 || status >= 500) {
+                errors++;
+            } else if (status >= 400) {
+                clientErrors++;
+            }
+        }
+
+        void addAll(Recorder other) {
+            if (size + other.size > latencies.length) {
+                latencies = Arrays.copyOf(latencies, Math.max(size + other.size, latencies.length * 2));
+            }
+            System.arraycopy(other.latencies, 0, latencies, size, other.size);
+            size += other.size;
+            clientErrors += other.clientErrors;
+            errors += other.errors;
+        }
+
+        Result result(String operation, double seconds) {
+            long[] sorted = Arrays.copyOf(latencies, size);
+            Arrays.sort(sorted);
+            return new Result(operation, size, size / seconds, percentile(sorted, 0.50), percentile(sorted, 0.90),
+                    percentile(sorted, 0.99), percentile(sorted, 0.999), percentile(sorted, 1.0),
+                    clientErrors, errors);
+        }
+    }
+}
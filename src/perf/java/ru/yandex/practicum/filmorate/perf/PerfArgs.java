@@ -0,0 +1,39 @@
+package ru.yandex.practicum.filmorate.perf;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Аргументы командной строки вида --name=value для утилит нагрузочного тестирования.
+ */
+class PerfArgs {
+
+    private final Map<String, String> values = new HashMap<>();
+
+    PerfArgs(String[] args) {
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Ожидался аргумент вида --name=value: " + arg);
+            }
+            int separator = arg.indexOf('=');
+            values.put(arg.substring(2, separator), arg.substring(separator + 1));
+        }
+    }
+
+    String getString(String name, String defaultValue) {
+        return values.getOrDefault(name, defaultValue);
+    }
+
+    int getInt(String name, int defaultValue) {
+        return values.containsKey(name) ? Integer.parseInt(values.get(name).replace("_", "")) : defaultValue;
+    }
+
+    long getLong(String name, long defaultValue) {
+        return values.containsKey(name) ? Long.parseLong(values.get(name).replace("_", "")) : defaultValue;
+    }
+
+    Duration getDuration(String name, Duration defaultValue) {
+        return values.containsKey(name) ? Duration.parse("PT" + values.get(name).toUpperCase()) : defaultValue;
+    }
+}
@@ -0,0 +1,75 @@
+package ru.yandex.practicum.filmorate.perf;
+
+import org.flywaydb.core.Flyway;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+import ru.yandex.practicum.filmorate.storage.FilmDbStorage;
+import ru.yandex.practicum.filmorate.storage.GenreDbStorage;
+import ru.yandex.practicum.filmorate.storage.MpaDbStorage;
+import ru.yandex.practicum.filmorate.storage.UserDbStorage;
+import ru.yandex.practicum.filmorate.storage.mapper.FilmRowMapper;
+import ru.yandex.practicum.filmorate.storage.mapper.GenreRowMapper;
+import ru.yandex.practicum.filmorate.storage.mapper.MpaRowMapper;
+import ru.yandex.practicum.filmorate.storage.mapper.UserRowMapper;
+
+import java.sql.SQLException;
+import java.util.Random;
+
+/**
+ * Встроенная H2 со схемой из миграций приложения, заполненная {@link DatasetGenerator}, и хранилища поверх нее
+ * без поднятия контекста Spring.
+ */
+public class PerfDatabase implements AutoCloseable {
+
+    private final EmbeddedDatabase dataSource;
+    private final JdbcTemplate jdbc;
+    private final FilmRowMapper filmRowMapper;
+    private final FilmDbStorage filmStorage;
+    private final UserDbStorage userStorage;
+
+    public PerfDatabase(int users, int films, int likesPerUser, int friendsPerUser) {
+        dataSource = new EmbeddedDatabaseBuilder()
+                .setType(EmbeddedDatabaseType.H2)
+                .generateUniqueName(true)
+                .build();
+        Flyway.configure().dataSource(dataSource).load().migrate();
+        jdbc = new JdbcTemplate(dataSource);
+        MpaDbStorage mpaStorage = new MpaDbStorage(jdbc, new MpaRowMapper());
+        mpaStorage.reload();
+        GenreDbStorage genreStorage = new GenreDbStorage(jdbc, new GenreRowMapper());
+        genreStorage.reload();
+        filmRowMapper = new FilmRowMapper(mpaStorage);
+        filmStorage = new FilmDbStorage(jdbc, filmRowMapper, genreStorage, mpaStorage);
+        userStorage = new UserDbStorage(jdbc, new UserRowMapper());
+        try {
+            new DatasetGenerator(dataSource, new Random(42))
+                    .generate(new DatasetGenerator.Sizes(users, films, (long) users * likesPerUser, friendsPerUser));
+        } catch (SQLException e) {
+            dataSource.shutdown();
+            throw new IllegalStateException("Не удалось заполнить базу для бенчмарка", e);
+        }
+    }
+
+    public JdbcTemplate getJdbc() {
+        return jdbc;
+    }
+
+    public FilmRowMapper getFilmRowMapper() {
+        return filmRowMapper;
+    }
+
+    public FilmDbStorage getFilmStorage() {
+        return filmStorage;
+    }
+
+    public UserDbStorage getUserStorage() {
+        return userStorage;
+    }
+
+    @Override
+    public void close() {
+        dataSource.shutdown();
+    }
+}
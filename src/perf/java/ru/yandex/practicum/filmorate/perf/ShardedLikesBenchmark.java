@@ -0,0 +1,98 @@
+package ru.yandex.practicum.filmorate.perf;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.storage.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.ShardedLikesFilmStorage;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Пропускная способность записи лайков в 8 потоков без шард (shards=0, всё в основной базе) и с лайками,
+ * разложенными по нескольким встроенным H2. Данные те же, что в {@link StorageBenchmark}, лайки
+ * переносятся в шарды при старте.
+ * Запуск: mvn -Pperf test-compile exec:exec -Djmh.include=ShardedLikesBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Threads(8)
+public class ShardedLikesBenchmark {
+
+    @Param({"0", "1", "2", "4"})
+    private int shards;
+
+    @Param("20000")
+    private int users;
+
+    @Param("5000")
+    private int films;
+
+    private PerfDatabase database;
+    private final List<EmbeddedDatabase> shardDatabases = new ArrayList<>();
+    private ShardedLikesFilmStorage shardedStorage;
+    private FilmStorage filmStorage;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        database = new PerfDatabase(users, films, 20, 20);
+        if (shards == 0) {
+            filmStorage = database.getFilmStorage();
+            return;
+        }
+        for (int i = 0; i < shards; i++) {
+            shardDatabases.add(new EmbeddedDatabaseBuilder()
+                    .setType(EmbeddedDatabaseType.H2)
+                    .generateUniqueName(true)
+                    .build());
+        }
+        shardedStorage = new ShardedLikesFilmStorage(database.getFilmStorage(), database.getJdbc(),
+                List.<DataSource>copyOf(shardDatabases), Executors.newFixedThreadPool(shards * 4));
+        shardedStorage.init();
+        filmStorage = shardedStorage;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (shardedStorage != null) {
+            shardedStorage.close();
+        }
+        shardDatabases.forEach(EmbeddedDatabase::shutdown);
+        database.close();
+    }
+
+    @Benchmark
+    public boolean addLike() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return filmStorage.addLike(1 + random.nextLong(films), 1 + random.nextLong(users));
+    }
+
+    @Benchmark
+    public boolean removeLike() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return filmStorage.removeLike(1 + random.nextLong(films), 1 + random.nextLong(users));
+    }
+
+    @Benchmark
+    public List<Film> getPopularFilms() {
+        return filmStorage.getPopularFilms(10, null, null);
+    }
+}
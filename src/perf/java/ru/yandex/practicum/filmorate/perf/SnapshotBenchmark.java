@@ -0,0 +1,71 @@
+package ru.yandex.practicum.filmorate.perf;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.util.FileSystemUtils;
+import ru.yandex.practicum.filmorate.storage.snapshot.SnapshotStorage;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Время записи снимка и восстановления из него базы с 20 000 пользователей, 5 000 фильмов
+ * и users * likesPerUser лайков. Каждый замер - одна полная операция.
+ * Запуск: mvn -Pperf test-compile exec:exec -Djmh.include=SnapshotBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class SnapshotBenchmark {
+
+    @Param("20000")
+    private int users;
+
+    @Param("5000")
+    private int films;
+
+    @Param("100")
+    private int likesPerUser;
+
+    private PerfDatabase database;
+    private SnapshotStorage snapshotStorage;
+    private Path directory;
+    private Path snapshot;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        database = new PerfDatabase(users, films, likesPerUser, 20);
+        snapshotStorage = new SnapshotStorage(database.getJdbc(), database.getFilmStorage());
+        directory = Files.createTempDirectory("filmorate-snapshot");
+        snapshot = directory.resolve("restore.fsnap");
+        Map<String, Long> rows = snapshotStorage.write(snapshot);
+        System.out.println("Снимок " + Files.size(snapshot) + " байт: " + rows);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        database.close();
+        FileSystemUtils.deleteRecursively(directory);
+    }
+
+    @Benchmark
+    public Map<String, Long> write() {
+        return snapshotStorage.write(directory.resolve("write.fsnap"));
+    }
+
+    @Benchmark
+    public Map<String, Long> restore() {
+        return snapshotStorage.restore(snapshot);
+    }
+}
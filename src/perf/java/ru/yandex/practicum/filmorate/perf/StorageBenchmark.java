@@ -0,0 +1,76 @@
+package ru.yandex.practicum.filmorate.perf;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.FilmDbStorage;
+import ru.yandex.practicum.filmorate.storage.UserDbStorage;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Горячие пути хранилищ на встроенной H2: 20 000 пользователей, 5 000 фильмов, 400 000 лайков
+ * и около 400 000 связей дружбы со степенным распределением.
+ * Запуск: mvn -Pperf test-compile exec:exec -Djmh.include=StorageBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class StorageBenchmark {
+
+    @Param("20000")
+    private int users;
+
+    @Param("5000")
+    private int films;
+
+    private PerfDatabase database;
+    private FilmDbStorage filmStorage;
+    private UserDbStorage userStorage;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        database = new PerfDatabase(users, films, 20, 20);
+        filmStorage = database.getFilmStorage();
+        userStorage = database.getUserStorage();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        database.close();
+    }
+
+    @Benchmark
+    public Collection<Film> getFilms() {
+        return filmStorage.getFilms();
+    }
+
+    @Benchmark
+    public List<Film> getPopularFilms() {
+        return filmStorage.getPopularFilms(10, null, null);
+    }
+
+    @Benchmark
+    public boolean addLike() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return filmStorage.addLike(1 + random.nextLong(films), 1 + random.nextLong(users));
+    }
+
+    @Benchmark
+    public Collection<User> getCommonFriends() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return userStorage.getCommonFriends(1 + random.nextLong(users), 1 + random.nextLong(users));
+    }
+}
@@ -0,0 +1,141 @@
+package ru.yandex.practicum.filmorate.perf;
+
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordingFile;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сравнение режимов обработки запросов: приложение по очереди запускается на платформенных и на
+ * виртуальных потоках (профиль virtual) поверх одной базы, под одинаковой нагрузкой {@link LoadHarness}.
+ * В режиме виртуальных потоков JFR пишет события jdk.VirtualThreadPinned без порога, после прогона
+ * печатается число закреплений и места, где они случились.
+ * <p>
+ * Запуск (после mvn package и генерации данных через {@link DatasetGenerator}):
+ * mvn -Pperf test-compile exec:exec@compare-threads
+ * -Dcompare.args="--db-url=jdbc:h2:file:./perfdb/filmorate --concurrency=400 --users=100000 --films=10000"
+ */
+public class VirtualThreadsComparison {
+
+    private static final String PINNED_EVENT = "jdk.VirtualThreadPinned";
+
+    public static void main(String[] args) throws Exception {
+        PerfArgs perfArgs = new PerfArgs(args);
+        String jar = perfArgs.getString("jar", "target/filmorate-0.0.1-SNAPSHOT.jar");
+        String dbUrl = perfArgs.getString("db-url", "jdbc:h2:file:./perfdb/filmorate");
+        int port = perfArgs.getInt("port", 8090);
+        LoadHarness.Settings settings = LoadHarness.Settings.parse(perfArgs).withBaseUrl("http://localhost:" + port);
+
+        Map<String, LoadHarness.Result> totals = new LinkedHashMap<>();
+        Map<String, Integer> pinned = new TreeMap<>();
+        for (String mode : List.of("platform", "virtual")) {
+            Path recording = Path.of("target", "threads-" + mode + ".jfr");
+            Files.deleteIfExists(recording);
+            Process application = start(jar, dbUrl, port, mode, recording);
+            try {
+                awaitHealthy(port, application);
+                System.out.printf("Режим %s, нагрузка: потоков %d, замер %s%n",
+                        mode, settings.concurrency(), settings.duration());
+                List<LoadHarness.Result> results = LoadHarness.run(settings);
+                LoadHarness.print(results);
+                totals.put(mode, results.get(results.size() - 1));
+            } finally {
+                application.destroy();
+                if (!application.waitFor(60, TimeUnit.SECONDS)) {
+                    application.destroyForcibly();
+                }
+            }
+            if ("virtual".equals(mode)) {
+                pinned = countPinned(recording);
+            }
+        }
+
+        System.out.printf("%n%-10s %10s %10s %10s %8s%n", "mode", "rps", "p50 ms", "p99 ms", "errors");
+        totals.forEach((mode, total) -> System.out.printf("%-10s %10.1f %10.2f %10.2f %8d%n",
+                mode, total.rps(), total.p50(), total.p99(), total.errors()));
+        int pinnedTotal = pinned.values().stream().mapToInt(Integer::intValue).sum();
+        System.out.printf("%nСобытий %s: %d%n", PINNED_EVENT, pinnedTotal);
+        pinned.forEach((frame, count) -> System.out.printf("%8d  %s%n", count, frame));
+    }
+
+    private static Process start(String jar, String dbUrl, int port, String mode, Path recording)
+            throws IOException {
+        List<String> command = new ArrayList<>();
+        command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+        if ("virtual".equals(mode)) {
+            command.add("-XX:StartFlightRecording:filename=" + recording + ",dumponexit=true,"
+                    + PINNED_EVENT + "#enabled=true," + PINNED_EVENT + "#threshold=0ms,"
+                    + PINNED_EVENT + "#stackTrace=true");
+        }
+        command.addAll(List.of("-jar", jar,
+                "--server.port=" + port,
+                "--spring.datasource.url=" + dbUrl));
+        if ("virtual".equals(mode)) {
+            command.add("--spring.profiles.active=virtual");
+        }
+        return new ProcessBuilder(command)
+                .redirectErrorStream(true)
+                .redirectOutput(Path.of("target", "threads-" + mode + ".log").toFile())
+                .start();
+    }
+
+    private static void awaitHealthy(int port, Process application) throws Exception {
+        HttpClient client = HttpClient.newHttpClient();
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/actuator/health"))
+                .timeout(Duration.ofSeconds(2))
+                .build();
+        long deadline = System.nanoTime() + TimeUnit.MINUTES.toNanos(2);
+        while (System.nanoTime() < deadline) {
+            if (!application.isAlive()) {
+                throw new IllegalStateException("Приложение завершилось при запуске, код " + application.exitValue());
+            }
+            try {
+                if (client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() == 200) {
+                    return;
+                }
+            } catch (IOException e) {
+                // Еще не слушает порт
+            }
+            Thread.sleep(500);
+        }
+        throw new IllegalStateException("Приложение не запустилось за 2 минуты");
+    }
+
+    /**
+     * Число закреплений по первому кадру кода приложения в стеке, а если его нет - по верхнему кадру.
+     */
+    private static Map<String, Integer> countPinned(Path recording) throws IOException {
+        Map<String, Integer> counts = new TreeMap<>();
+        if (!Files.exists(recording)) {
+            return counts;
+        }
+        for (RecordedEvent event : RecordingFile.readAllEvents(recording)) {
+            if (!PINNED_EVENT.equals(event.getEventType().getName()) || event.getStackTrace() == null) {
+                continue;
+            }
+            List<RecordedFrame> frames = event.getStackTrace().getFrames();
+            RecordedFrame frame = frames.stream()
+                    .filter(candidate -> candidate.getMethod().getType().getName().startsWith("ru.yandex"))
+                    .findFirst()
+                    .orElse(frames.isEmpty() ? null : frames.get(0));
+            String key = frame == null ? "?" : frame.getMethod().getType().getName() + "."
+                    + frame.getMethod().getName() + ":" + frame.getLineNumber();
+            counts.merge(key, 1, Integer::sum);
+        }
+        return counts;
+    }
+}
@@ -0,0 +1,104 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.service.UserService;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.nullValue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@AutoConfigureTestDatabase
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+class PaginationControllerTest {
+
+    private static final int DEFAULT_PAGE_SIZE = 100;
+    private static final int CREATED = DEFAULT_PAGE_SIZE + 5;
+
+    private final MockMvc mockMvc;
+    private final FilmService filmService;
+    private final UserService userService;
+
+    @Test
+    @DisplayName("GET /films?after без limit отдаёт страницу размера по умолчанию по возрастанию id с курсором")
+    void testFilmsAfterWithoutLimit() throws Exception {
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < CREATED; i++) {
+            ids.add(filmService.createFilm(film("Page_" + i)).getId());
+        }
+        long after = ids.get(0) - 1;
+        long cursor = ids.get(DEFAULT_PAGE_SIZE - 1);
+
+        mockMvc.perform(get("/films").param("after", Long.toString(after)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[*].id").value(contains(idsFrom(ids, 0, DEFAULT_PAGE_SIZE))))
+                .andExpect(jsonPath("$.nextCursor").value(cursor));
+        mockMvc.perform(get("/films").param("after", Long.toString(cursor)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[*].id").value(contains(idsFrom(ids, DEFAULT_PAGE_SIZE, CREATED))))
+                .andExpect(jsonPath("$.nextCursor").value(nullValue()));
+    }
+
+    @Test
+    @DisplayName("GET /users?after без limit отдаёт страницу размера по умолчанию по возрастанию id с курсором")
+    void testUsersAfterWithoutLimit() throws Exception {
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < CREATED; i++) {
+            ids.add(userService.createUser(user("page_" + i)).getId());
+        }
+        long after = ids.get(0) - 1;
+        long cursor = ids.get(DEFAULT_PAGE_SIZE - 1);
+
+        mockMvc.perform(get("/users").param("after", Long.toString(after)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[*].id").value(contains(idsFrom(ids, 0, DEFAULT_PAGE_SIZE))))
+                .andExpect(jsonPath("$.nextCursor").value(cursor));
+        mockMvc.perform(get("/users").param("after", Long.toString(cursor)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[*].id").value(contains(idsFrom(ids, DEFAULT_PAGE_SIZE, CREATED))))
+                .andExpect(jsonPath("$.nextCursor").value(nullValue()));
+    }
+
+    // JSON-числа из id в пределах int читаются как Integer
+    private static Object[] idsFrom(List<Long> ids, int from, int to) {
+        return ids.subList(from, to).stream().map(Long::intValue).toArray();
+    }
+
+    private static User user(String login) {
+        User user = new User();
+        user.setEmail(login + "@example.com");
+        user.setLogin(login);
+        user.setBirthday(LocalDate.of(1990, 1, 1));
+        return user;
+    }
+
+    private static Film film(String name) {
+        Film film = new Film();
+        film.setName(name);
+        film.setDescription("Description");
+        film.setReleaseDate(LocalDate.of(2000, 1, 1));
+        film.setDuration(100);
+        Mpa mpa = new Mpa();
+        mpa.setId(1);
+        film.setMpa(mpa);
+        return film;
+    }
+}
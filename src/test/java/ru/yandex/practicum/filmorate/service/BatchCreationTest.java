@@ -0,0 +1,80 @@
+package ru.yandex.practicum.filmorate.service;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import ru.yandex.practicum.filmorate.model.BatchItemResult;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.model.User;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@AutoConfigureTestDatabase
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+class BatchCreationTest {
+
+    private final UserService userService;
+    private final FilmService filmService;
+
+    @Test
+    @DisplayName("Пакет пользователей с занятыми имейлом и логином создаёт только корректных")
+    void testCreateUsersWithTakenEmailAndLogin() {
+        userService.createUser(user("taken@example.com", "taken_login"));
+
+        List<BatchItemResult> results = userService.createUsers(List.of(
+                user("fresh1@example.com", "fresh_1"),
+                user("taken@example.com", "other_login"),
+                user("other@example.com", "taken_login"),
+                user("fresh2@example.com", "fresh_2")));
+
+        assertThat(results).extracting(BatchItemResult::getIndex).containsExactly(0, 1, 2, 3);
+        assertThat(results.get(0).getId()).isNotNull();
+        assertThat(results.get(1).getError()).isNotNull();
+        assertThat(results.get(2).getError()).isNotNull();
+        assertThat(results.get(3).getId()).isNotNull();
+        assertThat(userService.getUser(results.get(3).getId()).getLogin()).isEqualTo("fresh_2");
+    }
+
+    @Test
+    @DisplayName("Фильм с нулевой продолжительностью отклоняется, остальные фильмы пакета создаются")
+    void testCreateFilmsWithZeroDuration() {
+        List<BatchItemResult> results = filmService.createFilms(List.of(
+                film("Batch_1", 100),
+                film("Batch_2", 0),
+                film("Batch_3", 90)));
+
+        assertThat(results.get(0).getId()).isNotNull();
+        assertThat(results.get(1).getId()).isNull();
+        assertThat(results.get(1).getError()).isNotNull();
+        assertThat(results.get(2).getId()).isNotNull();
+        assertThat(filmService.getFilm(results.get(2).getId()).getName()).isEqualTo("Batch_3");
+    }
+
+    private User user(String email, String login) {
+        User user = new User();
+        user.setEmail(email);
+        user.setLogin(login);
+        user.setBirthday(LocalDate.of(1990, 1, 1));
+        return user;
+    }
+
+    private Film film(String name, int duration) {
+        Film film = new Film();
+        film.setName(name);
+        film.setDescription("Description");
+        film.setReleaseDate(LocalDate.of(2000, 1, 1));
+        film.setDuration(duration);
+        Mpa mpa = new Mpa();
+        mpa.setId(1);
+        film.setMpa(mpa);
+        return film;
+    }
+}
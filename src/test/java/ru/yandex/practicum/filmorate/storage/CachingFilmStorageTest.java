@@ -0,0 +1,110 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.model.Film;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class CachingFilmStorageTest {
+
+    private final FilmStorage delegate = mock(FilmStorage.class);
+    private final CachingFilmStorage storage = new CachingFilmStorage(delegate, 100, Duration.ofMinutes(1));
+
+    @Test
+    @DisplayName("Повторное чтение фильма идёт из кэша")
+    void testGetFilmIsCached() {
+        when(delegate.getFilm(1L)).thenReturn(Optional.of(film(1L)));
+
+        storage.getFilm(1L);
+        storage.getFilm(1L);
+        storage.getFilm(1L);
+
+        verify(delegate, times(1)).getFilm(1L);
+        assertThat(storage.getStats().hitCount()).isEqualTo(2);
+        assertThat(storage.getStats().missCount()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Обновление, удаление и лайки сбрасывают запись кэша")
+    void testInvalidation() {
+        Film film = film(1L);
+        when(delegate.getFilm(1L)).thenReturn(Optional.of(film));
+        when(delegate.addLike(1L, 10L)).thenReturn(true);
+        when(delegate.removeLike(1L, 10L)).thenReturn(true);
+
+        storage.getFilm(1L);
+        storage.addLike(1L, 10L);
+        storage.getFilm(1L);
+        storage.removeLike(1L, 10L);
+        storage.getFilm(1L);
+        storage.updateFilm(film);
+        storage.getFilm(1L);
+        storage.deleteFilm(1L);
+        storage.getFilm(1L);
+
+        verify(delegate, times(5)).getFilm(1L);
+    }
+
+    @Test
+    @DisplayName("Пакетное чтение догружает только отсутствующие в кэше фильмы и сохраняет порядок")
+    void testGetFilmsByIds() {
+        when(delegate.getFilm(2L)).thenReturn(Optional.of(film(2L)));
+        when(delegate.getFilmsByIds(anyList())).thenReturn(List.of(film(1L), film(3L)));
+
+        storage.getFilm(2L);
+        List<Film> films = storage.getFilmsByIds(List.of(3L, 2L, 1L));
+
+        assertThat(films).extracting(Film::getId).containsExactly(3L, 2L, 1L);
+        verify(delegate).getFilmsByIds(anyList());
+    }
+
+    @Test
+    @DisplayName("Фильм, сброшенный во время пакетной загрузки, не остаётся в кэше устаревшим")
+    void testInvalidationDuringBatchLoad() {
+        when(delegate.getFilmsByIds(anyList())).thenAnswer(invocation -> {
+            // Пока загрузка читает базу, фильм 1 обновляется
+            storage.updateFilm(film(1L));
+            return List.of(film(1L), film(3L));
+        });
+        when(delegate.getFilm(1L)).thenReturn(Optional.of(film(1L)));
+        when(delegate.getFilm(3L)).thenReturn(Optional.of(film(3L)));
+
+        assertThat(storage.getFilmsByIds(List.of(1L, 3L))).extracting(Film::getId).containsExactly(1L, 3L);
+        storage.getFilm(1L);
+        storage.getFilm(3L);
+
+        verify(delegate).getFilm(1L);
+        verify(delegate, never()).getFilm(3L);
+    }
+
+    @Test
+    @DisplayName("Размер кэша ограничен, вытеснения попадают в статистику")
+    void testEviction() {
+        for (long id = 1; id <= 1000; id++) {
+            when(delegate.getFilm(id)).thenReturn(Optional.of(film(id)));
+            storage.getFilm(id);
+        }
+        storage.cleanUp();
+
+        assertThat(storage.getSize()).isLessThanOrEqualTo(100);
+        assertThat(storage.getStats().evictionCount()).isPositive();
+    }
+
+    private Film film(long id) {
+        Film film = new Film();
+        film.setId(id);
+        film.setName("Film_" + id);
+        return film;
+    }
+}
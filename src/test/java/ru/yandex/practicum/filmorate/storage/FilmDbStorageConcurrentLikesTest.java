@@ -0,0 +1,81 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.jdbc.JdbcTestUtils;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static ru.yandex.practicum.filmorate.storage.StorageTestFixture.createFilms;
+import static ru.yandex.practicum.filmorate.storage.StorageTestFixture.createUsers;
+
+@JdbcTest
+@AutoConfigureTestDatabase
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Import(StorageTestFixture.class)
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+class FilmDbStorageConcurrentLikesTest {
+
+    private final FilmDbStorage filmStorage;
+    private final UserDbStorage userStorage;
+    private final JdbcTemplate jdbcTemplate;
+
+    @AfterEach
+    void cleanUp() {
+        StorageTestFixture.cleanUp(jdbcTemplate);
+    }
+
+    @Test
+    @DisplayName("Параллельные лайки одного фильма не дают ошибок, дублей и потерь")
+    void testConcurrentLikesOfOneFilm() throws Exception {
+        Film film = createFilms(filmStorage, 1).get(0);
+        List<User> users = createUsers(userStorage, 20);
+
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        List<Future<Integer>> futures = new ArrayList<>();
+        // Каждый пользователь лайкает фильм из нескольких потоков сразу
+        for (int i = 0; i < 4; i++) {
+            for (User user : users) {
+                futures.add(executor.submit(() -> filmStorage.addLike(film.getId(), user.getId()) ? 1 : 0));
+            }
+        }
+        int added = 0;
+        for (Future<Integer> future : futures) {
+            added += future.get();
+        }
+        executor.shutdown();
+
+        assertThat(added).isEqualTo(users.size());
+        assertThat(JdbcTestUtils.countRowsInTable(jdbcTemplate, "likes")).isEqualTo(users.size());
+        assertThat(filmStorage.getFilm(film.getId()).get().getLikeCount()).isEqualTo(users.size());
+    }
+
+    @Test
+    @DisplayName("Повторный лайк и удаление отсутствующего лайка возвращают false")
+    void testIdempotentLikeAndUnlike() {
+        Film film = createFilms(filmStorage, 1).get(0);
+        User user = createUsers(userStorage, 1).get(0);
+
+        assertThat(filmStorage.addLike(film.getId(), user.getId())).isTrue();
+        assertThat(filmStorage.addLike(film.getId(), user.getId())).isFalse();
+        assertThat(filmStorage.removeLike(film.getId(), user.getId())).isTrue();
+        assertThat(filmStorage.removeLike(film.getId(), user.getId())).isFalse();
+        assertThat(filmStorage.getFilm(film.getId()).get().getLikeCount()).isZero();
+    }
+}
@@ -10,6 +10,8 @@ import org.springframework.boot.test.context.TestConfiguration;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Import;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.model.Film;
 import ru.yandex.practicum.filmorate.model.Genre;
@@ -20,7 +22,12 @@ import ru.yandex.practicum.filmorate.storage.mapper.GenreRowMapper;
 import ru.yandex.practicum.filmorate.storage.mapper.MpaRowMapper;
 import ru.yandex.practicum.filmorate.storage.mapper.UserRowMapper;
 
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 
@@ -34,12 +41,17 @@ import static org.assertj.core.api.Assertions.assertThatThrownBy;
         GenreRowMapper.class, MpaRowMapper.class,
         FilmDbStorageTest.AdditionalConfigFilm.class,
         FilmDbStorageTest.AdditionalConfigUser.class,
-        FilmDbStorageTest.AdditionalConfigGenre.class})
+        FilmDbStorageTest.AdditionalConfigGenre.class,
+        FilmDbStorageTest.AdditionalConfigMpa.class})
 @RequiredArgsConstructor(onConstructor_ = @Autowired)
 class FilmDbStorageTest {
 
     private final FilmDbStorage filmStorage;
     private final UserDbStorage userStorage;
+    private final JdbcTemplate jdbcTemplate;
+    private final FilmRowMapper filmRowMapper;
+    private final GenreRowMapper genreRowMapper;
+    private final MpaDbStorage mpaDbStorage;
 
     @TestConfiguration
     static class AdditionalConfigUser {
@@ -52,8 +64,9 @@ class FilmDbStorageTest {
     @TestConfiguration
     static class AdditionalConfigFilm {
         @Bean
-        public FilmDbStorage filmDbStorage(JdbcTemplate jdbcTemplate, FilmRowMapper filmRowMapper) {
-            return new FilmDbStorage(jdbcTemplate, filmRowMapper);
+        public FilmDbStorage filmDbStorage(JdbcTemplate jdbcTemplate, FilmRowMapper filmRowMapper,
+                                           GenreDbStorage genreDbStorage, MpaDbStorage mpaDbStorage) {
+            return new FilmDbStorage(jdbcTemplate, filmRowMapper, genreDbStorage, mpaDbStorage);
         }
     }
 
@@ -65,6 +78,14 @@ class FilmDbStorageTest {
         }
     }
 
+    @TestConfiguration
+    static class AdditionalConfigMpa {
+        @Bean
+        public MpaDbStorage mpaDbStorage(JdbcTemplate jdbcTemplate, MpaRowMapper mpaRowMapper) {
+            return new MpaDbStorage(jdbcTemplate, mpaRowMapper);
+        }
+    }
+
     @Test
     @DisplayName("Создание фильма инаходение его по Id")
     void testCreateAndFindById() {
@@ -99,7 +120,7 @@ class FilmDbStorageTest {
     @Test
     @DisplayName("Проверка метода getFilms()")
     void testGetFilms() {
-        // Изначально база должна быть пуста (если data.sql не создаёт фильмов)
+        // Изначально база должна быть пуста (миграции не создают фильмов)
         Collection<Film> emptyList = filmStorage.getFilms();
         assertThat(emptyList).isEmpty();
 
@@ -205,11 +226,292 @@ class FilmDbStorageTest {
 
         film = filmStorage.getFilm(film.getId()).get();
 
-        Collection<Film> popular = filmStorage.getPopularFilms(10);
+        Collection<Film> popular = filmStorage.getPopularFilms(10, null, null);
         assertThat(popular).hasSize(1);
         Film popularFilm = popular.iterator().next();
         assertThat(popularFilm.getId()).isEqualTo(film.getId());
 
         filmStorage.removeLike(film.getId(), user.getId());
     }
-}
\ No newline at end of file
+
+    @Test
+    @DisplayName("Обновление фильма с лайками возвращает сохранённый счётчик лайков")
+    void testUpdateKeepsLikeCount() {
+        User user = new User();
+        user.setEmail("user@example.com");
+        user.setLogin("User_1");
+        user.setName("User");
+        user.setBirthday(LocalDate.of(1990, 1, 1));
+        user = userStorage.createUser(user);
+
+        Film film = new Film();
+        film.setName("Film");
+        film.setDescription("Description");
+        film.setReleaseDate(LocalDate.of(2010, 10, 10));
+        film.setDuration(100);
+
+        Mpa mpa = new Mpa();
+        mpa.setId(2);
+        film.setMpa(mpa);
+
+        film = filmStorage.createFilm(film);
+        assertThat(film.getLikeCount()).isZero();
+        filmStorage.addLike(film.getId(), user.getId());
+
+        Film update = new Film();
+        update.setId(film.getId());
+        update.setName("New_Film");
+        update.setDescription("New_description");
+        update.setReleaseDate(LocalDate.of(2010, 10, 10));
+        update.setDuration(110);
+        update.setMpa(mpa);
+
+        Film updated = filmStorage.updateFilm(update);
+        assertThat(updated.getLikeCount()).isEqualTo(1);
+        assertThat(filmStorage.getFilm(film.getId()).get().getLikeCount()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Жанры списка фильмов загружаются одним запросом")
+    void testGenresLoadedInOneQuery() {
+        for (int i = 0; i < 5; i++) {
+            Film film = new Film();
+            film.setName("Film_" + i);
+            film.setDescription("Description");
+            film.setReleaseDate(LocalDate.of(2000 + i, 1, 1));
+            film.setDuration(100);
+            Mpa mpa = new Mpa();
+            mpa.setId(1);
+            film.setMpa(mpa);
+            Genre genre = new Genre();
+            genre.setId(i % 2 + 1);
+            film.setGenres(List.of(genre));
+            filmStorage.createFilm(film);
+        }
+
+        StatementCountingJdbcTemplate countingJdbc = new StatementCountingJdbcTemplate(jdbcTemplate);
+        GenreDbStorage countingGenreStorage = new GenreDbStorage(countingJdbc, genreRowMapper);
+        countingGenreStorage.reload();
+        FilmDbStorage countingStorage = new FilmDbStorage(countingJdbc, filmRowMapper,
+                countingGenreStorage, mpaDbStorage);
+        countingJdbc.statements = 0;
+
+        Collection<Film> films = countingStorage.getFilms();
+        assertThat(films).hasSize(5).allSatisfy(film -> assertThat(film.getGenres()).hasSize(1));
+        assertThat(countingJdbc.statements).isEqualTo(2);
+
+        countingJdbc.statements = 0;
+        List<Film> popular = countingStorage.getPopularFilms(5, null, null);
+        assertThat(popular).hasSize(5).allSatisfy(film -> assertThat(film.getGenres()).hasSize(1));
+        assertThat(countingJdbc.statements).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("Счётчики лайков совпадают с агрегатом по таблице likes")
+    void testLikeCountsMatchAggregate() {
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            User user = new User();
+            user.setEmail("user" + i + "@example.com");
+            user.setLogin("user_" + i);
+            user.setName("User");
+            user.setBirthday(LocalDate.of(1990, 1, 1));
+            users.add(userStorage.createUser(user));
+        }
+        List<Film> films = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            Film film = new Film();
+            film.setName("Film_" + i);
+            film.setDescription("Description");
+            film.setReleaseDate(LocalDate.of(2000, 1, 1));
+            film.setDuration(100);
+            Mpa mpa = new Mpa();
+            mpa.setId(1);
+            film.setMpa(mpa);
+            films.add(filmStorage.createFilm(film));
+        }
+        for (int i = 0; i < users.size(); i++) {
+            for (int j = 0; j <= i && j < films.size(); j++) {
+                filmStorage.addLike(films.get(j).getId(), users.get(i).getId());
+            }
+        }
+        filmStorage.addLike(films.get(0).getId(), users.get(0).getId());
+        filmStorage.removeLike(films.get(1).getId(), users.get(1).getId());
+        filmStorage.removeLike(films.get(2).getId(), users.get(0).getId());
+        userStorage.deleteUser(users.get(3).getId());
+
+        String aggregate = "SELECT f.id, COUNT(l.user_id) FROM films f " +
+                "LEFT JOIN likes l ON f.id = l.film_id GROUP BY f.id";
+        jdbcTemplate.query(aggregate, rs -> {
+            assertThat(filmStorage.getFilm(rs.getLong(1)).get().getLikeCount()).isEqualTo(rs.getInt(2));
+        });
+        assertThat(filmStorage.getPopularFilms(3, null, null)).extracting("likeCount").containsExactly(3, 1, 1);
+
+        jdbcTemplate.update("UPDATE films SET like_count = 100");
+        assertThat(filmStorage.rebuildLikeCounts()).isEqualTo(3);
+        jdbcTemplate.query(aggregate, rs -> {
+            assertThat(filmStorage.getFilm(rs.getLong(1)).get().getLikeCount()).isEqualTo(rs.getInt(2));
+        });
+        assertThat(filmStorage.rebuildLikeCounts()).isZero();
+    }
+
+
+    @Test
+    @DisplayName("Фильмы по списку id возвращаются в порядке запроса")
+    void testGetFilmsByIds() {
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            Film film = new Film();
+            film.setName("Film_" + i);
+            film.setDescription("Description");
+            film.setReleaseDate(LocalDate.of(2000, 1, 1));
+            film.setDuration(100);
+            Mpa mpa = new Mpa();
+            mpa.setId(1);
+            film.setMpa(mpa);
+            ids.add(filmStorage.createFilm(film).getId());
+        }
+
+        List<Film> films = filmStorage.getFilmsByIds(List.of(ids.get(2), ids.get(0), -1L, ids.get(1)));
+        assertThat(films).extracting("name").containsExactly("Film_2", "Film_0", "Film_1");
+    }
+
+    @Test
+    @DisplayName("Рейтинг и жанры фильма подставляются из справочника")
+    void testReferenceDataResolvedFromSnapshot() {
+        Film film = new Film();
+        film.setName("Film");
+        film.setDescription("Description");
+        film.setReleaseDate(LocalDate.of(2000, 1, 1));
+        film.setDuration(100);
+        Mpa mpa = new Mpa();
+        mpa.setId(5);
+        film.setMpa(mpa);
+        Genre thriller = new Genre();
+        thriller.setId(4);
+        Genre comedy = new Genre();
+        comedy.setId(1);
+        film.setGenres(List.of(thriller, comedy, thriller));
+
+        Film created = filmStorage.createFilm(film);
+        assertThat(created.getMpa().getName()).isEqualTo("NC-17");
+        assertThat(created.getGenres()).extracting("name").containsExactly("Комедия", "Триллер");
+
+        Mpa unknownMpa = new Mpa();
+        unknownMpa.setId(100);
+        created.setMpa(unknownMpa);
+        assertThatThrownBy(() -> filmStorage.updateFilm(created)).isInstanceOf(NotFoundException.class);
+    }
+
+    @Test
+    @DisplayName("Пакетное создание фильмов возвращает id в порядке входа")
+    void testCreateFilms() {
+        List<Film> newFilms = new ArrayList<>();
+        for (int i = 0; i < 2500; i++) {
+            Film film = new Film();
+            film.setName("Film_" + i);
+            film.setDescription("Description");
+            film.setReleaseDate(LocalDate.of(2000, 1, 1));
+            film.setDuration(100);
+            Mpa mpa = new Mpa();
+            mpa.setId(i % 5 + 1);
+            film.setMpa(mpa);
+            Genre genre = new Genre();
+            genre.setId(i % 6 + 1);
+            film.setGenres(List.of(genre, genre));
+            newFilms.add(film);
+        }
+
+        List<Film> created = filmStorage.createFilms(newFilms);
+
+        assertThat(created).extracting(Film::getId).doesNotContainNull().isSorted().doesNotHaveDuplicates();
+        Film found = filmStorage.getFilm(created.get(1234).getId()).get();
+        assertThat(found.getName()).isEqualTo("Film_1234");
+        assertThat(found.getMpa().getId()).isEqualTo(1234 % 5 + 1);
+        assertThat(found.getGenres()).extracting("id").containsExactly(1234 % 6 + 1);
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM film_genres", Integer.class)).isEqualTo(2500);
+    }
+
+    static class StatementCountingJdbcTemplate extends JdbcTemplate {
+
+        private int statements;
+
+        StatementCountingJdbcTemplate(JdbcTemplate jdbcTemplate) {
+            DataSource target = jdbcTemplate.getDataSource();
+            setDataSource(new DelegatingDataSource(target) {
+                @Override
+                public Connection getConnection() {
+                    // Берём соединение текущей транзакции теста, чтобы видеть незакоммиченные данные
+                    Connection connection = DataSourceUtils.getConnection(target);
+                    return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(),
+                            new Class<?>[]{Connection.class}, (proxy, method, args) -> {
+                                switch (method.getName()) {
+                                    case "prepareStatement", "createStatement" -> statements++;
+                                    case "close" -> {
+                                        DataSourceUtils.releaseConnection(connection, target);
+                                        return null;
+                                    }
+                                    default -> {
+                                    }
+                                }
+                                try {
+                                    return method.invoke(connection, args);
+                                } catch (InvocationTargetException e) {
+                                    throw e.getCause();
+                                }
+                            });
+                }
+            });
+        }
+    }
+
+    @Test
+    @DisplayName("Проверка постраничной выборки фильмов по курсору")
+    void testGetFilmsPage() {
+        for (int i = 0; i < 3; i++) {
+            Film film = new Film();
+            film.setName("Film_" + i);
+            film.setDescription("Description");
+            film.setReleaseDate(LocalDate.of(2000, 1, 1));
+            film.setDuration(100);
+            Mpa mpa = new Mpa();
+            mpa.setId(1);
+            film.setMpa(mpa);
+            filmStorage.createFilm(film);
+        }
+
+        List<Film> firstPage = filmStorage.getFilms(0, 2);
+        assertThat(firstPage).extracting("name").containsExactly("Film_0", "Film_1");
+
+        List<Film> lastPage = filmStorage.getFilms(firstPage.get(1).getId(), 2);
+        assertThat(lastPage).extracting("name").containsExactly("Film_2");
+        assertThat(lastPage.get(0).getMpa().getName()).isEqualTo("G");
+    }
+
+    @Test
+    @DisplayName("Проверка потоковой выгрузки фильмов с жанрами и рейтингом")
+    void testExportFilms() {
+        for (int i = 0; i < 3; i++) {
+            Film film = new Film();
+            film.setName("Film_" + i);
+            film.setDescription("Description");
+            film.setReleaseDate(LocalDate.of(2000, 1, 1));
+            film.setDuration(100);
+            Mpa mpa = new Mpa();
+            mpa.setId(2);
+            film.setMpa(mpa);
+            Genre genre = new Genre();
+            genre.setId(3);
+            film.setGenres(List.of(genre));
+            filmStorage.createFilm(film);
+        }
+
+        List<Film> exported = new ArrayList<>();
+        filmStorage.exportFilms(exported::add);
+        assertThat(exported).extracting("name").containsExactly("Film_0", "Film_1", "Film_2");
+        assertThat(exported).allSatisfy(film -> {
+            assertThat(film.getMpa().getName()).isEqualTo("PG");
+            assertThat(film.getGenres()).extracting("name").containsExactly("Мультфильм");
+        });
+    }
+}
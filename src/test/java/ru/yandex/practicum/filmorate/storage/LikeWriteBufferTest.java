@@ -0,0 +1,174 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.AdditionalAnswers.delegatesTo;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static ru.yandex.practicum.filmorate.storage.StorageTestFixture.createFilms;
+import static ru.yandex.practicum.filmorate.storage.StorageTestFixture.createUsers;
+
+@JdbcTest
+@AutoConfigureTestDatabase
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Import(StorageTestFixture.class)
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+class LikeWriteBufferTest {
+
+    private final FilmDbStorage filmStorage;
+    private final UserDbStorage userStorage;
+    private final JdbcTemplate jdbcTemplate;
+
+    @AfterEach
+    void cleanUp() {
+        StorageTestFixture.cleanUp(jdbcTemplate);
+    }
+
+    @Test
+    @DisplayName("Повторные переключения одной пары схлопываются, повторный лайк распознаётся до записи")
+    void testCoalescing() throws Exception {
+        Film film = createFilms(filmStorage, 1).get(0);
+        User user = createUsers(userStorage, 1).get(0);
+        LikeWriteBuffer buffer = new LikeWriteBuffer(filmStorage, 100, 1000, Duration.ofHours(1), false);
+
+        assertThat(buffer.addLike(film.getId(), user.getId())).isTrue();
+        assertThat(buffer.addLike(film.getId(), user.getId())).isFalse();
+        assertThat(buffer.removeLike(film.getId(), user.getId())).isTrue();
+        assertThat(buffer.getPendingCount()).isZero();
+        assertThat(buffer.addLike(film.getId(), user.getId())).isTrue();
+        assertThat(buffer.getPendingCount()).isEqualTo(1);
+        assertThat(filmStorage.hasLike(film.getId(), user.getId())).isFalse();
+
+        buffer.flush();
+        assertThat(filmStorage.hasLike(film.getId(), user.getId())).isTrue();
+        assertThat(filmStorage.getFilm(film.getId()).get().getLikeCount()).isEqualTo(1);
+        assertThat(buffer.addLike(film.getId(), user.getId())).isFalse();
+
+        assertThat(buffer.removeLike(film.getId(), user.getId())).isTrue();
+        buffer.shutdown();
+        assertThat(filmStorage.hasLike(film.getId(), user.getId())).isFalse();
+        assertThat(filmStorage.getFilm(film.getId()).get().getLikeCount()).isZero();
+    }
+
+    @Test
+    @DisplayName("После параллельных переключений и остановки база совпадает с ответами буфера")
+    void testConcurrentToggles() throws Exception {
+        List<Film> films = createFilms(filmStorage, 10);
+        List<User> users = createUsers(userStorage, 8);
+        LikeWriteBuffer buffer = new LikeWriteBuffer(filmStorage, 16, 64, Duration.ofMillis(5), true);
+
+        ExecutorService executor = Executors.newFixedThreadPool(users.size());
+        List<Future<Set<Long>>> futures = new ArrayList<>();
+        // Каждый поток работает от имени своего пользователя и сам ведёт ожидаемое состояние
+        for (User user : users) {
+            futures.add(executor.submit(() -> {
+                Set<Long> liked = new HashSet<>();
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int i = 0; i < 300; i++) {
+                    long filmId = films.get(random.nextInt(films.size())).getId();
+                    if (random.nextBoolean()) {
+                        assertThat(buffer.addLike(filmId, user.getId())).isEqualTo(liked.add(filmId));
+                    } else {
+                        assertThat(buffer.removeLike(filmId, user.getId())).isEqualTo(liked.remove(filmId));
+                    }
+                }
+                return liked;
+            }));
+        }
+        List<Set<Long>> expected = new ArrayList<>();
+        for (Future<Set<Long>> future : futures) {
+            expected.add(future.get());
+        }
+        executor.shutdown();
+        buffer.shutdown();
+
+        for (int i = 0; i < users.size(); i++) {
+            List<Long> actual = jdbcTemplate.queryForList("SELECT film_id FROM likes WHERE user_id = ?",
+                    Long.class, users.get(i).getId());
+            assertThat(actual).containsExactlyInAnyOrderElementsOf(expected.get(i));
+        }
+        assertThat(filmStorage.rebuildLikeCounts()).isZero();
+    }
+
+    @Test
+    @DisplayName("Повторный лайк, пришедший во время записи пачки, распознаётся по записываемому состоянию")
+    void testChangeDuringFlush() throws Exception {
+        Film film = createFilms(filmStorage, 1).get(0);
+        User user = createUsers(userStorage, 1).get(0);
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        FilmStorage storage = mock(FilmStorage.class, delegatesTo(filmStorage));
+        doAnswer(invocation -> {
+            writing.countDown();
+            assertThat(release.await(10, TimeUnit.SECONDS)).isTrue();
+            filmStorage.applyLikes(invocation.getArgument(0), invocation.getArgument(1));
+            return null;
+        }).when(storage).applyLikes(any(), any());
+        LikeWriteBuffer buffer = new LikeWriteBuffer(storage, 100, 1000, Duration.ofHours(1), false);
+
+        assertThat(buffer.addLike(film.getId(), user.getId())).isTrue();
+        CompletableFuture<Void> flush = CompletableFuture.runAsync(buffer::flush);
+        assertThat(writing.await(10, TimeUnit.SECONDS)).isTrue();
+        assertThat(buffer.addLike(film.getId(), user.getId())).isFalse();
+        assertThat(buffer.removeLike(film.getId(), user.getId())).isTrue();
+        release.countDown();
+        flush.get(10, TimeUnit.SECONDS);
+
+        assertThat(filmStorage.hasLike(film.getId(), user.getId())).isTrue();
+        assertThat(buffer.getPendingCount()).isEqualTo(1);
+        buffer.shutdown();
+        assertThat(filmStorage.hasLike(film.getId(), user.getId())).isFalse();
+        assertThat(filmStorage.getFilm(film.getId()).get().getLikeCount()).isZero();
+    }
+
+    @Test
+    @DisplayName("Неудачная запись возвращает изменения в очередь и сообщает об ошибке")
+    void testFailedFlushRequeues() throws Exception {
+        Film film = createFilms(filmStorage, 1).get(0);
+        User user = createUsers(userStorage, 1).get(0);
+        FilmStorage storage = mock(FilmStorage.class, delegatesTo(filmStorage));
+        doThrow(new IllegalStateException("База недоступна")).doAnswer(invocation -> {
+            filmStorage.applyLikes(invocation.getArgument(0), invocation.getArgument(1));
+            return null;
+        }).when(storage).applyLikes(any(), any());
+        LikeWriteBuffer buffer = new LikeWriteBuffer(storage, 100, 1000, Duration.ofHours(1), false);
+
+        assertThat(buffer.addLike(film.getId(), user.getId())).isTrue();
+        assertThatThrownBy(buffer::flush).isInstanceOf(IllegalStateException.class);
+        assertThat(buffer.getPendingCount()).isEqualTo(1);
+        assertThat(buffer.addLike(film.getId(), user.getId())).isFalse();
+
+        buffer.shutdown();
+        assertThat(filmStorage.hasLike(film.getId(), user.getId())).isTrue();
+        assertThat(filmStorage.getFilm(film.getId()).get().getLikeCount()).isEqualTo(1);
+    }
+}
@@ -0,0 +1,81 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import lombok.RequiredArgsConstructor;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@JdbcTest
+@AutoConfigureTestDatabase
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+class MigrationsTest {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Test
+    @DisplayName("Миграции применены по порядку, справочники заполнены, индексы созданы")
+    void testMigrationsApplied() {
+        assertThat(jdbcTemplate.queryForList("SELECT \"version\" FROM \"flyway_schema_history\" " +
+                "WHERE \"version\" IS NOT NULL AND \"success\" ORDER BY \"installed_rank\"", String.class))
+                .containsExactly("1", "2", "3");
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM genres", Integer.class)).isEqualTo(6);
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM mpa", Integer.class)).isEqualTo(5);
+        assertThat(jdbcTemplate.queryForList("SELECT LOWER(index_name) FROM information_schema.indexes " +
+                "WHERE table_schema = 'PUBLIC'", String.class))
+                .contains("likes_user_id_idx", "friendship_friend_id_idx",
+                        "films_like_count_idx", "films_release_year_idx", "film_genres_genre_id_idx");
+    }
+
+    @Test
+    @DisplayName("База, созданная старым schema.sql, получает like_count, release_year и индексы без потери данных")
+    void testMigrateLegacyDatabase() {
+        EmbeddedDatabase legacy = new EmbeddedDatabaseBuilder()
+                .setType(EmbeddedDatabaseType.H2)
+                .generateUniqueName(true)
+                .addScript("db/legacy/schema.sql")
+                .addScript("db/legacy/data.sql")
+                .build();
+        try {
+            JdbcTemplate legacyJdbc = new JdbcTemplate(legacy);
+            legacyJdbc.update("INSERT INTO users (id, name, email, login, birthday) VALUES " +
+                    "(1, 'u1', 'u1@mail.ru', 'u1', '1990-01-01'), (2, 'u2', 'u2@mail.ru', 'u2', '1990-01-01')");
+            legacyJdbc.update("INSERT INTO films (id, name, description, release_date, duration, mpa_id) VALUES " +
+                    "(1, 'f1', 'd', '1999-05-01', 100, 1), (2, 'f2', 'd', '2005-05-01', 100, 2)");
+            legacyJdbc.update("INSERT INTO film_genres (film_id, genre_id) VALUES (1, 1), (2, 2)");
+            legacyJdbc.update("INSERT INTO likes (film_id, user_id) VALUES (1, 1), (1, 2), (2, 1)");
+
+            Flyway.configure()
+                    .dataSource(legacy)
+                    .locations("classpath:db/migration")
+                    .baselineOnMigrate(true)
+                    .baselineVersion("1")
+                    .load()
+                    .migrate();
+
+            assertThat(legacyJdbc.queryForList("SELECT \"version\" FROM \"flyway_schema_history\" " +
+                    "WHERE \"version\" IS NOT NULL AND \"success\" ORDER BY \"installed_rank\"", String.class))
+                    .containsExactly("1", "2", "3");
+            assertThat(legacyJdbc.queryForList("SELECT like_count FROM films ORDER BY id", Integer.class))
+                    .containsExactly(2, 1);
+            assertThat(legacyJdbc.queryForList("SELECT release_year FROM films ORDER BY id", Integer.class))
+                    .containsExactly(1999, 2005);
+            assertThat(legacyJdbc.queryForObject("SELECT COUNT(*) FROM genres", Integer.class)).isEqualTo(6);
+            assertThat(legacyJdbc.queryForObject("SELECT COUNT(*) FROM likes", Integer.class)).isEqualTo(3);
+            assertThat(legacyJdbc.queryForList("SELECT LOWER(index_name) FROM information_schema.indexes " +
+                    "WHERE table_schema = 'PUBLIC'", String.class))
+                    .contains("likes_user_id_idx", "friendship_friend_id_idx",
+                            "films_like_count_idx", "films_release_year_idx", "film_genres_genre_id_idx");
+        } finally {
+            legacy.shutdown();
+        }
+    }
+}
@@ -0,0 +1,202 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Like;
+import ru.yandex.practicum.filmorate.model.User;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.spy;
+import static ru.yandex.practicum.filmorate.storage.StorageTestFixture.createFilms;
+import static ru.yandex.practicum.filmorate.storage.StorageTestFixture.createUsers;
+
+@JdbcTest
+@AutoConfigureTestDatabase
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Import(StorageTestFixture.class)
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+class ShardedLikesFilmStorageTest {
+
+    private static final int SHARDS = 3;
+
+    private final FilmDbStorage filmDbStorage;
+    private final UserDbStorage userStorage;
+    private final JdbcTemplate jdbcTemplate;
+
+    private final List<EmbeddedDatabase> shardDatabases = new ArrayList<>();
+
+    @BeforeEach
+    void createShards() {
+        for (int i = 0; i < SHARDS; i++) {
+            shardDatabases.add(new EmbeddedDatabaseBuilder()
+                    .setType(EmbeddedDatabaseType.H2)
+                    .generateUniqueName(true)
+                    .build());
+        }
+    }
+
+    @AfterEach
+    void cleanUp() {
+        shardDatabases.forEach(EmbeddedDatabase::shutdown);
+        StorageTestFixture.cleanUp(jdbcTemplate);
+    }
+
+    @Test
+    @DisplayName("Лайки раскладываются по шардам по id фильма, топ собирается из всех шард")
+    void testLikesShardedAndTopMerged() {
+        List<User> users = createUsers(userStorage, 6);
+        List<Film> films = createFilms(filmDbStorage, 7);
+        // Лайк до включения шард должен переехать в них при старте
+        filmDbStorage.addLike(films.get(6).getId(), users.get(0).getId());
+
+        ShardedLikesFilmStorage storage = sharded();
+        try {
+            // Фильм i получает i + 1 лайков, у последнего уже есть перенесённый лайк
+            for (int i = 0; i < 6; i++) {
+                for (int u = 0; u <= i; u++) {
+                    assertThat(storage.addLike(films.get(i).getId(), users.get(u).getId())).isTrue();
+                }
+            }
+            assertThat(storage.addLike(films.get(0).getId(), users.get(0).getId())).isFalse();
+            assertThat(storage.hasLike(films.get(6).getId(), users.get(0).getId())).isTrue();
+
+            for (int i = 0; i < SHARDS; i++) {
+                int shard = i;
+                List<Long> filmIds = new JdbcTemplate(shardDatabases.get(i))
+                        .queryForList("SELECT DISTINCT film_id FROM likes", Long.class);
+                assertThat(filmIds).isNotEmpty()
+                        .allMatch(filmId -> Math.floorMod(Long.hashCode(filmId), SHARDS) == shard);
+            }
+
+            List<Long> expected = List.of(films.get(5).getId(), films.get(4).getId(), films.get(3).getId(),
+                    films.get(2).getId(), films.get(1).getId(), films.get(0).getId(), films.get(6).getId());
+            assertThat(storage.getPopularFilms(4, null, null))
+                    .extracting(Film::getId)
+                    .containsExactlyElementsOf(expected.subList(0, 4));
+            // Копия счётчиков в основной базе совпадает с шардами
+            assertThat(filmDbStorage.getPopularFilms(7, null, null))
+                    .extracting(Film::getId)
+                    .containsExactlyElementsOf(expected);
+        } finally {
+            storage.close();
+        }
+    }
+
+    @Test
+    @DisplayName("Пакет лайков, удаление лайков пользователя и пересчёт счётчиков затрагивают все шарды")
+    void testBatchUserRemovalAndRebuild() {
+        List<User> users = createUsers(userStorage, 3);
+        List<Film> films = createFilms(filmDbStorage, 4);
+        ShardedLikesFilmStorage storage = sharded();
+        try {
+            List<Like> added = new ArrayList<>();
+            films.forEach(film -> added.add(new Like(film.getId(), users.get(0).getId())));
+            added.add(new Like(films.get(0).getId(), users.get(1).getId()));
+            // Лайк несуществующего пользователя отбрасывается
+            added.add(new Like(films.get(1).getId(), -1L));
+            storage.applyLikes(added, List.of());
+            assertThat(likeCounts(storage, films)).containsExactly(2, 1, 1, 1);
+
+            List<Long> liked = storage.removeUserLikes(users.get(0).getId());
+            assertThat(liked).containsExactlyInAnyOrderElementsOf(films.stream().map(Film::getId).toList());
+            assertThat(likeCounts(storage, films)).containsExactly(1, 0, 0, 0);
+
+            List<Like> exported = new ArrayList<>();
+            storage.exportLikes(exported::add);
+            assertThat(exported).containsExactly(new Like(films.get(0).getId(), users.get(1).getId()));
+
+            jdbcTemplate.update("UPDATE films SET like_count = 5");
+            assertThat(storage.rebuildLikeCounts()).isEqualTo(4);
+            assertThat(likeCounts(storage, films)).containsExactly(1, 0, 0, 0);
+        } finally {
+            storage.close();
+        }
+    }
+
+    @Test
+    @DisplayName("Перенос очищает лайки основной базы, удаление пользователя уменьшает счётчики один раз")
+    void testDeleteUserAfterMigration() {
+        List<User> users = createUsers(userStorage, 2);
+        List<Film> films = createFilms(filmDbStorage, 2);
+        filmDbStorage.addLike(films.get(0).getId(), users.get(0).getId());
+        filmDbStorage.addLike(films.get(0).getId(), users.get(1).getId());
+        ShardedLikesFilmStorage storage = sharded();
+        try {
+            assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM likes", Integer.class)).isZero();
+            storage.addLike(films.get(1).getId(), users.get(0).getId());
+
+            // Как в UserService.deleteUser: лайки через хранилище фильмов, затем сам пользователь
+            storage.removeUserLikes(users.get(0).getId());
+            userStorage.deleteUser(users.get(0).getId());
+
+            assertThat(likeCounts(storage, films)).containsExactly(1, 0);
+        } finally {
+            storage.close();
+        }
+    }
+
+    @Test
+    @DisplayName("Сбой обновления счётчика в основной базе не отменяет лайк и исправляется фоновым пересчётом")
+    void testPrimaryCountFailureRepaired() throws InterruptedException {
+        List<User> users = createUsers(userStorage, 1);
+        List<Film> films = createFilms(filmDbStorage, 1);
+        JdbcTemplate failingJdbc = spy(jdbcTemplate);
+        doThrow(new DataAccessResourceFailureException("Основная база недоступна"))
+                .doCallRealMethod()
+                .when(failingJdbc)
+                .update(eq("UPDATE films SET like_count = like_count + 1 WHERE id = ?"), any(Object[].class));
+        ShardedLikesFilmStorage storage = sharded(failingJdbc);
+        CountDownLatch repaired = new CountDownLatch(1);
+        storage.onCountsRepaired(repaired::countDown);
+        try {
+            assertThat(storage.addLike(films.get(0).getId(), users.get(0).getId())).isTrue();
+
+            assertThat(repaired.await(5, TimeUnit.SECONDS)).isTrue();
+            assertThat(likeCounts(storage, films)).containsExactly(1);
+        } finally {
+            storage.close();
+        }
+    }
+
+    private ShardedLikesFilmStorage sharded() {
+        return sharded(jdbcTemplate);
+    }
+
+    private ShardedLikesFilmStorage sharded(JdbcTemplate jdbc) {
+        ShardedLikesFilmStorage storage = new ShardedLikesFilmStorage(filmDbStorage, jdbc,
+                List.<DataSource>copyOf(shardDatabases), Executors.newFixedThreadPool(SHARDS));
+        storage.init();
+        return storage;
+    }
+
+    private List<Integer> likeCounts(FilmStorage storage, List<Film> films) {
+        return storage.getFilmsByIds(films.stream().map(Film::getId).toList()).stream()
+                .map(Film::getLikeCount)
+                .toList();
+    }
+}
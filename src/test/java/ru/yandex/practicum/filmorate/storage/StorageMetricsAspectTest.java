@@ -0,0 +1,96 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.aop.AopAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.mapper.UserRowMapper;
+
+import java.time.LocalDate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@JdbcTest
+@AutoConfigureTestDatabase
+@ImportAutoConfiguration(AopAutoConfiguration.class)
+@Import({UserRowMapper.class, StorageMetricsAspect.class, StorageMetricsAspectTest.AdditionalConfig.class})
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+class StorageMetricsAspectTest {
+
+    private final UserDbStorage userStorage;
+    private final MeterRegistry registry;
+
+    @TestConfiguration
+    static class AdditionalConfig {
+        @Bean
+        public MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+
+        @Bean
+        public UserDbStorage userDbStorage(JdbcTemplate jdbcTemplate, UserRowMapper userRawMapper) {
+            return new UserDbStorage(jdbcTemplate, userRawMapper);
+        }
+    }
+
+    @Test
+    @DisplayName("Вызовы хранилища учитываются по сигнатуре метода и исходу, строки - по числу возвращённых записей")
+    void testCallsAndRowsRecorded() {
+        User created = null;
+        for (int i = 0; i < 3; i++) {
+            User user = new User();
+            user.setName("User_" + i);
+            user.setEmail("user" + i + "@example.com");
+            user.setLogin("user_" + i);
+            user.setBirthday(LocalDate.of(1990, 1, 1));
+            created = userStorage.createUser(user);
+        }
+        userStorage.getUsers();
+        userStorage.getUsers(0, 2);
+        userStorage.getUser(created.getId());
+        assertThatThrownBy(() -> userStorage.getUser(-1)).isInstanceOf(NotFoundException.class);
+
+        assertThat(timer("createUser(User)", "success").count()).isEqualTo(3);
+        // Перегрузки учитываются раздельно
+        assertThat(timer("getUsers()", "success").count()).isEqualTo(1);
+        assertThat(timer("getUsers(long,int)", "success").count()).isEqualTo(1);
+        assertThat(timer("getUser(long)", "success").count()).isEqualTo(1);
+        assertThat(timer("getUser(long)", "error").count()).isEqualTo(1);
+        assertThat(rows("getUsers()").totalAmount()).isEqualTo(3);
+        assertThat(rows("getUsers(long,int)").totalAmount()).isEqualTo(2);
+        assertThat(rows("getUser(long)").count()).isEqualTo(1);
+        assertThat(rows("getUser(long)").totalAmount()).isEqualTo(1);
+        assertThat(registry.find(StorageMetricsAspect.ROWS).tag("method", "addFriend(Long,Long)").summary())
+                .isNull();
+    }
+
+    private Timer timer(String method, String outcome) {
+        return registry.get(StorageMetricsAspect.CALLS)
+                .tag("storage", "UserDbStorage")
+                .tag("method", method)
+                .tag("outcome", outcome)
+                .timer();
+    }
+
+    private DistributionSummary rows(String method) {
+        return registry.get(StorageMetricsAspect.ROWS)
+                .tag("storage", "UserDbStorage")
+                .tag("method", method)
+                .summary();
+    }
+}
@@ -0,0 +1,85 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.jdbc.JdbcTestUtils;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.mapper.FilmRowMapper;
+import ru.yandex.practicum.filmorate.storage.mapper.GenreRowMapper;
+import ru.yandex.practicum.filmorate.storage.mapper.MpaRowMapper;
+import ru.yandex.practicum.filmorate.storage.mapper.UserRowMapper;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Хранилища поверх тестовой базы и наборы фильмов и пользователей для тестов, которые пишут в базу
+ * из нескольких потоков и поэтому работают без откатываемой транзакции, а убирают за собой через {@link #cleanUp}.
+ */
+@TestConfiguration
+@Import({UserRowMapper.class, FilmRowMapper.class, GenreRowMapper.class, MpaRowMapper.class})
+public class StorageTestFixture {
+
+    @Bean
+    public UserDbStorage userDbStorage(JdbcTemplate jdbcTemplate, UserRowMapper userRawMapper) {
+        return new UserDbStorage(jdbcTemplate, userRawMapper);
+    }
+
+    @Bean
+    public GenreDbStorage genreDbStorage(JdbcTemplate jdbcTemplate, GenreRowMapper genreRowMapper) {
+        return new GenreDbStorage(jdbcTemplate, genreRowMapper);
+    }
+
+    @Bean
+    public MpaDbStorage mpaDbStorage(JdbcTemplate jdbcTemplate, MpaRowMapper mpaRowMapper) {
+        return new MpaDbStorage(jdbcTemplate, mpaRowMapper);
+    }
+
+    @Bean
+    public FilmDbStorage filmDbStorage(JdbcTemplate jdbcTemplate, FilmRowMapper filmRowMapper,
+                                       GenreDbStorage genreDbStorage, MpaDbStorage mpaDbStorage) {
+        return new FilmDbStorage(jdbcTemplate, filmRowMapper, genreDbStorage, mpaDbStorage);
+    }
+
+    public static Film film(int number) {
+        Film film = new Film();
+        film.setName("Film_" + number);
+        film.setDescription("Description");
+        film.setReleaseDate(LocalDate.of(2000, 1, 1));
+        film.setDuration(100);
+        Mpa mpa = new Mpa();
+        mpa.setId(1);
+        film.setMpa(mpa);
+        return film;
+    }
+
+    public static List<Film> createFilms(FilmStorage storage, int count) {
+        List<Film> films = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            films.add(storage.createFilm(film(i)));
+        }
+        return films;
+    }
+
+    public static List<User> createUsers(UserStorage storage, int count) {
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            User user = new User();
+            user.setName("User_" + i);
+            user.setEmail("user" + i + "@example.com");
+            user.setLogin("user_" + i);
+            user.setBirthday(LocalDate.of(1990, 1, 1));
+            users.add(storage.createUser(user));
+        }
+        return users;
+    }
+
+    public static void cleanUp(JdbcTemplate jdbcTemplate) {
+        JdbcTestUtils.deleteFromTables(jdbcTemplate, "likes", "film_genres", "films", "friendship", "users");
+    }
+}
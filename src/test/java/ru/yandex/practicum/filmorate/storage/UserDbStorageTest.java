@@ -15,7 +15,9 @@ import ru.yandex.practicum.filmorate.model.User;
 import ru.yandex.practicum.filmorate.storage.mapper.UserRowMapper;
 
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
@@ -146,5 +148,80 @@ class UserDbStorageTest {
         userStorage.removeFriend(user1.getId(), user2.getId());
         assertThat(userStorage.getFriends(user1.getId())).isEmpty();
     }
-}
 
+    @Test
+    @DisplayName("Проверка постраничной выборки пользователей по курсору")
+    void testGetUsersPage() {
+        for (int i = 0; i < 5; i++) {
+            User user = new User();
+            user.setName("User_" + i);
+            user.setEmail("user" + i + "@example.com");
+            user.setLogin("user_" + i);
+            user.setBirthday(LocalDate.of(1990, 1, 1));
+            userStorage.createUser(user);
+        }
+
+        List<User> firstPage = userStorage.getUsers(0, 2);
+        assertThat(firstPage).extracting("login").containsExactly("user_0", "user_1");
+
+        List<User> secondPage = userStorage.getUsers(firstPage.get(1).getId(), 2);
+        assertThat(secondPage).extracting("login").containsExactly("user_2", "user_3");
+
+        List<User> lastPage = userStorage.getUsers(secondPage.get(1).getId(), 2);
+        assertThat(lastPage).extracting("login").containsExactly("user_4");
+    }
+
+    @Test
+    @DisplayName("Проверка потоковой выгрузки пользователей")
+    void testExportUsers() {
+        for (int i = 0; i < 3; i++) {
+            User user = new User();
+            user.setName("User_" + i);
+            user.setEmail("user" + i + "@example.com");
+            user.setLogin("user_" + i);
+            user.setBirthday(LocalDate.of(1990, 1, 1));
+            userStorage.createUser(user);
+        }
+
+        List<User> exported = new ArrayList<>();
+        userStorage.exportUsers(exported::add);
+        assertThat(exported).extracting("login").containsExactly("user_0", "user_1", "user_2");
+    }
+
+    @Test
+    @DisplayName("Пакетное создание пользователей возвращает id в порядке входа")
+    void testCreateUsers() {
+        List<User> newUsers = new ArrayList<>();
+        for (int i = 0; i < 1500; i++) {
+            User user = new User();
+            user.setName("User_" + i);
+            user.setEmail("user" + i + "@example.com");
+            user.setLogin("user_" + i);
+            user.setBirthday(LocalDate.of(1990, 1, 1));
+            newUsers.add(user);
+        }
+
+        List<User> created = userStorage.createUsers(newUsers);
+
+        assertThat(created).extracting(User::getId).doesNotContainNull().isSorted().doesNotHaveDuplicates();
+        assertThat(userStorage.getUser(created.get(1499).getId()).get().getLogin()).isEqualTo("user_1499");
+        assertThat(userStorage.getUsers()).hasSize(1500);
+    }
+
+    @Test
+    @DisplayName("Пользователи по списку id возвращаются в порядке запроса")
+    void testGetUsersByIds() {
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            User user = new User();
+            user.setName("User_" + i);
+            user.setEmail("user" + i + "@example.com");
+            user.setLogin("user_" + i);
+            user.setBirthday(LocalDate.of(1990, 1, 1));
+            ids.add(userStorage.createUser(user).getId());
+        }
+
+        List<User> users = userStorage.getUsersByIds(List.of(ids.get(1), -1L, ids.get(2), ids.get(0)));
+        assertThat(users).extracting("login").containsExactly("user_1", "user_2", "user_0");
+    }
+}
@@ -0,0 +1,69 @@
+package ru.yandex.practicum.filmorate.storage.index;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ExistenceIndexTest {
+
+    private final ExistenceIndex index = new ExistenceIndex(null, "users");
+
+    @Test
+    @DisplayName("Добавленные id находятся, удалённые и чужие - нет")
+    void testAddAndRemove() {
+        index.add(1);
+        index.add(64);
+        index.add(1_000_000);
+
+        assertThat(index.contains(1)).isTrue();
+        assertThat(index.contains(64)).isTrue();
+        assertThat(index.contains(1_000_000)).isTrue();
+        assertThat(index.contains(2)).isFalse();
+        assertThat(index.contains(-1)).isFalse();
+        assertThat(index.contains(Long.MAX_VALUE)).isFalse();
+
+        index.remove(64);
+        index.remove(5_000_000);
+        assertThat(index.contains(64)).isFalse();
+        assertThat(index.contains(1)).isTrue();
+    }
+
+    @Test
+    @DisplayName("Перезагрузка не опустошает индекс и сохраняет изменения, пришедшие во время чтения таблицы")
+    void testReloadKeepsConcurrentChanges() throws SQLException {
+        JdbcTemplate jdbc = mock(JdbcTemplate.class);
+        ExistenceIndex reloaded = new ExistenceIndex(jdbc, "users");
+        reloaded.add(2);
+        reloaded.add(5);
+        ResultSet resultSet = mock(ResultSet.class);
+        when(resultSet.getLong("id")).thenReturn(1L, 2L);
+        doAnswer(invocation -> {
+            // Пока таблица читается, проверки идут по старому множеству
+            assertThat(reloaded.contains(5)).isTrue();
+            reloaded.add(7);
+            reloaded.remove(2);
+            RowCallbackHandler handler = invocation.getArgument(1);
+            handler.processRow(resultSet);
+            handler.processRow(resultSet);
+            return null;
+        }).when(jdbc).query(anyString(), any(RowCallbackHandler.class));
+
+        reloaded.reload();
+
+        assertThat(reloaded.contains(1)).isTrue();
+        assertThat(reloaded.contains(7)).isTrue();
+        assertThat(reloaded.contains(2)).isFalse();
+        assertThat(reloaded.contains(5)).isFalse();
+    }
+}
@@ -0,0 +1,82 @@
+package ru.yandex.practicum.filmorate.storage.index;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.EnumSet;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class FilmSearchIndexTest {
+
+    private static final Set<FilmSearchIndex.Field> ALL = EnumSet.allOf(FilmSearchIndex.Field.class);
+
+    private final FilmSearchIndex index = new FilmSearchIndex(null);
+
+    @Test
+    @DisplayName("Поиск без учета регистра и буквы ё, по префиксу, с ранжированием по полям")
+    void testSearch() {
+        index.index(1, "Ёлки", "Новогодняя комедия");
+        index.index(2, "Комедия положений", "Фильм про елку");
+        index.index(3, "The Matrix", "Hacker Neo learns the truth");
+
+        assertThat(index.search("ЕЛК", ALL, 10)).containsExactly(1L, 2L);
+        assertThat(index.search("комедия", ALL, 10)).containsExactly(2L, 1L);
+        assertThat(index.search("комедия", EnumSet.of(FilmSearchIndex.Field.DESCRIPTION), 10))
+                .containsExactly(1L);
+        assertThat(index.search("matrix, neo!", ALL, 10)).containsExactly(3L);
+        assertThat(index.search("matrix елки", ALL, 10)).isEmpty();
+        assertThat(index.search("комедия", ALL, 1)).containsExactly(2L);
+    }
+
+    @Test
+    @DisplayName("Изменение и удаление фильма убирают старые термины")
+    void testUpdateAndRemove() {
+        index.index(1, "Старое название", null);
+        index.index(1, "Новое название", "Описание");
+
+        assertThat(index.search("старое", ALL, 10)).isEmpty();
+        assertThat(index.search("нов", ALL, 10)).containsExactly(1L);
+
+        index.remove(1);
+        assertThat(index.search("название", ALL, 10)).isEmpty();
+        assertThat(index.search("   ", ALL, 10)).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Перезагрузка ищет по старому индексу до подмены и не теряет изменения во время чтения таблицы")
+    void testReloadKeepsConcurrentChanges() throws SQLException {
+        JdbcTemplate jdbc = mock(JdbcTemplate.class);
+        FilmSearchIndex reloaded = new FilmSearchIndex(jdbc);
+        reloaded.index(1, "Старое название", null);
+        reloaded.index(2, "Удалённый фильм", null);
+        ResultSet resultSet = mock(ResultSet.class);
+        when(resultSet.getLong("id")).thenReturn(1L, 2L);
+        when(resultSet.getString("name")).thenReturn("Новое название", "Удалённый фильм");
+        doAnswer(invocation -> {
+            assertThat(reloaded.search("старое", ALL, 10)).containsExactly(1L);
+            reloaded.index(3, "Свежий фильм", null);
+            reloaded.remove(2);
+            RowCallbackHandler handler = invocation.getArgument(1);
+            handler.processRow(resultSet);
+            handler.processRow(resultSet);
+            return null;
+        }).when(jdbc).query(anyString(), any(RowCallbackHandler.class));
+
+        reloaded.reload();
+
+        assertThat(reloaded.search("старое", ALL, 10)).isEmpty();
+        assertThat(reloaded.search("название", ALL, 10)).containsExactly(1L);
+        assertThat(reloaded.search("фильм", ALL, 10)).containsExactly(3L);
+    }
+}
@@ -0,0 +1,154 @@
+package ru.yandex.practicum.filmorate.storage.index;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import ru.yandex.practicum.filmorate.storage.journal.EventJournal;
+import ru.yandex.practicum.filmorate.storage.journal.JournalEventType;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.sql.ResultSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class FriendshipGraphTest {
+
+    private final FriendshipGraph graph = new FriendshipGraph(null, Optional.empty());
+
+    @Test
+    @DisplayName("Общие друзья считаются пересечением отсортированных списков")
+    void testCommonFriends() {
+        graph.addFriend(1, 5);
+        graph.addFriend(1, 3);
+        graph.addFriend(1, 9);
+        graph.addFriend(1, 3);
+        graph.addFriend(2, 9);
+        graph.addFriend(2, 4);
+        graph.addFriend(2, 3);
+
+        assertThat(graph.getFriends(1)).containsExactly(3, 5, 9);
+        assertThat(graph.getCommonFriends(1, 2)).containsExactly(3, 9);
+        assertThat(graph.getCommonFriends(1, 7)).isEmpty();
+        assertThat(graph.getFriends(9)).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Удаление связи и пользователя убирает его из всех списков")
+    void testRemove() {
+        graph.addFriend(1, 2);
+        graph.addFriend(1, 3);
+        graph.addFriend(3, 2);
+        graph.addFriend(2, 1);
+
+        graph.removeFriend(1, 3);
+        assertThat(graph.getFriends(1)).containsExactly(2);
+        assertThat(graph.hasFriend(1, 3)).isFalse();
+
+        graph.removeUser(2);
+        assertThat(graph.getFriends(1)).isEmpty();
+        assertThat(graph.getFriends(3)).isEmpty();
+        assertThat(graph.getFriends(2)).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Граф строится из журнала с учётом удалённых связей и пользователей")
+    void testReloadFromJournal(@TempDir Path directory) throws IOException {
+        try (EventJournal journal = new EventJournal(directory, 4)) {
+            journal.append(JournalEventType.FRIEND_ADDED, 1, 2);
+            journal.append(JournalEventType.FRIEND_ADDED, 1, 3);
+            journal.append(JournalEventType.FRIEND_ADDED, 1, 4);
+            journal.append(JournalEventType.FRIEND_ADDED, 3, 1);
+            journal.append(JournalEventType.FRIEND_ADDED, 4, 2);
+            journal.append(JournalEventType.FRIEND_REMOVED, 1, 2);
+            journal.append(JournalEventType.USER_REMOVED, 4, 0);
+            journal.append(JournalEventType.LIKE_ADDED, 1, 1);
+
+            FriendshipGraph replayed = new FriendshipGraph(null, Optional.of(journal));
+            replayed.reload();
+
+            assertThat(replayed.getFriends(1)).containsExactly(3);
+            assertThat(replayed.getFriends(3)).containsExactly(1);
+            assertThat(replayed.getFriends(4)).isEmpty();
+        }
+    }
+
+    @Test
+    @DisplayName("Рекомендации ранжируются по числу общих друзей без текущих друзей")
+    void testSuggestFriends() {
+        graph.addFriend(1, 2);
+        graph.addFriend(1, 3);
+        graph.addFriend(2, 4);
+        graph.addFriend(2, 5);
+        graph.addFriend(2, 3);
+        graph.addFriend(3, 5);
+        graph.addFriend(3, 1);
+
+        assertThat(graph.suggestFriends(1, 10)).containsExactly(5, 4);
+        assertThat(graph.suggestFriends(1, 1)).containsExactly(5);
+        assertThat(graph.suggestFriends(4, 10)).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Параллельный подсчет для большой окрестности совпадает с прямым подсчетом")
+    void testSuggestFriendsParallel() {
+        Random random = new Random(42);
+        Map<Long, Integer> expected = new HashMap<>();
+        for (long friend = 2; friend < 1_002; friend++) {
+            graph.addFriend(1, friend);
+            for (int i = 0; i < 100; i++) {
+                long candidate = 2 + random.nextInt(20_000);
+                if (!graph.hasFriend(friend, candidate)) {
+                    graph.addFriend(friend, candidate);
+                    expected.merge(candidate, 1, Integer::sum);
+                }
+            }
+        }
+        assertThat(expected.values().stream().mapToInt(Integer::intValue).sum())
+                .isGreaterThan(FriendshipGraph.PARALLEL_THRESHOLD);
+
+        long[] top = expected.entrySet().stream()
+                .filter(entry -> entry.getKey() > 1_001)
+                .sorted(Map.Entry.<Long, Integer>comparingByValue().reversed()
+                        .thenComparing(Map.Entry.comparingByKey()))
+                .limit(50)
+                .mapToLong(Map.Entry::getKey)
+                .toArray();
+        assertThat(graph.suggestFriends(1, 50)).containsExactly(top);
+    }
+
+    @Test
+    @DisplayName("Во время перезагрузки граф читается из прежней версии, изменения за загрузку сохраняются")
+    void testReadsDuringReload() throws Exception {
+        JdbcTemplate jdbc = mock(JdbcTemplate.class);
+        FriendshipGraph loading = new FriendshipGraph(jdbc, Optional.empty());
+        loading.addFriend(1, 2);
+        loading.addFriend(1, 3);
+        ResultSet row = mock(ResultSet.class);
+        when(row.getLong("user_id")).thenReturn(1L);
+        when(row.getLong("friend_id")).thenReturn(3L);
+        doAnswer(invocation -> {
+            assertThat(loading.getFriends(1)).containsExactly(2, 3);
+            assertThat(loading.getCommonFriends(1, 1)).containsExactly(2, 3);
+            loading.addFriend(1, 4);
+            loading.removeFriend(1, 3);
+            invocation.getArgument(1, RowCallbackHandler.class).processRow(row);
+            return null;
+        }).when(jdbc).query(anyString(), any(RowCallbackHandler.class));
+
+        loading.reload();
+
+        assertThat(loading.getFriends(1)).containsExactly(4);
+    }
+}
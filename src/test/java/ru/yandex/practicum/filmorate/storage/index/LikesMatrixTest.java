@@ -0,0 +1,192 @@
+package ru.yandex.practicum.filmorate.storage.index;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.yandex.practicum.filmorate.model.Like;
+import ru.yandex.practicum.filmorate.storage.FilmDbStorage;
+import ru.yandex.practicum.filmorate.storage.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.GenreDbStorage;
+import ru.yandex.practicum.filmorate.storage.MpaDbStorage;
+import ru.yandex.practicum.filmorate.storage.mapper.FilmRowMapper;
+import ru.yandex.practicum.filmorate.storage.mapper.GenreRowMapper;
+import ru.yandex.practicum.filmorate.storage.mapper.MpaRowMapper;
+
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+
+@JdbcTest
+@AutoConfigureTestDatabase
+@Import({FilmDbStorage.class, FilmRowMapper.class, GenreDbStorage.class, GenreRowMapper.class,
+        MpaDbStorage.class, MpaRowMapper.class})
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+class LikesMatrixTest {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final FilmDbStorage filmStorage;
+
+    @Test
+    @DisplayName("Изменения до построения матрицы применяются поверх данных из базы")
+    void testPendingChangesReplayedAfterBuild() {
+        createUsers(3);
+        createFilms(5);
+        like(1, 1);
+        like(3, 1);
+        like(2, 2);
+        like(3, 2);
+        like(2, 3);
+        like(3, 3);
+        like(4, 3);
+
+        LikesMatrix matrix = new LikesMatrix(filmStorage, Optional.empty(), true);
+        matrix.addLike(3, 2);
+        matrix.removeLike(4, 3);
+        matrix.addLike(5, 3);
+        assertThat(matrix.isReady()).isFalse();
+
+        assertThat(matrix.build()).isTrue();
+        matrix.shutdown();
+
+        assertThat(matrix.isReady()).isTrue();
+        // У второго пользователя общие фильмы 2 и 3 с третьим и фильм 3 с первым
+        assertThat(matrix.recommend(2, 10)).containsExactly(5, 1);
+        assertThat(matrix.recommend(1, 10)).containsExactly(2, 5);
+
+        matrix.removeFilm(5);
+        matrix.removeUser(1);
+        assertThat(matrix.recommend(2, 10)).isEmpty();
+        assertThat(matrix.recommend(1, 10)).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Соседями считаются только пользователи с общими лайками, удаления обновляют обратный индекс")
+    void testRecommendUsesSharedLikes() {
+        FilmStorage storage = mock(FilmStorage.class);
+        doAnswer(invocation -> {
+            Consumer<Like> consumer = invocation.getArgument(0);
+            consumer.accept(new Like(1L, 1L));
+            consumer.accept(new Like(2L, 1L));
+            consumer.accept(new Like(1L, 2L));
+            consumer.accept(new Like(3L, 2L));
+            consumer.accept(new Like(2L, 3L));
+            consumer.accept(new Like(3L, 3L));
+            consumer.accept(new Like(4L, 3L));
+            consumer.accept(new Like(5L, 4L));
+            consumer.accept(new Like(6L, 4L));
+            return null;
+        }).when(storage).exportLikes(any());
+        LikesMatrix matrix = new LikesMatrix(storage, Optional.empty(), false);
+        assertThat(matrix.build()).isTrue();
+        matrix.shutdown();
+
+        // Четвёртый пользователь без общих лайков в соседи не попадает
+        assertThat(matrix.recommend(1, 10)).containsExactly(3, 4);
+        assertThat(matrix.recommend(4, 10)).isEmpty();
+
+        matrix.removeUser(3);
+        assertThat(matrix.recommend(1, 10)).containsExactly(3);
+        matrix.removeFilm(3);
+        assertThat(matrix.recommend(1, 10)).isEmpty();
+        matrix.addLike(5, 1);
+        assertThat(matrix.recommend(4, 10)).containsExactly(1, 2);
+    }
+
+    @Test
+    @DisplayName("Переполнение очереди во время построения сбрасывает её и требует построить матрицу заново")
+    void testPendingOverflowDuringBuild() {
+        LikesMatrix[] holder = new LikesMatrix[1];
+        FilmStorage storage = mock(FilmStorage.class);
+        doAnswer(invocation -> {
+            for (int i = 0; i <= LikesMatrix.MAX_PENDING; i++) {
+                holder[0].addLike(1, 1);
+            }
+            return null;
+        }).doAnswer(invocation -> null).when(storage).exportLikes(any());
+        LikesMatrix matrix = new LikesMatrix(storage, Optional.empty(), false);
+        holder[0] = matrix;
+
+        assertThat(matrix.build()).isFalse();
+        assertThat(matrix.isReady()).isFalse();
+        assertThat(matrix.build()).isTrue();
+        assertThat(matrix.isReady()).isTrue();
+        matrix.shutdown();
+    }
+
+    @Test
+    @DisplayName("Упавшее фоновое построение повторяется")
+    void testBuildRetriedAfterFailure() throws InterruptedException {
+        FilmStorage storage = mock(FilmStorage.class);
+        doThrow(new IllegalStateException("База недоступна")).doAnswer(invocation -> null)
+                .when(storage).exportLikes(any());
+        LikesMatrix matrix = new LikesMatrix(storage, Optional.empty(), false);
+
+        matrix.buildInBackground();
+        for (int i = 0; i < 100 && !matrix.isReady(); i++) {
+            Thread.sleep(50);
+        }
+        matrix.shutdown();
+        assertThat(matrix.isReady()).isTrue();
+    }
+
+    @Test
+    @DisplayName("Перестроение сбрасывает готовность и применяет изменения, пришедшие во время загрузки")
+    void testRebuildQueuesChanges() throws InterruptedException {
+        LikesMatrix[] holder = new LikesMatrix[1];
+        AtomicBoolean readyDuringRebuild = new AtomicBoolean(true);
+        FilmStorage storage = mock(FilmStorage.class);
+        doAnswer(invocation -> null).doAnswer(invocation -> {
+            readyDuringRebuild.set(holder[0].isReady());
+            holder[0].addLike(2, 1);
+            Consumer<Like> consumer = invocation.getArgument(0);
+            consumer.accept(new Like(1L, 1L));
+            consumer.accept(new Like(1L, 2L));
+            consumer.accept(new Like(2L, 2L));
+            consumer.accept(new Like(3L, 2L));
+            return null;
+        }).when(storage).exportLikes(any());
+        LikesMatrix matrix = new LikesMatrix(storage, Optional.empty(), false);
+        holder[0] = matrix;
+        assertThat(matrix.build()).isTrue();
+
+        matrix.rebuildInBackground();
+        for (int i = 0; i < 100 && !matrix.isReady(); i++) {
+            Thread.sleep(50);
+        }
+        matrix.shutdown();
+
+        assertThat(matrix.isReady()).isTrue();
+        assertThat(readyDuringRebuild.get()).isFalse();
+        // Лайк фильма 2, пришедший во время загрузки, не потерян: рекомендовать остаётся только фильм 3
+        assertThat(matrix.recommend(1, 10)).containsExactly(3);
+    }
+
+    private void createUsers(int count) {
+        for (int id = 1; id <= count; id++) {
+            jdbcTemplate.update("INSERT INTO users (id, name, email, login, birthday) VALUES (?, ?, ?, ?, ?)",
+                    id, "User_" + id, "user" + id + "@example.com", "user_" + id, "1990-01-01");
+        }
+    }
+
+    private void createFilms(int count) {
+        for (int id = 1; id <= count; id++) {
+            jdbcTemplate.update("INSERT INTO films (id, name, release_date, duration, mpa_id) VALUES (?, ?, ?, ?, ?)",
+                    id, "Film_" + id, "2000-01-01", 100, 1);
+        }
+    }
+
+    private void like(long filmId, long userId) {
+        jdbcTemplate.update("INSERT INTO likes (film_id, user_id) VALUES (?, ?)", filmId, userId);
+    }
+}
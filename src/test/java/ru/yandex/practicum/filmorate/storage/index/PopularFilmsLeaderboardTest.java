@@ -0,0 +1,207 @@
+package ru.yandex.practicum.filmorate.storage.index;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.FilmDbStorage;
+import ru.yandex.practicum.filmorate.storage.StorageTestFixture;
+import ru.yandex.practicum.filmorate.storage.UserDbStorage;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static ru.yandex.practicum.filmorate.storage.StorageTestFixture.createUsers;
+
+@JdbcTest
+@AutoConfigureTestDatabase
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Import({StorageTestFixture.class, PopularFilmsLeaderboard.class})
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+class PopularFilmsLeaderboardTest {
+
+    private final FilmDbStorage filmStorage;
+    private final UserDbStorage userStorage;
+    private final PopularFilmsLeaderboard leaderboard;
+    private final JdbcTemplate jdbcTemplate;
+
+    @AfterEach
+    void cleanUp() {
+        StorageTestFixture.cleanUp(jdbcTemplate);
+        leaderboard.reload();
+    }
+
+    @Test
+    @DisplayName("При равенстве лайков фильмы упорядочены по id, удалённый фильм пропадает из рейтинга")
+    void testTiesAndDeletion() {
+        List<Film> films = createFilms(3);
+        User user = createUsers(userStorage, 1).get(0);
+        filmStorage.addLike(films.get(2).getId(), user.getId());
+        leaderboard.changeLikes(films.get(2).getId(), 1);
+
+        assertThat(leaderboard.getTop(3))
+                .containsExactly(films.get(2).getId(), films.get(0).getId(), films.get(1).getId());
+
+        filmStorage.deleteFilm(films.get(0).getId());
+        leaderboard.removeFilm(films.get(0).getId());
+        assertThat(leaderboard.getTop(3)).containsExactly(films.get(2).getId(), films.get(1).getId());
+        assertThat(leaderboard.getTop(1)).containsExactly(films.get(2).getId());
+    }
+
+    @Test
+    @DisplayName("Рейтинг совпадает с SQL-выборкой после параллельных лайков")
+    void testConcurrentLikesMatchSql() throws Exception {
+        List<Film> films = createFilms(20);
+        List<User> users = createUsers(userStorage, 16);
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<?>> futures = new ArrayList<>();
+        // Каждый поток работает от имени своего пользователя, поэтому пары (фильм, пользователь) не пересекаются
+        for (User user : users) {
+            futures.add(executor.submit(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int i = 0; i < 100; i++) {
+                    long filmId = films.get(random.nextInt(films.size())).getId();
+                    if (random.nextInt(3) > 0) {
+                        if (filmStorage.addLike(filmId, user.getId())) {
+                            leaderboard.changeLikes(filmId, 1);
+                        }
+                    } else if (filmStorage.removeLike(filmId, user.getId())) {
+                        leaderboard.changeLikes(filmId, -1);
+                    }
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+
+        List<Long> expected = filmStorage.getPopularFilms(films.size(), null, null).stream().map(Film::getId).toList();
+        assertThat(leaderboard.getTop(films.size())).containsExactlyElementsOf(expected);
+        assertThat(leaderboard.getTop(5)).containsExactlyElementsOf(expected.subList(0, 5));
+
+        leaderboard.reload();
+        assertThat(leaderboard.getTop(films.size())).containsExactlyElementsOf(expected);
+
+        // Рейтинги по жанру и году совпадают с SQL-выборкой по индексам
+        for (Integer genreId : new Integer[]{null, 1, 4}) {
+            for (Integer year : new Integer[]{null, 2000, 2002}) {
+                List<Long> filtered = filmStorage.getPopularFilms(3, genreId, year).stream()
+                        .map(Film::getId)
+                        .toList();
+                assertThat(leaderboard.getTop(3, genreId, year)).containsExactlyElementsOf(filtered);
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Чтение топа во время перестановок видит каждый фильм ровно один раз")
+    void testTopConsistentDuringChanges() throws Exception {
+        List<Film> films = createFilms(10);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        AtomicBoolean running = new AtomicBoolean(true);
+        List<Future<?>> writers = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            writers.add(executor.submit(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int j = 0; j < 20_000; j++) {
+                    leaderboard.changeLikes(films.get(random.nextInt(films.size())).getId(),
+                            random.nextBoolean() ? 1 : -1);
+                }
+            }));
+        }
+        Future<Integer> reader = executor.submit(() -> {
+            int inconsistent = 0;
+            while (running.get()) {
+                List<Long> top = leaderboard.getTop(films.size());
+                if (top.size() != films.size() || new HashSet<>(top).size() != films.size()) {
+                    inconsistent++;
+                }
+            }
+            return inconsistent;
+        });
+        for (Future<?> writer : writers) {
+            writer.get();
+        }
+        running.set(false);
+        assertThat(reader.get()).isZero();
+        executor.shutdown();
+    }
+
+    @Test
+    @DisplayName("Во время перезагрузки топ читается из прежнего рейтинга, после неё - из нового")
+    void testTopDuringReload() {
+        JdbcTemplate jdbc = mock(JdbcTemplate.class);
+        PopularFilmsLeaderboard reloaded = new PopularFilmsLeaderboard(jdbc);
+        reloaded.addFilm(1, 2000, List.of());
+        reloaded.addFilm(2, 2000, List.of());
+        reloaded.changeLikes(2, 1);
+        List<List<Long>> topsDuringReload = new ArrayList<>();
+        doAnswer(invocation -> {
+            topsDuringReload.add(reloaded.getTop(10));
+            return null;
+        }).when(jdbc).query(anyString(), any(RowCallbackHandler.class));
+
+        reloaded.reload();
+
+        assertThat(topsDuringReload).hasSize(2).allSatisfy(top -> assertThat(top).containsExactly(2L, 1L));
+        assertThat(reloaded.getTop(10)).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Изменение года и жанров переносит фильм между рейтингами с сохранением лайков")
+    void testUpdateFilmMovesBetweenBoards() {
+        List<Film> films = createFilms(2);
+        User user = createUsers(userStorage, 1).get(0);
+        long filmId = films.get(0).getId();
+        filmStorage.addLike(filmId, user.getId());
+        leaderboard.changeLikes(filmId, 1);
+
+        assertThat(leaderboard.getTop(5, 1, 2000)).containsExactly(filmId);
+        leaderboard.updateFilm(filmId, 2001, List.of(2, 3));
+
+        assertThat(leaderboard.getTop(5, 1, null)).isEmpty();
+        assertThat(leaderboard.getTop(5, null, 2000)).isEmpty();
+        assertThat(leaderboard.getTop(5, 2, 2001)).containsExactly(filmId, films.get(1).getId());
+        assertThat(leaderboard.getTop(5, 3, null)).containsExactly(filmId);
+        assertThat(leaderboard.getTop(5, 7, 1999)).isEmpty();
+    }
+
+    private List<Film> createFilms(int count) {
+        List<Film> films = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Film film = StorageTestFixture.film(i);
+            film.setReleaseDate(LocalDate.of(2000 + i % 3, 1, 1));
+            Genre genre = new Genre();
+            genre.setId(1 + i % 4);
+            film.setGenres(new ArrayList<>(List.of(genre)));
+            films.add(filmStorage.createFilm(film));
+            leaderboard.addFilm(film.getId(), film.getReleaseDate().getYear(), List.of(genre.getId()));
+        }
+        return films;
+    }
+}
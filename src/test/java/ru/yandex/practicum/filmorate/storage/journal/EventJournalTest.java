@@ -0,0 +1,118 @@
+package ru.yandex.practicum.filmorate.storage.journal;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class EventJournalTest {
+
+    private static final int SEGMENT_RECORDS = 4;
+
+    @TempDir
+    Path directory;
+
+    private record Event(JournalEventType type, long first, long second) {
+    }
+
+    @Test
+    @DisplayName("Записи переходят в новые сегменты и читаются по порядку с любой позиции")
+    void testAppendRollOverAndReplay() throws IOException {
+        List<Event> written = new ArrayList<>();
+        try (EventJournal journal = new EventJournal(directory, SEGMENT_RECORDS)) {
+            assertThat(journal.isEmpty()).isTrue();
+            for (int i = 0; i < 10; i++) {
+                Event event = new Event(i % 2 == 0 ? JournalEventType.LIKE_ADDED : JournalEventType.FRIEND_REMOVED,
+                        i, 1000L + i);
+                journal.append(event.type(), event.first(), event.second());
+                written.add(event);
+            }
+        }
+        assertThat(segments()).hasSize(3);
+
+        try (EventJournal journal = new EventJournal(directory, SEGMENT_RECORDS)) {
+            assertThat(journal.isEmpty()).isFalse();
+            List<Event> all = new ArrayList<>();
+            assertThat(journal.replay((type, first, second, timestamp) -> all.add(new Event(type, first, second))))
+                    .isEqualTo(10);
+            assertThat(all).containsExactlyElementsOf(written);
+
+            List<Event> tail = new ArrayList<>();
+            assertThat(journal.replay(6, (type, first, second, timestamp) -> tail.add(new Event(type, first, second))))
+                    .isEqualTo(10);
+            assertThat(tail).containsExactlyElementsOf(written.subList(6, 10));
+
+            // Дозапись продолжается с места остановки
+            journal.append(JournalEventType.USER_REMOVED, 42, 0);
+            List<Event> feed = new ArrayList<>();
+            assertThat(journal.replay(10, (type, first, second, timestamp) -> feed.add(new Event(type, first, second))))
+                    .isEqualTo(11);
+            assertThat(feed).containsExactly(new Event(JournalEventType.USER_REMOVED, 42, 0));
+        }
+    }
+
+    @Test
+    @DisplayName("Обрезанный при сбое сегмент восстанавливается до последней целой записи")
+    void testRecoveryAfterTruncatedSegment() throws IOException {
+        try (EventJournal journal = new EventJournal(directory, SEGMENT_RECORDS)) {
+            for (int i = 1; i <= 7; i++) {
+                journal.append(JournalEventType.LIKE_ADDED, i, i);
+            }
+        }
+        // Последний сегмент держит записи 5-7, оставляем запись 5 целой и половину записи 6
+        Path last = segments().get(1);
+        try (FileChannel channel = FileChannel.open(last, StandardOpenOption.WRITE)) {
+            channel.truncate(EventJournal.RECORD_SIZE + EventJournal.RECORD_SIZE / 2);
+        }
+
+        try (EventJournal journal = new EventJournal(directory, SEGMENT_RECORDS)) {
+            List<Long> replayed = new ArrayList<>();
+            assertThat(journal.replay((type, first, second, timestamp) -> replayed.add(first))).isEqualTo(5);
+            assertThat(replayed).containsExactly(1L, 2L, 3L, 4L, 5L);
+
+            journal.append(JournalEventType.LIKE_REMOVED, 8, 8);
+        }
+
+        try (EventJournal journal = new EventJournal(directory, SEGMENT_RECORDS)) {
+            List<Long> replayed = new ArrayList<>();
+            journal.replay((type, first, second, timestamp) -> replayed.add(first));
+            assertThat(replayed).containsExactly(1L, 2L, 3L, 4L, 5L, 8L);
+        }
+    }
+
+    @Test
+    @DisplayName("Запись с испорченной контрольной суммой и всё после неё отбрасываются")
+    void testCorruptedRecordDropsTail() throws IOException {
+        try (EventJournal journal = new EventJournal(directory, SEGMENT_RECORDS)) {
+            for (int i = 1; i <= 3; i++) {
+                journal.append(JournalEventType.FRIEND_ADDED, i, i + 1);
+            }
+        }
+        try (FileChannel channel = FileChannel.open(segments().get(0), StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[]{7}), EventJournal.RECORD_SIZE + 12);
+        }
+
+        try (EventJournal journal = new EventJournal(directory, SEGMENT_RECORDS)) {
+            List<Long> replayed = new ArrayList<>();
+            assertThat(journal.replay((type, first, second, timestamp) -> replayed.add(first))).isEqualTo(1);
+            assertThat(replayed).containsExactly(1L);
+        }
+    }
+
+    private List<Path> segments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.sorted().toList();
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package ru.yandex.practicum.filmorate.storage.journal;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.yandex.practicum.filmorate.storage.FilmStorage;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.BitSet;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class JournalSeederTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    @DisplayName("Журнал совпадает с базой только при равном числе лайков и дружб после воспроизведения")
+    void testMatchesDatabase() throws IOException {
+        FilmStorage filmStorage = mock(FilmStorage.class);
+        JdbcTemplate jdbc = mock(JdbcTemplate.class);
+        try (EventJournal journal = new EventJournal(directory, 16)) {
+            journal.append(JournalEventType.LIKE_ADDED, 1, 10);
+            journal.append(JournalEventType.LIKE_ADDED, 2, 10);
+            journal.append(JournalEventType.LIKE_REMOVED, 2, 10);
+            journal.append(JournalEventType.LIKE_ADDED, 3, 12);
+            journal.append(JournalEventType.FRIEND_ADDED, 10, 11);
+            journal.append(JournalEventType.FRIEND_ADDED, 11, 10);
+            journal.append(JournalEventType.FRIEND_ADDED, 11, 12);
+            journal.append(JournalEventType.USER_REMOVED, 12, 0);
+            JournalSeeder seeder = new JournalSeeder(journal, filmStorage, jdbc);
+
+            when(filmStorage.countLikes()).thenReturn(1L);
+            when(jdbc.queryForObject("SELECT COUNT(*) FROM friendship", Long.class)).thenReturn(2L);
+            assertThat(seeder.matchesDatabase()).isTrue();
+
+            // Лайк зафиксирован в базе, но не успел попасть в журнал
+            when(filmStorage.countLikes()).thenReturn(2L);
+            assertThat(seeder.matchesDatabase()).isFalse();
+        }
+    }
+
+    @Test
+    @DisplayName("Разросшийся журнал сжимается при старте, индексы получают прочитанное состояние")
+    void testOpenCompactsJournal() throws IOException {
+        FilmStorage filmStorage = mock(FilmStorage.class);
+        JdbcTemplate jdbc = mock(JdbcTemplate.class);
+        try (EventJournal journal = new EventJournal(directory, 1024)) {
+            for (int i = 0; i < JournalSeeder.COMPACTION_MIN_EVENTS; i++) {
+                journal.append(JournalEventType.LIKE_ADDED, 2, 10);
+                journal.append(JournalEventType.LIKE_REMOVED, 2, 10);
+            }
+            journal.append(JournalEventType.LIKE_ADDED, 1, 10);
+            journal.append(JournalEventType.FRIEND_ADDED, 10, 11);
+            journal.append(JournalEventType.FRIEND_ADDED, 11, 12);
+            journal.append(JournalEventType.USER_REMOVED, 12, 0);
+            when(filmStorage.countLikes()).thenReturn(1L);
+            when(jdbc.queryForObject("SELECT COUNT(*) FROM friendship", Long.class)).thenReturn(1L);
+
+            new JournalSeeder(journal, filmStorage, jdbc).open();
+            journal.append(JournalEventType.LIKE_ADDED, 3, 11);
+
+            assertThat(journal.replay((type, first, second, timestamp) -> {
+            })).isEqualTo(3);
+            verify(filmStorage, never()).exportLikes(any());
+            BitSet user10 = new BitSet();
+            user10.set(1);
+            BitSet user11 = new BitSet();
+            user11.set(3);
+            assertThat(journal.replayLikes()).containsOnlyKeys(10L, 11L)
+                    .containsEntry(10L, user10)
+                    .containsEntry(11L, user11);
+            assertThat(journal.replayFriends()).containsOnlyKeys(10L);
+            assertThat(journal.replayFriends().get(10L)).containsExactly(11);
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package ru.yandex.practicum.filmorate.storage.routing;
+
+import jakarta.servlet.http.Cookie;
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.UserDbStorage;
+import ru.yandex.practicum.filmorate.storage.mapper.UserRowMapper;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@JdbcTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@TestPropertySource(properties = {
+        "spring.datasource.url=" + ReplicaRoutingTest.PRIMARY_URL,
+        "filmorate.datasource.replicas.enabled=true",
+        "filmorate.datasource.replicas.urls=" + ReplicaRoutingTest.REPLICA_URL,
+        "filmorate.datasource.replicas.consistency=read-your-writes"
+})
+@Import({UserRowMapper.class, ReplicaRoutingConfig.class, ReplicaRoutingTest.AdditionalConfig.class})
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+class ReplicaRoutingTest {
+
+    static final String PRIMARY_URL = "jdbc:h2:mem:routing-primary;DB_CLOSE_DELAY=-1";
+    static final String REPLICA_URL = "jdbc:h2:mem:routing-replica;DB_CLOSE_DELAY=-1";
+
+    private final UserDbStorage userStorage;
+
+    @TestConfiguration
+    static class AdditionalConfig {
+        @Bean
+        public UserDbStorage userDbStorage(JdbcTemplate jdbcTemplate, UserRowMapper userRawMapper) {
+            return new UserDbStorage(jdbcTemplate, userRawMapper);
+        }
+    }
+
+    @Test
+    @DisplayName("Read-only чтения запроса идут на реплику и видят запись только после синхронизации")
+    void testReadsGoToReplica() throws Exception {
+        syncReplica();
+        User user = userStorage.createUser(user("replica"));
+
+        assertThat(readInRequest(user.getId())).isEmpty();
+
+        syncReplica();
+        assertThat(readInRequest(user.getId()))
+                .extracting(User::getLogin)
+                .containsExactly("replica");
+    }
+
+    @Test
+    @DisplayName("Вне HTTP-запроса read-only чтения идут на основную базу")
+    void testReadsOutsideRequestGoToPrimary() throws Exception {
+        syncReplica();
+        User user = userStorage.createUser(user("background"));
+
+        assertThat(userStorage.getUsersByIds(List.of(user.getId())))
+                .extracting(User::getLogin)
+                .containsExactly("background");
+        assertThat(readInRequest(user.getId())).isEmpty();
+    }
+
+    @Test
+    @DisplayName("После записи в рамках запроса его чтения идут на основную базу")
+    void testReadYourWritesWithinRequest() throws Exception {
+        syncReplica();
+        User user;
+        RequestWrites.begin();
+        try {
+            user = userStorage.createUser(user("own_write"));
+            assertThat(userStorage.getUsersByIds(List.of(user.getId()))).hasSize(1);
+        } finally {
+            RequestWrites.end();
+        }
+
+        assertThat(readInRequest(user.getId())).isEmpty();
+    }
+
+    @Test
+    @DisplayName("После изменяющего запроса чтения клиента с cookie идут на основную базу")
+    void testReadYourWritesAcrossRequests() throws Exception {
+        syncReplica();
+        ReadYourWritesFilter filter = new ReadYourWritesFilter(Duration.ofMinutes(1));
+        AtomicReference<User> created = new AtomicReference<>();
+
+        MockHttpServletResponse postResponse = new MockHttpServletResponse();
+        filter.doFilter(new MockHttpServletRequest("POST", "/users"), postResponse,
+                (request, response) -> created.set(userStorage.createUser(user("next_request"))));
+        Cookie lastWrite = postResponse.getCookie(ReadYourWritesFilter.LAST_WRITE_COOKIE);
+        assertThat(lastWrite).isNotNull();
+
+        MockHttpServletRequest pinned = new MockHttpServletRequest("GET", "/users/" + created.get().getId());
+        pinned.setCookies(lastWrite);
+        AtomicReference<List<User>> pinnedRead = new AtomicReference<>();
+        filter.doFilter(pinned, new MockHttpServletResponse(),
+                (request, response) -> pinnedRead.set(userStorage.getUsersByIds(List.of(created.get().getId()))));
+        assertThat(pinnedRead.get()).hasSize(1);
+
+        AtomicReference<List<User>> otherClientRead = new AtomicReference<>();
+        filter.doFilter(new MockHttpServletRequest("GET", "/users/" + created.get().getId()),
+                new MockHttpServletResponse(),
+                (request, response) -> otherClientRead.set(userStorage.getUsersByIds(List.of(created.get().getId()))));
+        assertThat(otherClientRead.get()).isEmpty();
+    }
+
+    private List<User> readInRequest(long userId) {
+        RequestWrites.begin();
+        try {
+            return userStorage.getUsersByIds(List.of(userId));
+        } finally {
+            RequestWrites.end();
+        }
+    }
+
+    private static User user(String login) {
+        User user = new User();
+        user.setName(login);
+        user.setEmail(login + "@example.com");
+        user.setLogin(login);
+        user.setBirthday(LocalDate.of(1990, 1, 1));
+        return user;
+    }
+
+    // Реплика - копия основной базы на момент вызова
+    private static void syncReplica() throws SQLException, IOException {
+        Path script = Files.createTempFile("filmorate-replica", ".sql");
+        try (Connection primary = DriverManager.getConnection(PRIMARY_URL, "sa", "password");
+             Connection replica = DriverManager.getConnection(REPLICA_URL, "sa", "password");
+             Statement primaryStatement = primary.createStatement();
+             Statement replicaStatement = replica.createStatement()) {
+            primaryStatement.execute("SCRIPT TO '" + script + "'");
+            replicaStatement.execute("DROP ALL OBJECTS");
+            replicaStatement.execute("RUNSCRIPT FROM '" + script + "'");
+        } finally {
+            Files.deleteIfExists(script);
+        }
+    }
+}
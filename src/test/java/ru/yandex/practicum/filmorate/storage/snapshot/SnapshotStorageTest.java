@@ -0,0 +1,167 @@
+package ru.yandex.practicum.filmorate.storage.snapshot;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.jdbc.JdbcTestUtils;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.FilmDbStorage;
+import ru.yandex.practicum.filmorate.storage.GenreDbStorage;
+import ru.yandex.practicum.filmorate.storage.MpaDbStorage;
+import ru.yandex.practicum.filmorate.storage.UserDbStorage;
+import ru.yandex.practicum.filmorate.storage.mapper.FilmRowMapper;
+import ru.yandex.practicum.filmorate.storage.mapper.GenreRowMapper;
+import ru.yandex.practicum.filmorate.storage.mapper.MpaRowMapper;
+import ru.yandex.practicum.filmorate.storage.mapper.UserRowMapper;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@JdbcTest
+@AutoConfigureTestDatabase
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Import({UserRowMapper.class, FilmRowMapper.class, GenreRowMapper.class, MpaRowMapper.class,
+        SnapshotStorageTest.AdditionalConfig.class})
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+class SnapshotStorageTest {
+
+    private static final int USERS = 300;
+    private static final int FILMS = 250;
+    private static final String DUMP = "SELECT * FROM users ORDER BY id";
+
+    private final SnapshotStorage snapshotStorage;
+    private final UserDbStorage userStorage;
+    private final JdbcTemplate jdbcTemplate;
+
+    @TempDir
+    Path directory;
+
+    @TestConfiguration
+    static class AdditionalConfig {
+        @Bean
+        public UserDbStorage userDbStorage(JdbcTemplate jdbcTemplate, UserRowMapper userRawMapper) {
+            return new UserDbStorage(jdbcTemplate, userRawMapper);
+        }
+
+        @Bean
+        public GenreDbStorage genreDbStorage(JdbcTemplate jdbcTemplate, GenreRowMapper genreRowMapper) {
+            return new GenreDbStorage(jdbcTemplate, genreRowMapper);
+        }
+
+        @Bean
+        public MpaDbStorage mpaDbStorage(JdbcTemplate jdbcTemplate, MpaRowMapper mpaRowMapper) {
+            return new MpaDbStorage(jdbcTemplate, mpaRowMapper);
+        }
+
+        @Bean
+        public FilmDbStorage filmDbStorage(JdbcTemplate jdbcTemplate, FilmRowMapper filmRowMapper,
+                                           GenreDbStorage genreDbStorage, MpaDbStorage mpaDbStorage) {
+            return new FilmDbStorage(jdbcTemplate, filmRowMapper, genreDbStorage, mpaDbStorage);
+        }
+
+        @Bean
+        public SnapshotStorage snapshotStorage(JdbcTemplate jdbcTemplate, FilmDbStorage filmDbStorage) {
+            return new SnapshotStorage(jdbcTemplate, filmDbStorage);
+        }
+    }
+
+    @BeforeEach
+    void fillDatabase() {
+        jdbcTemplate.update("INSERT INTO users (name, email, login, birthday) " +
+                "SELECT CASEWHEN(MOD(x, 10) = 0, NULL, 'Пользователь ' || x), 'user' || x || '@example.com', " +
+                "'user_' || x, DATEADD(DAY, x, DATE '1990-01-01') FROM SYSTEM_RANGE(1, ?)", USERS);
+        jdbcTemplate.update("INSERT INTO films (name, description, release_date, duration, mpa_id, like_count) " +
+                "SELECT 'Фильм ' || x, CASEWHEN(MOD(x, 7) = 0, NULL, 'Описание ' || x), " +
+                "DATEADD(DAY, x, DATE '2000-01-01'), 90 + x, MOD(x, 5) + 1, ? FROM SYSTEM_RANGE(1, ?)", USERS, FILMS);
+        jdbcTemplate.update("INSERT INTO film_genres (film_id, genre_id) SELECT id, MOD(id, 6) + 1 FROM films");
+        jdbcTemplate.update("INSERT INTO friendship (user_id, friend_id) " +
+                "SELECT u.id, f.id FROM users u JOIN users f ON f.id = u.id + 1");
+    }
+
+    @AfterEach
+    void cleanUp() {
+        JdbcTestUtils.deleteFromTables(jdbcTemplate, "likes", "film_genres", "films", "friendship", "users");
+    }
+
+    @Test
+    @DisplayName("Восстановление из снимка возвращает все таблицы и продолжает счётчики id")
+    void testSnapshotAndRestore() {
+        Path file = directory.resolve("all.fsnap");
+        // Лайков больше, чем строк в одном блоке снимка
+        jdbcTemplate.update("INSERT INTO likes (film_id, user_id) SELECT f.id, u.id FROM films f CROSS JOIN users u");
+        Map<String, List<Map<String, Object>>> before = dumpTables();
+
+        Map<String, Long> written = snapshotStorage.write(file);
+        assertThat(written).containsEntry("users", (long) USERS)
+                .containsEntry("films", (long) FILMS)
+                .containsEntry("likes", (long) USERS * FILMS)
+                .containsEntry("friendship", USERS - 1L);
+
+        jdbcTemplate.update("DELETE FROM users WHERE id IN (SELECT id FROM users ORDER BY id LIMIT 5)");
+        jdbcTemplate.update("UPDATE films SET name = 'Другое' WHERE id = (SELECT MIN(id) FROM films)");
+        createUser("extra");
+
+        assertThat(snapshotStorage.restore(file)).isEqualTo(written);
+        assertThat(dumpTables()).isEqualTo(before);
+
+        Long maxId = jdbcTemplate.queryForObject("SELECT MAX(id) FROM users", Long.class);
+        assertThat(createUser("after").getId()).isEqualTo(maxId + 1);
+    }
+
+    @Test
+    @DisplayName("Повреждённый снимок отклоняется до изменения данных")
+    void testTruncatedSnapshotRejected() throws IOException {
+        Path file = directory.resolve("broken.fsnap");
+        jdbcTemplate.update("INSERT INTO likes (film_id, user_id) SELECT f.id, u.id FROM films f JOIN users u ON u.id = f.id");
+        snapshotStorage.write(file);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 100);
+        }
+        List<Map<String, Object>> users = jdbcTemplate.queryForList(DUMP);
+
+        assertThatThrownBy(() -> snapshotStorage.restore(file)).isInstanceOf(ValidationException.class);
+        assertThat(jdbcTemplate.queryForList(DUMP)).isEqualTo(users);
+        assertThat(JdbcTestUtils.countRowsInTable(jdbcTemplate, "likes")).isEqualTo(FILMS);
+    }
+
+    private Map<String, List<Map<String, Object>>> dumpTables() {
+        return Map.of(
+                "users", jdbcTemplate.queryForList(DUMP),
+                "films", jdbcTemplate.queryForList("SELECT * FROM films ORDER BY id"),
+                "film_genres", jdbcTemplate.queryForList("SELECT * FROM film_genres ORDER BY film_id, genre_id"),
+                "friendship", jdbcTemplate.queryForList("SELECT * FROM friendship ORDER BY user_id, friend_id"),
+                "likes", jdbcTemplate.queryForList("SELECT * FROM likes ORDER BY film_id, user_id"),
+                "genres", jdbcTemplate.queryForList("SELECT * FROM genres ORDER BY id"),
+                "mpa", jdbcTemplate.queryForList("SELECT * FROM mpa ORDER BY id"));
+    }
+
+    private User createUser(String login) {
+        User user = new User();
+        user.setName(login);
+        user.setEmail(login + "@example.com");
+        user.setLogin(login);
+        user.setBirthday(LocalDate.of(1990, 1, 1));
+        return userStorage.createUser(user);
+    }
+}